@@ -0,0 +1,19 @@
+package net.optionfactory.spring.data.jpa.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import net.optionfactory.spring.data.jpa.filtering.Cursor;
+
+/**
+ * Serializes a {@link Cursor} as its opaque encoded form.
+ */
+public abstract class CursorMixin {
+
+    @JsonValue
+    public abstract String encode();
+
+    @JsonCreator
+    public static Cursor parse(String encoded) {
+        return Cursor.parse(encoded);
+    }
+}
@@ -0,0 +1,48 @@
+package net.optionfactory.spring.data.jpa.web;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+@JsonRootName(value = "slice")
+public interface SliceMixin<T> {
+
+    @JsonProperty("data")
+    List<T> getContent();
+
+    @JsonProperty("hasNext")
+    boolean hasNext();
+
+    @JsonIgnore
+    int getNumber();
+
+    @JsonIgnore
+    int getSize();
+
+    @JsonIgnore
+    int getNumberOfElements();
+
+    @JsonIgnore
+    boolean hasContent();
+
+    @JsonIgnore
+    Sort getSort();
+
+    @JsonIgnore
+    boolean isFirst();
+
+    @JsonIgnore
+    boolean isLast();
+
+    @JsonIgnore
+    boolean hasPrevious();
+
+    @JsonIgnore
+    Pageable getPageable();
+
+    @JsonIgnore
+    boolean isEmpty();
+}
@@ -0,0 +1,33 @@
+package net.optionfactory.spring.data.jpa.web.filtering;
+
+import net.optionfactory.spring.data.jpa.filtering.Cursor;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+public class CursorArgumentResolver implements HandlerMethodArgumentResolver {
+
+    public static final String DEFAULT_PARAMETER_NAME = "cursor";
+
+    private final String parameterName;
+
+    public CursorArgumentResolver(String parameterName) {
+        this.parameterName = parameterName;
+    }
+
+    public CursorArgumentResolver() {
+        this(DEFAULT_PARAMETER_NAME);
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return Cursor.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Cursor resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer, NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+        return Cursor.parse(webRequest.getParameter(parameterName));
+    }
+}
@@ -0,0 +1,21 @@
+package net.optionfactory.spring.data.jpa.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+public class SliceMixinTest {
+
+    @Test
+    public void slicesAreSerializedAsDataAndHasNext() throws Exception {
+        final ObjectMapper mapper = new ObjectMapper().addMixIn(Slice.class, SliceMixin.class);
+        final Slice<String> slice = new SliceImpl<>(List.of("a", "b"), PageRequest.of(0, 2), true);
+        final Map<?, ?> got = mapper.readValue(mapper.writeValueAsString(slice), Map.class);
+        Assert.assertEquals(Map.of("data", List.of("a", "b"), "hasNext", true), got);
+    }
+}
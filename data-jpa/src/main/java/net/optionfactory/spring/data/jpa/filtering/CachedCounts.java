@@ -0,0 +1,26 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the exact counts of an {@code @Entity} type by {@link FilterRequest}
+ * for a short time. Only counts without a base
+ * {@link org.springframework.data.jpa.domain.Specification} are cached, as
+ * specifications cannot be compared. Counts made in read-write transactions
+ * bypass the cache, so a transaction always sees its own writes; other
+ * callers can see counts up to {@code ttlMillis} old, unless evicted with
+ * {@link WhitelistFilteringRepository#evictCachedCounts()}.
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachedCounts {
+
+    long ttlMillis() default 10_000;
+
+    int maxEntries() default 1024;
+}
@@ -0,0 +1,44 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+/**
+ * A number of entries that may be exact, a lower bound (when counting stopped
+ * at a cap) or an estimate from database statistics.
+ */
+public class Count {
+
+    public enum Kind {
+        EXACT, AT_LEAST, ESTIMATED;
+    }
+
+    public final Kind kind;
+    public final long value;
+
+    public Count(Kind kind, long value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    public static Count exact(long value) {
+        return new Count(Kind.EXACT, value);
+    }
+
+    public static Count atLeast(long value) {
+        return new Count(Kind.AT_LEAST, value);
+    }
+
+    public static Count estimated(long value) {
+        return new Count(Kind.ESTIMATED, value);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case AT_LEAST:
+                return value + "+";
+            case ESTIMATED:
+                return "~" + value;
+            default:
+                return Long.toString(value);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import net.optionfactory.spring.data.jpa.filtering.filters.spi.InvalidFilterRequest;
+
+/**
+ * A position in a keyset-paginated result: the sort key values (followed by
+ * the entity id as a tie-breaker) of the row the slice starts after (or
+ * before, when paginating backwards). Clients should treat the encoded form
+ * as opaque.
+ */
+public class Cursor {
+
+    public enum Direction {
+        NEXT, PREVIOUS;
+    }
+
+    public final Direction direction;
+    public final List<String> keys;
+
+    public Cursor(Direction direction, List<String> keys) {
+        this.direction = direction;
+        this.keys = List.copyOf(keys);
+    }
+
+    /**
+     * A cursor for the first slice.
+     *
+     * @return the cursor
+     */
+    public static Cursor first() {
+        return new Cursor(Direction.NEXT, List.of());
+    }
+
+    /**
+     * A cursor for the last slice.
+     *
+     * @return the cursor
+     */
+    public static Cursor last() {
+        return new Cursor(Direction.PREVIOUS, List.of());
+    }
+
+    public boolean isBoundary() {
+        return keys.isEmpty();
+    }
+
+    public String encode() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(direction == Direction.NEXT ? 'n' : 'p');
+        for (String key : keys) {
+            sb.append(key.length()).append(':').append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses an encoded cursor; a null or blank value is the first slice.
+     *
+     * @param encoded the encoded cursor
+     * @return the cursor
+     */
+    public static Cursor parse(String encoded) {
+        if (encoded == null || encoded.isBlank()) {
+            return first();
+        }
+        final String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(encoded.strip()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidFilterRequest(String.format("malformed cursor '%s'", encoded));
+        }
+        if (decoded.isEmpty() || (decoded.charAt(0) != 'n' && decoded.charAt(0) != 'p')) {
+            throw new InvalidFilterRequest(String.format("malformed cursor '%s'", encoded));
+        }
+        final List<String> keys = new ArrayList<>();
+        int offset = 1;
+        while (offset < decoded.length()) {
+            final int colon = decoded.indexOf(':', offset);
+            try {
+                final int length = Integer.parseInt(decoded.substring(offset, colon));
+                keys.add(decoded.substring(colon + 1, colon + 1 + length));
+                offset = colon + 1 + length;
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                throw new InvalidFilterRequest(String.format("malformed cursor '%s'", encoded));
+            }
+        }
+        return new Cursor(decoded.charAt(0) == 'n' ? Direction.NEXT : Direction.PREVIOUS, keys);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,30 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+import java.util.List;
+
+/**
+ * A keyset-paginated slice of results. {@code next} and {@code previous} are
+ * null when there is nothing further in that direction.
+ *
+ * @param <T> the entity type
+ */
+public class CursorSlice<T> {
+
+    public final List<T> content;
+    public final Cursor next;
+    public final Cursor previous;
+
+    public CursorSlice(List<T> content, Cursor next, Cursor previous) {
+        this.content = content;
+        this.next = next;
+        this.previous = previous;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public boolean hasPrevious() {
+        return previous != null;
+    }
+}
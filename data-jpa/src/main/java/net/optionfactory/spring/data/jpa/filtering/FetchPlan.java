@@ -0,0 +1,31 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+import java.util.List;
+
+/**
+ * Associations to load together with the queried entities, either from a
+ * named entity graph or as property chains (e.g. {@code "performer"},
+ * {@code "activity.tags"}). Both are applied as left fetch joins, which
+ * filters on the same singular associations reuse. At most one bag (a
+ * {@code Collection}, or a {@code List} without an {@code @OrderColumn}) can
+ * be fetched: plans fetching more are rejected with an
+ * {@link net.optionfactory.spring.data.jpa.filtering.filters.spi.InvalidFilterConfiguration}.
+ */
+public class FetchPlan {
+
+    public final String graph;
+    public final List<String> joins;
+
+    public FetchPlan(String graph, List<String> joins) {
+        this.graph = graph;
+        this.joins = List.copyOf(joins);
+    }
+
+    public static FetchPlan graph(String name) {
+        return new FetchPlan(name, List.of());
+    }
+
+    public static FetchPlan joins(String... properties) {
+        return new FetchPlan(null, List.of(properties));
+    }
+}
@@ -2,24 +2,63 @@ package net.optionfactory.spring.data.jpa.filtering;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javassist.Modifier;
+import javax.persistence.AttributeNode;
 import javax.persistence.EntityManager;
+import javax.persistence.OrderColumn;
+import javax.persistence.Subgraph;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
 import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import net.optionfactory.spring.data.jpa.filtering.Cursor.Direction;
+import net.optionfactory.spring.data.jpa.filtering.filters.spi.Filters;
+import net.optionfactory.spring.data.jpa.filtering.filters.spi.InvalidFilterConfiguration;
 import net.optionfactory.spring.data.jpa.filtering.filters.spi.InvalidFilterRequest;
+import net.optionfactory.spring.data.jpa.filtering.filters.spi.Values;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -29,15 +68,34 @@ import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 import net.optionfactory.spring.data.jpa.filtering.filters.spi.WhitelistedFilter;
 import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 public class JpaWhitelistFilteringRepositoryBase<T, ID extends Serializable> extends SimpleJpaRepository<T, ID> {
 
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 500;
+    public static final long ESTIMATE_FALLBACK_CAP = 10_000;
+
+    private final JpaEntityInformation<T, ?> ei;
+    private final EntityManager em;
     private final Map<String, Filter> whitelist;
+    private final CachedCounts countCaching;
+    private final Map<List<Object>, CachedCount> cachedCounts = new ConcurrentHashMap<>();
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+    private final Map<Class<?>, Projection<?>> projections = new ConcurrentHashMap<>();
 
     public JpaWhitelistFilteringRepositoryBase(JpaEntityInformation<T, ?> ei, EntityManager em) {
         super(ei, em);
+        this.ei = ei;
+        this.em = em;
+        this.countCaching = AnnotationUtils.findAnnotation(ei.getJavaType(), CachedCounts.class);
         this.whitelist = Stream
                 .of(ei.getJavaType().getAnnotations())
                 .flatMap(repeatableAnnotation -> flattenRepeatables(repeatableAnnotation))
@@ -112,6 +170,154 @@ public class JpaWhitelistFilteringRepositoryBase<T, ID extends Serializable> ext
         return findAll(Specification.where(base).and(new SortSpecificationAdapter<>(pageable.getSort())).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist)), unsorted(pageable));
     }
 
+    public <P> Page<P> findAll(FilterRequest filters, Pageable pageable, Class<P> projection) {
+        return findAll(null, filters, pageable, projection);
+    }
+
+    public <P> Page<P> findAll(Specification<T> base, FilterRequest filters, Pageable pageable, Class<P> projection) {
+        final TypedQuery<Tuple> query = projectionQuery(base, filters, pageable.getSort(), projection);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        final List<P> content = project(query.getResultList(), projection);
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(base, filters));
+    }
+
+    public <P> List<P> findAll(FilterRequest filters, Sort sort, Class<P> projection) {
+        return findAll(null, filters, sort, projection);
+    }
+
+    public <P> List<P> findAll(Specification<T> base, FilterRequest filters, Sort sort, Class<P> projection) {
+        return project(projectionQuery(base, filters, sort, projection).getResultList(), projection);
+    }
+
+    /**
+     * Selects only the projected properties as a tuple, so entities are
+     * neither hydrated nor tracked by the persistence context.
+     */
+    private TypedQuery<Tuple> projectionQuery(Specification<T> base, FilterRequest filters, Sort sort, Class<?> type) {
+        final Projection<?> projection = projections.computeIfAbsent(type, k -> Projection.of(k, em.getMetamodel().managedType(getDomainClass()), projectionFactory));
+        final CriteriaBuilder builder = em.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        final Root<T> root = query.from(getDomainClass());
+        final Predicate predicate = Specification.where(base)
+                .and(new SortSpecificationAdapter<>(sort))
+                .and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist))
+                .toPredicate(root, query, builder);
+        final List<Selection<?>> selections = projection.properties().stream()
+                .map(property -> Filters.traverseProperty(root, property).alias(property))
+                .collect(Collectors.toList());
+        query.multiselect(selections);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return em.createQuery(query);
+    }
+
+    private <P> List<P> project(List<Tuple> rows, Class<P> type) {
+        final Projection<P> projection = (Projection<P>) projections.get(type);
+        return rows.stream().map(projection::create).collect(Collectors.toList());
+    }
+
+    public List<T> findAll(FilterRequest filters, Sort sort, FetchPlan plan) {
+        return findAll(null, filters, sort, plan);
+    }
+
+    public List<T> findAll(Specification<T> base, FilterRequest filters, Sort sort, FetchPlan plan) {
+        final FetchPlanSpecificationAdapter<T> fetching = new FetchPlanSpecificationAdapter<>(fetchPaths(plan), em.getMetamodel().entity(getDomainClass()));
+        final TypedQuery<T> query = getQuery(Specification.where(fetching).and(base).and(new SortSpecificationAdapter<>(sort)).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist)), Sort.unsorted());
+        query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+        return query.getResultList();
+    }
+
+    public Page<T> findAll(FilterRequest filters, Pageable pageable, FetchPlan plan) {
+        return findAll(null, filters, pageable, plan);
+    }
+
+    /**
+     * When the plan fetches collections the database cannot paginate
+     * entities (rows are multiplied by the collection elements), so the ids
+     * of the page are selected first and the entities are then fetched by
+     * id.
+     */
+    public Page<T> findAll(Specification<T> base, FilterRequest filters, Pageable pageable, FetchPlan plan) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(base, filters, pageable.getSort(), plan));
+        }
+        final FetchPlanSpecificationAdapter<T> fetching = new FetchPlanSpecificationAdapter<>(fetchPaths(plan), em.getMetamodel().entity(getDomainClass()));
+        if (!fetching.fetchesCollections()) {
+            final TypedQuery<T> query = getQuery(Specification.where(fetching).and(base).and(new SortSpecificationAdapter<>(pageable.getSort())).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist)), Sort.unsorted());
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+            return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(base, filters));
+        }
+        final String idName = ei.getIdAttribute().getName();
+        final CriteriaBuilder builder = em.getCriteriaBuilder();
+        final CriteriaQuery<Object> idsQuery = builder.createQuery(Object.class);
+        final Root<T> root = idsQuery.from(getDomainClass());
+        final Predicate predicate = Specification.where(base)
+                .and(new SortSpecificationAdapter<>(pageable.getSort()))
+                .and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist))
+                .toPredicate(root, idsQuery, builder);
+        idsQuery.select(root.get(idName));
+        if (predicate != null) {
+            idsQuery.where(predicate);
+        }
+        final List<Object> ids = em.createQuery(idsQuery)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        if (ids.isEmpty()) {
+            return PageableExecutionUtils.getPage(List.of(), pageable, () -> count(base, filters));
+        }
+        final Specification<T> byIds = (r, q, b) -> r.get(idName).in(ids);
+        final TypedQuery<T> query = getQuery(Specification.where(fetching).and(byIds), Sort.unsorted());
+        query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+        final Map<Object, Integer> positions = new HashMap<>();
+        for (int i = 0; i != ids.size(); ++i) {
+            positions.put(ids.get(i), i);
+        }
+        final List<T> content = new ArrayList<>(query.getResultList());
+        content.sort((a, b) -> Integer.compare(positions.get(ei.getId(a)), positions.get(ei.getId(b))));
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(base, filters));
+    }
+
+    private List<String> fetchPaths(FetchPlan plan) {
+        final List<String> paths = new ArrayList<>(plan.joins);
+        if (plan.graph != null) {
+            graphPaths(em.getEntityGraph(plan.graph).getAttributeNodes(), "", paths);
+        }
+        return paths;
+    }
+
+    private static void graphPaths(List<AttributeNode<?>> nodes, String prefix, List<String> paths) {
+        for (AttributeNode<?> node : nodes) {
+            final String path = prefix + node.getAttributeName();
+            paths.add(path);
+            for (Subgraph<?> subgraph : node.getSubgraphs().values()) {
+                graphPaths(subgraph.getAttributeNodes(), path + ".", paths);
+            }
+        }
+    }
+
+    public Slice<T> findSlice(FilterRequest filters, Pageable pageable) {
+        return findSlice(null, filters, pageable);
+    }
+
+    public Slice<T> findSlice(Specification<T> base, FilterRequest filters, Pageable pageable) {
+        final Specification<T> spec = Specification.where(base).and(new SortSpecificationAdapter<>(pageable.getSort())).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist));
+        final TypedQuery<T> query = getQuery(spec, Sort.unsorted());
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList(), pageable, false);
+        }
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize() + 1);
+        final List<T> rows = query.getResultList();
+        final boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
     public List<T> findAll(FilterRequest filters, Sort sort) {
         return findAll(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist), sort);
     }
@@ -120,18 +326,283 @@ public class JpaWhitelistFilteringRepositoryBase<T, ID extends Serializable> ext
         return findAll(Specification.where(base).and(new SortSpecificationAdapter<>(sort)).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist)), Sort.unsorted());
     }
 
+    public CursorSlice<T> findAll(FilterRequest filters, Sort sort, Cursor cursor, int limit) {
+        return findAll(null, filters, sort, cursor, limit);
+    }
+
+    public CursorSlice<T> findAll(Specification<T> base, FilterRequest filters, Sort sort, Cursor cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be greater than zero");
+        }
+        if (ei.hasCompositeId()) {
+            throw new IllegalStateException(String.format("keyset pagination is not supported for entity %s with a composite id", ei.getJavaType().getSimpleName()));
+        }
+        final Cursor from = cursor != null ? cursor : Cursor.first();
+        final boolean backwards = from.direction == Direction.PREVIOUS;
+        final CriteriaBuilder builder = em.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        final Root<T> root = query.from(getDomainClass());
+        final Predicate filtering = Specification.where(base)
+                .and(new SortSpecificationAdapter<>(sort))
+                .and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist))
+                .toPredicate(root, query, builder);
+        final List<Order> orders = new ArrayList<>(query.getOrderList());
+        final String idName = ei.getIdAttribute().getName();
+        if (sort == null || sort.getOrderFor(idName) == null) {
+            orders.add(builder.asc(root.get(idName)));
+        }
+        orders.forEach(order -> ensureKeysetKey(root, order.getExpression()));
+        final List<Predicate> predicates = new ArrayList<>();
+        if (filtering != null) {
+            predicates.add(filtering);
+        }
+        if (!from.isBoundary()) {
+            if (from.keys.size() != orders.size()) {
+                throw new InvalidFilterRequest(String.format("cursor does not match the requested sort for root object '%s'", root.getJavaType().getSimpleName()));
+            }
+            predicates.add(seek(builder, orders, from.keys, backwards));
+        }
+        final List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root);
+        orders.forEach(order -> selections.add(order.getExpression()));
+        query.multiselect(selections);
+        query.where(predicates.toArray(new Predicate[0]));
+        query.orderBy(backwards ? orders.stream().map(Order::reverse).collect(Collectors.toList()) : orders);
+
+        final List<Tuple> rows = em.createQuery(query).setMaxResults(limit + 1).getResultList();
+        final boolean more = rows.size() > limit;
+        final List<Tuple> slice = new ArrayList<>(rows.subList(0, Math.min(limit, rows.size())));
+        if (backwards) {
+            Collections.reverse(slice);
+        }
+        final boolean hasNext = backwards ? !from.isBoundary() : more;
+        final boolean hasPrevious = backwards ? more : !from.isBoundary();
+        final Cursor next = !hasNext ? null : new Cursor(Direction.NEXT, slice.isEmpty() ? from.keys : keys(slice.get(slice.size() - 1), orders.size()));
+        final Cursor previous = !hasPrevious ? null : new Cursor(Direction.PREVIOUS, slice.isEmpty() ? from.keys : keys(slice.get(0), orders.size()));
+        final List<T> content = slice.stream().map(row -> (T) row.get(0)).collect(Collectors.toList());
+        return new CursorSlice<>(content, next, previous);
+    }
+
+    /**
+     * Builds {@code k1 >= v1 and (k1 > v1 or (k1 = v1 and (k2 > v2 or ...)))}
+     * (with the comparisons flipped for descending keys or when paginating
+     * backwards); the redundant leading bound lets the database range-scan an
+     * index on the first key.
+     */
+    private static Predicate seek(CriteriaBuilder builder, List<Order> orders, List<String> keys, boolean backwards) {
+        Predicate seek = null;
+        for (int i = orders.size() - 1; i >= 0; --i) {
+            final Order order = orders.get(i);
+            final Expression<Comparable> key = (Expression<Comparable>) order.getExpression();
+            final Comparable value = (Comparable) Values.convert(keys.get(i), key.getJavaType());
+            final Predicate after = order.isAscending() != backwards ? builder.greaterThan(key, value) : builder.lessThan(key, value);
+            seek = seek == null ? after : builder.or(after, builder.and(builder.equal(key, value), seek));
+        }
+        final Order first = orders.get(0);
+        final Expression<Comparable> firstKey = (Expression<Comparable>) first.getExpression();
+        final Comparable firstValue = (Comparable) Values.convert(keys.get(0), firstKey.getJavaType());
+        final Predicate bound = first.isAscending() != backwards ? builder.greaterThanOrEqualTo(firstKey, firstValue) : builder.lessThanOrEqualTo(firstKey, firstValue);
+        return builder.and(bound, seek);
+    }
+
+    /**
+     * Sort keys must be attributes of a type the cursor can carry and must
+     * never be null, along with every association leading to them: a null
+     * key cannot be sought past.
+     */
+    private static void ensureKeysetKey(Root<?> root, Expression<?> key) {
+        if (!(key instanceof Path) || !Values.isConvertible(key.getJavaType())) {
+            throw new InvalidFilterRequest(String.format("sort key of type %s of root object '%s' is not supported by keyset pagination", key.getJavaType().getSimpleName(), root.getJavaType().getSimpleName()));
+        }
+        for (Path<?> path = (Path<?>) key; path != root && path != null; path = path.getParentPath()) {
+            final Object attribute = path instanceof Join ? ((Join<?, ?>) path).getAttribute() : path.getModel();
+            if (!(attribute instanceof SingularAttribute) || ((SingularAttribute<?, ?>) attribute).isOptional()) {
+                final String name = attribute instanceof Attribute ? ((Attribute<?, ?>) attribute).getName() : String.valueOf(attribute);
+                throw new InvalidFilterRequest(String.format("sort key '%s' of root object '%s' is nullable: keyset pagination requires non-null sort keys", name, root.getJavaType().getSimpleName()));
+            }
+        }
+    }
+
+    private static List<String> keys(Tuple row, int count) {
+        final List<String> keys = new ArrayList<>(count);
+        for (int i = 1; i <= count; ++i) {
+            final Object value = row.get(i);
+            if (value == null) {
+                throw new IllegalStateException("keyset pagination requires non-null sort keys");
+            }
+            keys.add(Values.format(value));
+        }
+        return keys;
+    }
+
+    public Stream<T> streamAll(FilterRequest filters, Sort sort) {
+        return streamAll(null, filters, sort);
+    }
+
+    public Stream<T> streamAll(Specification<T> base, FilterRequest filters, Sort sort) {
+        final Specification<T> spec = Specification.where(base).and(new SortSpecificationAdapter<>(sort)).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist));
+        final TypedQuery<T> query = getQuery(spec, Sort.unsorted());
+        if (!query.getHints().containsKey(QueryHints.HINT_FETCH_SIZE)) {
+            query.setHint(QueryHints.HINT_FETCH_SIZE, DEFAULT_STREAM_FETCH_SIZE);
+        }
+        query.setHint(QueryHints.HINT_READONLY, true);
+        final PersistenceContext context = em.unwrap(SessionImplementor.class).getPersistenceContext();
+        final Set<Object> managed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Object, EntityEntry> entry : context.reentrantSafeEntityEntries()) {
+            managed.add(entry.getKey());
+        }
+        final Stream<T> results = query.getResultStream();
+        return StreamSupport.stream(new DetachingSpliterator<>(em, context, managed, results.iterator()), false).onClose(results::close);
+    }
+
     public long count(FilterRequest filters) {
-        return count(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist));
+        return cached(filters, -1, () -> Count.exact(count(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist)))).value;
     }
 
     public long count(Specification<T> base, FilterRequest filters) {
         return count(Specification.where(base).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist)));
     }
 
+    public Count count(FilterRequest filters, long cap) {
+        return cached(filters, cap, () -> count(null, filters, cap));
+    }
+
+    /**
+     * Selects the ids of at most {@code cap + 1} entries and counts them, so
+     * the work done by the database is bounded by the cap.
+     */
+    public Count count(Specification<T> base, FilterRequest filters, long cap) {
+        final CriteriaBuilder builder = em.getCriteriaBuilder();
+        final CriteriaQuery<Object> query = builder.createQuery(Object.class);
+        final Root<T> root = query.from(getDomainClass());
+        final Predicate predicate = Specification.where(base)
+                .and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist))
+                .toPredicate(root, query, builder);
+        if (ei.hasCompositeId()) {
+            query.select(root);
+        } else {
+            query.select(root.get(ei.getIdAttribute().getName()));
+        }
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        final int counted = em.createQuery(query)
+                .setMaxResults((int) Math.min(cap + 1, Integer.MAX_VALUE))
+                .getResultList()
+                .size();
+        return counted > cap ? Count.atLeast(cap) : Count.exact(counted);
+    }
+
+    public Count estimateCount(FilterRequest filters) {
+        return estimateCount(null, filters);
+    }
+
+    public Count estimateCount(Specification<T> base, FilterRequest filters) {
+        if (base == null && (filters.filters == null || filters.filters.isEmpty())) {
+            final long rows = PostgresCounts.tableRows(em, getDomainClass());
+            if (rows > 0) {
+                return Count.estimated(rows);
+            }
+        }
+        final Specification<T> spec = Specification.where(base).and(new WhitelistFilteringSpecificationAdapter<>(filters, whitelist));
+        final long planned = PostgresCounts.plannedRows(em, getQuery(spec, Sort.unsorted()));
+        if (planned < 0) {
+            return count(base, filters, ESTIMATE_FALLBACK_CAP);
+        }
+        return Count.estimated(planned);
+    }
+
+    public void evictCachedCounts() {
+        cachedCounts.clear();
+    }
+
+    /**
+     * Counts are neither read from nor written to the cache in read-write
+     * transactions: they might see (or miss) the uncommitted writes of the
+     * transaction.
+     */
+    private Count cached(FilterRequest filters, long cap, Supplier<Count> counter) {
+        if (countCaching == null) {
+            return counter.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return counter.get();
+        }
+        final Map<String, List<String>> normalized = new TreeMap<>();
+        if (filters.filters != null) {
+            filters.filters.forEach((name, values) -> normalized.put(name, values == null ? null : Arrays.asList(values)));
+        }
+        final List<Object> key = Arrays.asList(cap, normalized);
+        final long now = System.nanoTime();
+        final CachedCount hit = cachedCounts.get(key);
+        if (hit != null && now - hit.expiresAt < 0) {
+            return hit.count;
+        }
+        final Count count = counter.get();
+        if (cachedCounts.size() >= countCaching.maxEntries()) {
+            cachedCounts.clear();
+        }
+        cachedCounts.put(key, new CachedCount(count, now + countCaching.ttlMillis() * 1_000_000));
+        return count;
+    }
+
     private static Pageable unsorted(Pageable page) {
         return page.isPaged() ? PageRequest.of(page.getPageNumber(), page.getPageSize()) : Pageable.unpaged();
     }
 
+    /**
+     * Detaches every entity once the consumer asks for the next one, so the
+     * persistence context does not grow with the stream. Entities that were
+     * already managed when the stream was opened are left managed.
+     */
+    private static class DetachingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final EntityManager em;
+        private final PersistenceContext context;
+        private final Set<Object> managed;
+        private final Iterator<T> results;
+        private T current;
+
+        public DetachingSpliterator(EntityManager em, PersistenceContext context, Set<Object> managed, Iterator<T> results) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.em = em;
+            this.context = context;
+            this.managed = managed;
+            this.results = results;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (current != null) {
+                //everything entering the context since the stream opened, not only the roots: detaching an entity only cascades to DETACH associations
+                for (Map.Entry<Object, EntityEntry> entry : context.reentrantSafeEntityEntries()) {
+                    //entities persisted by the consumer and not flushed yet are kept
+                    if (!managed.contains(entry.getKey()) && entry.getValue().isExistsInDatabase()) {
+                        em.detach(entry.getKey());
+                    }
+                }
+            }
+            current = null;
+            if (!results.hasNext()) {
+                return false;
+            }
+            current = results.next();
+            action.accept(current);
+            return true;
+        }
+    }
+
+    private static class CachedCount {
+
+        private final Count count;
+        private final long expiresAt;
+
+        public CachedCount(Count count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     public static class WhitelistFilteringSpecificationAdapter<T> implements Specification<T> {
 
         private final Map<String, String[]> requested;
@@ -161,6 +632,106 @@ public class JpaWhitelistFilteringRepositoryBase<T, ID extends Serializable> ext
         }
     }
 
+    public static class FetchPlanSpecificationAdapter<T> implements Specification<T> {
+
+        private final List<String> paths;
+        private final boolean collections;
+
+        /**
+         * Hibernate cannot fetch more than one bag (an unordered
+         * {@code Collection}, or a {@code List} without an
+         * {@code @OrderColumn}) in the same query, as their rows cannot be
+         * told apart: such plans are rejected.
+         */
+        public FetchPlanSpecificationAdapter(List<String> paths, EntityType<T> entity) {
+            final Set<String> collections = new TreeSet<>();
+            final Set<String> bags = new TreeSet<>();
+            for (String path : paths) {
+                traverse(entity, path, collections, bags);
+            }
+            if (bags.size() > 1) {
+                throw new InvalidFilterConfiguration(String.format("fetch plan %s fetches more than one bag %s: map them as a Set or a List with an @OrderColumn", paths, bags));
+            }
+            this.paths = paths;
+            this.collections = !collections.isEmpty();
+        }
+
+        public boolean fetchesCollections() {
+            return collections;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+            if (query.getResultType() == Long.class || query.getResultType() == long.class) {
+                return builder.conjunction();
+            }
+            for (String path : paths) {
+                FetchParent<?, ?> parent = root;
+                String fetchedPath = "";
+                for (String attribute : path.split("\\.")) {
+                    fetchedPath = fetchedPath.isEmpty() ? attribute : fetchedPath + "." + attribute;
+                    parent = fetched(parent, attribute, fetchedPath);
+                }
+            }
+            if (collections) {
+                query.distinct(true);
+            }
+            return builder.conjunction();
+        }
+
+        private static FetchParent<?, ?> fetched(FetchParent<?, ?> parent, String attribute, String path) {
+            for (Fetch<?, ?> fetch : parent.getFetches()) {
+                if (fetch.getAttribute().getName().equals(attribute)) {
+                    return fetch;
+                }
+            }
+            final Fetch<?, ?> fetch = parent.fetch(attribute, JoinType.LEFT);
+            Filters.reusableFetch(fetch, path);
+            return fetch;
+        }
+
+        private static void traverse(ManagedType<?> entity, String path, Set<String> collections, Set<String> bags) {
+            ManagedType<?> type = entity;
+            String traversed = "";
+            for (String attribute : path.split("\\.")) {
+                if (type == null) {
+                    throw new InvalidFilterConfiguration(String.format("fetch path '%s' traverses a non-managed type", path));
+                }
+                final Attribute<?, ?> a;
+                try {
+                    a = type.getAttribute(attribute);
+                } catch (IllegalArgumentException ex) {
+                    throw new InvalidFilterConfiguration(String.format("fetch path '%s' references a non-existent property %s", path, attribute));
+                }
+                traversed = traversed.isEmpty() ? attribute : traversed + "." + attribute;
+                final Object target;
+                if (a instanceof PluralAttribute) {
+                    final PluralAttribute<?, ?, ?> plural = (PluralAttribute<?, ?, ?>) a;
+                    collections.add(traversed);
+                    if (isBag(plural)) {
+                        bags.add(traversed);
+                    }
+                    target = plural.getElementType();
+                } else {
+                    target = ((SingularAttribute<?, ?>) a).getType();
+                }
+                type = target instanceof ManagedType ? (ManagedType<?>) target : null;
+            }
+        }
+
+        private static boolean isBag(PluralAttribute<?, ?, ?> attribute) {
+            switch (attribute.getCollectionType()) {
+                case COLLECTION:
+                    return true;
+                case LIST:
+                    final Member member = attribute.getJavaMember();
+                    return !(member instanceof AnnotatedElement && ((AnnotatedElement) member).isAnnotationPresent(OrderColumn.class));
+                default:
+                    return false;
+            }
+        }
+    }
+
     public static class SortSpecificationAdapter<T> implements Specification<T> {
 
         private final Sort sort;
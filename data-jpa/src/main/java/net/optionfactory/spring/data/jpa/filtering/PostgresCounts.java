@@ -0,0 +1,107 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.hibernate.FlushMode;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.hql.internal.ast.QueryTranslatorImpl;
+import org.hibernate.param.ParameterSpecification;
+import org.hibernate.persister.entity.Joinable;
+import org.hibernate.query.internal.AbstractProducedQuery;
+import org.hibernate.query.spi.QueryParameterBindings;
+
+/**
+ * Estimating on PostgreSQL. Estimating a filtered query needs its SQL to run
+ * it wrapped in {@code EXPLAIN}: JPA has no way to get it, so it is taken
+ * from Hibernate internals. When that fails (e.g. after a Hibernate upgrade)
+ * no estimate is returned and callers are expected to fall back to counting.
+ */
+class PostgresCounts {
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*([0-9.eE+]+)");
+
+    /**
+     * The row count of the entity table from {@code pg_class.reltuples}.
+     *
+     * @return the estimate; 0 (before PostgreSQL 14) or -1 when the table
+     * was never analyzed
+     */
+    public static long tableRows(EntityManager em, Class<?> domainClass) {
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final Joinable persister = (Joinable) session.getFactory().getMetamodel().entityPersister(domainClass);
+        final List<?> rows = em.createNativeQuery("select reltuples from pg_class where oid = to_regclass(?1)")
+                .setParameter(1, persister.getTableName())
+                .getResultList();
+        if (rows.isEmpty() || rows.get(0) == null) {
+            return -1;
+        }
+        return (long) ((Number) rows.get(0)).doubleValue();
+    }
+
+    /**
+     * The number of rows the planner expects the query to return.
+     *
+     * @return the estimate, or -1 when the query cannot be rendered to SQL
+     */
+    public static long plannedRows(EntityManager em, TypedQuery<?> query) {
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final RenderedQuery rendered;
+        try {
+            rendered = RenderedQuery.of(session, query);
+        } catch (RuntimeException | LinkageError ex) {
+            return -1;
+        }
+        //plain JDBC work skips the auto-flush JPQL queries get
+        if (session.isTransactionInProgress() && session.getHibernateFlushMode() != FlushMode.MANUAL && session.getHibernateFlushMode() != FlushMode.COMMIT) {
+            session.flush();
+        }
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("explain (format json) " + rendered.sql)) {
+                int position = 1;
+                for (ParameterSpecification specification : rendered.parameterSpecifications) {
+                    position += specification.bind(ps, rendered.parameters, session, position);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    final Matcher m = PLAN_ROWS.matcher(rs.getString(1));
+                    if (!m.find()) {
+                        throw new IllegalStateException("no row estimate in query plan");
+                    }
+                    return (long) Double.parseDouble(m.group(1));
+                }
+            }
+        });
+    }
+
+    private static class RenderedQuery {
+
+        public final String sql;
+        public final List<ParameterSpecification> parameterSpecifications;
+        public final QueryParameters parameters;
+
+        public RenderedQuery(String sql, List<ParameterSpecification> parameterSpecifications, QueryParameters parameters) {
+            this.sql = sql;
+            this.parameterSpecifications = parameterSpecifications;
+            this.parameters = parameters;
+        }
+
+        public static RenderedQuery of(SessionImplementor session, TypedQuery<?> query) {
+            final QueryParameterBindings bindings = query.unwrap(QueryParameterBindings.class);
+            final AbstractProducedQuery<?> produced = query.unwrap(AbstractProducedQuery.class);
+            final String hql = bindings.expandListValuedParameters(produced.getQueryString(), session);
+            final HQLQueryPlan plan = session.getFactory().getQueryPlanCache().getHQLQueryPlan(hql, false, session.getLoadQueryInfluencers().getEnabledFilters());
+            if (plan.getTranslators().length != 1 || !(plan.getTranslators()[0] instanceof QueryTranslatorImpl)) {
+                throw new IllegalStateException(String.format("cannot translate query '%s' to a single SQL statement", hql));
+            }
+            final QueryTranslatorImpl translator = (QueryTranslatorImpl) plan.getTranslators()[0];
+            return new RenderedQuery(translator.getSQLString(), translator.getCollectedParameterSpecifications(), produced.getQueryParameters());
+        }
+    }
+}
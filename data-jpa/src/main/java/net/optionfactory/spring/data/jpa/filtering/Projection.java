@@ -0,0 +1,106 @@
+package net.optionfactory.spring.data.jpa.filtering;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.Tuple;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.ProjectionInformation;
+
+/**
+ * How query results are mapped to a projection type: either a closed
+ * interface projection (backed by a proxy over the selected values) or a
+ * class with a public no-arg constructor whose public fields are populated
+ * by name. Each property name must be a basic attribute of the entity:
+ * selecting an association would inner join it, dropping the rows where it
+ * is null, and would return managed entities.
+ *
+ * @param <P> the projection type
+ */
+class Projection<P> {
+
+    private final Class<P> type;
+    private final List<String> properties;
+    private final ProjectionFactory factory;
+    private final Constructor<P> constructor;
+    private final List<Field> fields;
+
+    private Projection(Class<P> type, List<String> properties, ProjectionFactory factory, Constructor<P> constructor, List<Field> fields) {
+        this.type = type;
+        this.properties = properties;
+        this.factory = factory;
+        this.constructor = constructor;
+        this.fields = fields;
+    }
+
+    public static <P> Projection<P> of(Class<P> type, ManagedType<?> entity, ProjectionFactory factory) {
+        if (type.isInterface()) {
+            final ProjectionInformation information = factory.getProjectionInformation(type);
+            if (!information.isClosed()) {
+                throw new IllegalStateException(String.format("open projection %s is not supported", type.getSimpleName()));
+            }
+            final List<String> properties = information.getInputProperties().stream().map(PropertyDescriptor::getName).collect(Collectors.toList());
+            properties.forEach(property -> ensureBasic(type, entity, property));
+            return new Projection<>(type, properties, factory, null, null);
+        }
+        final List<Field> fields = Stream.of(type.getFields())
+                .filter(f -> !Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers()))
+                .collect(Collectors.toList());
+        fields.forEach(field -> ensureBasic(type, entity, field.getName()));
+        try {
+            final Constructor<P> constructor = type.getConstructor();
+            return new Projection<>(type, fields.stream().map(Field::getName).collect(Collectors.toList()), null, constructor, fields);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(String.format("projection %s has no public no-arg constructor", type.getSimpleName()), ex);
+        }
+    }
+
+    private static void ensureBasic(Class<?> type, ManagedType<?> entity, String property) {
+        final Attribute<?, ?> attribute;
+        try {
+            attribute = entity.getAttribute(property);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalStateException(String.format("projection %s: %s is not an attribute of %s", type.getSimpleName(), property, entity.getJavaType().getSimpleName()), ex);
+        }
+        if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+            throw new IllegalStateException(String.format("projection %s: %s of %s is not a basic attribute", type.getSimpleName(), property, entity.getJavaType().getSimpleName()));
+        }
+    }
+
+    public List<String> properties() {
+        return properties;
+    }
+
+    public P create(Tuple row) {
+        if (factory != null) {
+            final Map<String, Object> values = new LinkedHashMap<>();
+            for (String property : properties) {
+                values.put(property, row.get(property));
+            }
+            return factory.createProjection(type, values);
+        }
+        try {
+            final P projection = constructor.newInstance();
+            for (Field field : fields) {
+                field.set(projection, row.get(field.getName()));
+            }
+            return projection;
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex);
+        } catch (IllegalAccessException | InstantiationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
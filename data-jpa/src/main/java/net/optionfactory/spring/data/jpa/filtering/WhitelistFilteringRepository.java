@@ -2,8 +2,10 @@ package net.optionfactory.spring.data.jpa.filtering;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -71,6 +73,133 @@ public interface WhitelistFilteringRepository<T> {
      */
     Page<T> findAll(Specification<T> base, FilterRequest filters, Pageable pageable);
 
+    /**
+     * Finds a page of projections of the entries accepted by the given
+     * filters. Only the projected properties are selected: results are not
+     * managed entities. The projection is either a closed interface
+     * projection or a class with a public no-arg constructor whose public
+     * fields are named after the entity properties.
+     *
+     * @param <P> the projection type
+     * @param filters filters parameters
+     * @param pageable the requested page
+     * @param projection the projection type
+     * @return a page of projections
+     */
+    <P> Page<P> findAll(FilterRequest filters, Pageable pageable, Class<P> projection);
+
+    /**
+     * Finds a page of projections of the entries accepted by the given
+     * filters and base {@link Specification}.
+     *
+     * @param <P> the projection type
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param pageable the requested page
+     * @param projection the projection type
+     * @return a page of projections
+     */
+    <P> Page<P> findAll(Specification<T> base, FilterRequest filters, Pageable pageable, Class<P> projection);
+
+    /**
+     * Finds projections of all entries accepted by the given filters, ordered
+     * by a {@link Sort}.
+     *
+     * @param <P> the projection type
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @param projection the projection type
+     * @return the projections, sorted
+     */
+    <P> List<P> findAll(FilterRequest filters, Sort sort, Class<P> projection);
+
+    /**
+     * Finds projections of all entries accepted by the given filters and base
+     * {@link Specification}, ordered by a {@link Sort}.
+     *
+     * @param <P> the projection type
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @param projection the projection type
+     * @return the projections, sorted
+     */
+    <P> List<P> findAll(Specification<T> base, FilterRequest filters, Sort sort, Class<P> projection);
+
+    /**
+     * Finds all entries accepted by the given filters, ordered by a
+     * {@link Sort}, loading the associations of the {@link FetchPlan} in the
+     * same query.
+     *
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @param plan the associations to fetch
+     * @return the found entries, sorted
+     */
+    List<T> findAll(FilterRequest filters, Sort sort, FetchPlan plan);
+
+    /**
+     * Finds all entries accepted by the given filters and base
+     * {@link Specification}, ordered by a {@link Sort}, loading the
+     * associations of the {@link FetchPlan} in the same query.
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @param plan the associations to fetch
+     * @return the found entries, sorted
+     */
+    List<T> findAll(Specification<T> base, FilterRequest filters, Sort sort, FetchPlan plan);
+
+    /**
+     * Finds a page of entries accepted by the given filters, loading the
+     * associations of the {@link FetchPlan}. When collections are fetched,
+     * the ids of the page are selected first so that pagination still
+     * happens in the database.
+     *
+     * @param filters filters parameters
+     * @param pageable the requested page
+     * @param plan the associations to fetch
+     * @return a page of found entries
+     */
+    Page<T> findAll(FilterRequest filters, Pageable pageable, FetchPlan plan);
+
+    /**
+     * Finds a page of entries accepted by the given filters and base
+     * {@link Specification}, loading the associations of the
+     * {@link FetchPlan}.
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param pageable the requested page
+     * @param plan the associations to fetch
+     * @return a page of found entries
+     */
+    Page<T> findAll(Specification<T> base, FilterRequest filters, Pageable pageable, FetchPlan plan);
+
+    /**
+     * Finds a slice of entries accepted by the given filters. Unlike
+     * {@link #findAll(FilterRequest, Pageable)} no count query is issued: one
+     * more entry than the page size is fetched to know if there is a next
+     * slice.
+     *
+     * @param filters filters parameters
+     * @param pageable the requested slice
+     * @return a slice of found entries
+     */
+    Slice<T> findSlice(FilterRequest filters, Pageable pageable);
+
+    /**
+     * Finds a slice of entries accepted by the given filters and base
+     * {@link Specification}, without issuing a count query.
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param pageable the requested slice
+     * @return a slice of found entries
+     */
+    Slice<T> findSlice(Specification<T> base, FilterRequest filters, Pageable pageable);
+
     /**
      * Finds all entries accepted by the given filters, ordered by a
      * {@link Sort}.
@@ -93,7 +222,71 @@ public interface WhitelistFilteringRepository<T> {
     List<T> findAll(Specification<T> base, FilterRequest filters, Sort sort);
 
     /**
-     * Counts all entries accepted by the given filters.
+     * Streams all entries accepted by the given filters, ordered by a
+     * {@link Sort}, fetching rows in batches through a server-side cursor:
+     * memory use does not depend on the number of entries. Entries are loaded
+     * read-only and, once the next one is requested, each one is detached
+     * along with the entities loaded with it (eager associations, initialized
+     * lazy ones), unless they were already managed when the stream was
+     * opened. Must
+     * be called in a transaction, and the stream must be closed. The fetch
+     * size (default
+     * {@value JpaWhitelistFilteringRepositoryBase#DEFAULT_STREAM_FETCH_SIZE})
+     * can be overridden with a
+     * {@link org.springframework.data.jpa.repository.QueryHints} on the
+     * repository method.
+     *
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @return the found entries, sorted
+     */
+    Stream<T> streamAll(FilterRequest filters, Sort sort);
+
+    /**
+     * Streams all entries accepted by the given filters and base
+     * {@link Specification}, ordered by a {@link Sort}, through a
+     * server-side cursor.
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @return the found entries, sorted
+     */
+    Stream<T> streamAll(Specification<T> base, FilterRequest filters, Sort sort);
+
+    /**
+     * Finds a slice of entries accepted by the given filters using keyset
+     * pagination: rows are located by seeking past the sort key values in the
+     * {@link Cursor} (the entity id is appended as a tie-breaker) instead of
+     * skipping an offset, so every slice costs the same. Sort keys must be
+     * non-null and of a type supported by
+     * {@link net.optionfactory.spring.data.jpa.filtering.filters.spi.Values}.
+     *
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @param cursor where the slice starts, {@link Cursor#first()} if null
+     * @param limit the maximum number of entries
+     * @return a slice of found entries, with cursors to the adjacent slices
+     */
+    CursorSlice<T> findAll(FilterRequest filters, Sort sort, Cursor cursor, int limit);
+
+    /**
+     * Finds a slice of entries accepted by the given filters and base
+     * {@link Specification} using keyset pagination. Orders added by the base
+     * specification are part of the key.
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param sort the order of property values
+     * @param cursor where the slice starts, {@link Cursor#first()} if null
+     * @param limit the maximum number of entries
+     * @return a slice of found entries, with cursors to the adjacent slices
+     */
+    CursorSlice<T> findAll(Specification<T> base, FilterRequest filters, Sort sort, Cursor cursor, int limit);
+
+    /**
+     * Counts all entries accepted by the given filters. Cached when the
+     * entity is annotated with {@link CachedCounts}.
      *
      * @param filters filters parameters
      * @return the total number of entries accepted by the applied filters
@@ -109,4 +302,56 @@ public interface WhitelistFilteringRepository<T> {
      * @return the total number of entries accepted by the applied filters
      */
     long count(Specification<T> base, FilterRequest filters);
+
+    /**
+     * Counts the entries accepted by the given filters, stopping at
+     * {@code cap}: beyond it an {@link Count.Kind#AT_LEAST} count is returned.
+     * The ids of up to {@code cap + 1} entries are fetched, so the cap should
+     * be small. Cached when the entity is annotated with {@link CachedCounts}.
+     *
+     * @param filters filters parameters
+     * @param cap the maximum number of entries to count
+     * @return the exact count, or {@code cap} as a lower bound
+     */
+    Count count(FilterRequest filters, long cap);
+
+    /**
+     * Counts the entries accepted by the given filters and base
+     * {@link Specification}, stopping at {@code cap}.
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @param cap the maximum number of entries to count
+     * @return the exact count, or {@code cap} as a lower bound
+     */
+    Count count(Specification<T> base, FilterRequest filters, long cap);
+
+    /**
+     * Estimates the number of entries accepted by the given filters without
+     * counting them (PostgreSQL only): table statistics are used when
+     * unfiltered, the planner row estimate otherwise. When the query cannot
+     * be explained, entries are counted up to
+     * {@value JpaWhitelistFilteringRepositoryBase#ESTIMATE_FALLBACK_CAP}
+     * instead, as in {@link #count(FilterRequest, long)}.
+     *
+     * @param filters filters parameters
+     * @return the estimated number of entries
+     */
+    Count estimateCount(FilterRequest filters);
+
+    /**
+     * Estimates the number of entries accepted by the given filters and base
+     * {@link Specification} from the planner row estimate (PostgreSQL only).
+     *
+     * @param base a base filter that should be always applied
+     * @param filters filters parameters
+     * @return the estimated number of entries
+     */
+    Count estimateCount(Specification<T> base, FilterRequest filters);
+
+    /**
+     * Evicts the counts cached for an entity annotated with
+     * {@link CachedCounts}, e.g. after a bulk update.
+     */
+    void evictCachedCounts();
 }
@@ -1,5 +1,7 @@
 package net.optionfactory.spring.data.jpa.filtering.filters.spi;
 
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import javax.persistence.metamodel.*;
@@ -12,6 +14,8 @@ import java.util.List;
  */
 public interface Filters {
 
+    public static final String REUSABLE_FETCH_ALIAS_PREFIX = "reusable_fetch_";
+
     public static void ensurePropertyExists(Annotation annotation, EntityType<?> entity, String property) {
         final List<String> propertyChain = Arrays.asList(property.split("\\."));
         getAttributeFromPropertyChain(annotation, entity, propertyChain);
@@ -69,11 +73,39 @@ public interface Filters {
         Path<?> path = root;
         for (String part : propertyChain) {
             try {
-                path = path.get(part);
+                path = path instanceof From ? joinedOrGet((From<?, ?>) path, part) : path.get(part);
             } catch (IllegalArgumentException exception) {
                 throw new InvalidFilterConfiguration(String.format("property chain %s from entity %s references a non-existent property %s.%s", propertyChain, root.getJavaType().getSimpleName(), path.getJavaType().getSimpleName(), part));
             }
         }
         return (Path<T>) path;
     }
+
+    /**
+     * Marks a fetch join added by a fetch plan as reusable by property chains
+     * traversing the same singular association.
+     */
+    public static void reusableFetch(Fetch<?, ?> fetch, String path) {
+        if (fetch instanceof From) {
+            ((From<?, ?>) fetch).alias(REUSABLE_FETCH_ALIAS_PREFIX + path.replace('.', '_'));
+        }
+    }
+
+    /**
+     * Continues a property chain through a fetch of a singular attribute
+     * marked with {@link #reusableFetch}, so that filtering does not add a
+     * second, implicit join on the same association. Other joins (e.g. the
+     * left joins added for sorting) are not reused.
+     */
+    private static Path<?> joinedOrGet(From<?, ?> from, String attribute) {
+        for (Fetch<?, ?> fetch : from.getFetches()) {
+            if (fetch instanceof From && fetch.getAttribute() instanceof SingularAttribute && fetch.getAttribute().getName().equals(attribute)) {
+                final String alias = ((From<?, ?>) fetch).getAlias();
+                if (alias != null && alias.startsWith(REUSABLE_FETCH_ALIAS_PREFIX)) {
+                    return (From<?, ?>) fetch;
+                }
+            }
+        }
+        return from.get(attribute);
+    }
 }
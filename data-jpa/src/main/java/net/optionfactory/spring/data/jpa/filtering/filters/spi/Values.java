@@ -1,9 +1,50 @@
 package net.optionfactory.spring.data.jpa.filtering.filters.spi;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import org.springframework.util.NumberUtils;
 
 public interface Values {
 
+    /**
+     * Whether values of the target type can be converted from a string and
+     * formatted back by {@link #format(Object)}.
+     */
+    public static boolean isConvertible(Class<?> target) {
+        final List<Class<?>> convertible = List.of(
+                String.class, Number.class, byte.class, short.class, int.class, long.class, float.class, double.class, char.class,
+                boolean.class, Boolean.class, Enum.class, Instant.class, LocalDate.class, LocalDateTime.class, LocalTime.class,
+                OffsetDateTime.class, ZonedDateTime.class, UUID.class
+        );
+        return target == Date.class || target == Timestamp.class || convertible.stream().anyMatch(c -> c.isAssignableFrom(target));
+    }
+
+    /**
+     * Formats a value so that {@link #convert(String, Class)} gives it back:
+     * enums by name and dates as instants.
+     */
+    public static String format(Object value) {
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant().toString();
+        }
+        if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+        }
+        return value.toString();
+    }
+
     public static Object convert(String value, Class<?> target) {
         if (value == null) {
             return null;
@@ -35,6 +76,44 @@ public interface Values {
         if (char.class.isAssignableFrom(target)) {
             return value.charAt(0);
         }
+        if (boolean.class.isAssignableFrom(target) || Boolean.class.isAssignableFrom(target)) {
+            if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                return Boolean.parseBoolean(value);
+            }
+            throw new InvalidFilterRequest(String.format("Unconvertible value '%s' to %s", value, target.getSimpleName()));
+        }
+        try {
+            if (target.isEnum()) {
+                return Enum.valueOf((Class<? extends Enum>) target, value);
+            }
+            if (Instant.class.isAssignableFrom(target)) {
+                return Instant.parse(value);
+            }
+            if (LocalDate.class.isAssignableFrom(target)) {
+                return LocalDate.parse(value);
+            }
+            if (LocalDateTime.class.isAssignableFrom(target)) {
+                return LocalDateTime.parse(value);
+            }
+            if (LocalTime.class.isAssignableFrom(target)) {
+                return LocalTime.parse(value);
+            }
+            if (OffsetDateTime.class.isAssignableFrom(target)) {
+                return OffsetDateTime.parse(value);
+            }
+            if (ZonedDateTime.class.isAssignableFrom(target)) {
+                return ZonedDateTime.parse(value);
+            }
+            if (target == Date.class || target == Timestamp.class) {
+                //a Timestamp keeps the sub-millisecond part of timestamp columns
+                return Timestamp.from(Instant.parse(value));
+            }
+            if (UUID.class.isAssignableFrom(target)) {
+                return UUID.fromString(value);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidFilterRequest(String.format("Unconvertible value '%s' to %s", value, target.getSimpleName()));
+        }
         throw new InvalidFilterRequest(String.format("Unconvertible value '%s' to %s", value, target.getSimpleName()));
     }
 }
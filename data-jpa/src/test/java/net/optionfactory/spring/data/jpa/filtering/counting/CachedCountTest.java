@@ -0,0 +1,69 @@
+package net.optionfactory.spring.data.jpa.filtering.counting;
+
+import java.util.Map;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = HibernateTestConfig.class)
+public class CachedCountTest {
+
+    @Autowired
+    private EntityForCountRepository repo;
+    @Autowired
+    private TransactionTemplate tx;
+
+    @Before
+    public void setup() {
+        repo.evictCachedCounts();
+        tx.execute(txs -> {
+            repo.deleteAllInBatch();
+            for (long id = 1; id <= 5; ++id) {
+                repo.save(entity(id, id % 2));
+            }
+            return null;
+        });
+    }
+
+    @After
+    public void teardown() {
+        tx.execute(txs -> {
+            repo.deleteAllInBatch();
+            return null;
+        });
+        repo.evictCachedCounts();
+    }
+
+    @Test
+    public void countsAreCachedByFilters() {
+        Assert.assertEquals(2, repo.count(FilterRequest.of(Map.of("a", new String[]{"EQ", "0"}))));
+        tx.execute(txs -> repo.save(entity(6, 0)));
+        Assert.assertEquals(2, repo.count(FilterRequest.of(Map.of("a", new String[]{"EQ", "0"}))));
+        Assert.assertEquals(6, repo.count(FilterRequest.of(Map.of("a", new String[]{"GTE", "0"}))));
+    }
+
+    @Test
+    public void evictedCountsAreCountedAgain() {
+        final FilterRequest even = FilterRequest.of(Map.of("a", new String[]{"EQ", "0"}));
+        Assert.assertEquals(2, repo.count(even));
+        tx.execute(txs -> repo.save(entity(6, 0)));
+        repo.evictCachedCounts();
+        Assert.assertEquals(3, repo.count(even));
+    }
+
+    private static EntityForCount entity(long id, long a) {
+        final EntityForCount entity = new EntityForCount();
+        entity.id = id;
+        entity.a = a;
+        return entity;
+    }
+}
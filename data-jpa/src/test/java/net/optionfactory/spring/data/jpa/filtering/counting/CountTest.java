@@ -0,0 +1,65 @@
+package net.optionfactory.spring.data.jpa.filtering.counting;
+
+import java.util.Map;
+import net.optionfactory.spring.data.jpa.filtering.Count;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = HibernateTestConfig.class)
+@Transactional
+public class CountTest {
+
+    @Autowired
+    private EntityForCountRepository repo;
+
+    @Before
+    public void setup() {
+        repo.evictCachedCounts();
+        for (long id = 1; id <= 5; ++id) {
+            repo.save(entity(id, id % 2));
+        }
+    }
+
+    @Test
+    public void cappedCountIsALowerBoundBeyondTheCap() {
+        final Count capped = repo.count(FilterRequest.unfiltered(), 3);
+        Assert.assertEquals(Count.Kind.AT_LEAST, capped.kind);
+        Assert.assertEquals("3+", capped.toString());
+        final Count exact = repo.count(FilterRequest.of(Map.of("a", new String[]{"EQ", "1"})), 10);
+        Assert.assertEquals(Count.Kind.EXACT, exact.kind);
+        Assert.assertEquals(3, exact.value);
+    }
+
+    @Test
+    public void readWriteTransactionsSeeTheirOwnWrites() {
+        final FilterRequest even = FilterRequest.of(Map.of("a", new String[]{"EQ", "0"}));
+        Assert.assertEquals(2, repo.count(even));
+        repo.saveAndFlush(entity(6, 0));
+        Assert.assertEquals(3, repo.count(even));
+        Assert.assertEquals("3", repo.count(even, 10).toString());
+    }
+
+    @Test
+    public void canEstimateCounts() {
+        Assert.assertEquals(Count.Kind.ESTIMATED, repo.estimateCount(FilterRequest.unfiltered()).kind);
+        final Count filtered = repo.estimateCount(FilterRequest.of(Map.of("a", new String[]{"EQ", "1"})));
+        Assert.assertEquals(Count.Kind.ESTIMATED, filtered.kind);
+        Assert.assertTrue(filtered.value >= 0);
+    }
+
+    private static EntityForCount entity(long id, long a) {
+        final EntityForCount entity = new EntityForCount();
+        entity.id = id;
+        entity.a = a;
+        return entity;
+    }
+}
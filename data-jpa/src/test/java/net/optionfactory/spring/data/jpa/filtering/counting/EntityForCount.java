@@ -0,0 +1,17 @@
+package net.optionfactory.spring.data.jpa.filtering.counting;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import net.optionfactory.spring.data.jpa.filtering.CachedCounts;
+import net.optionfactory.spring.data.jpa.filtering.filters.NumberCompare;
+
+@Entity
+@CachedCounts(ttlMillis = 60_000)
+@NumberCompare(name = "a", property = "a")
+public class EntityForCount {
+
+    @Id
+    public long id;
+
+    public long a;
+}
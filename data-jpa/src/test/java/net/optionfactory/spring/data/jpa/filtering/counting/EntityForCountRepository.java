@@ -0,0 +1,7 @@
+package net.optionfactory.spring.data.jpa.filtering.counting;
+
+import net.optionfactory.spring.data.jpa.filtering.WhitelistFilteringRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EntityForCountRepository extends JpaRepository<EntityForCount, Long>, WhitelistFilteringRepository<EntityForCount> {
+}
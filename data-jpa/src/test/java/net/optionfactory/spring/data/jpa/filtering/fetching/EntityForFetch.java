@@ -0,0 +1,26 @@
+package net.optionfactory.spring.data.jpa.filtering.fetching;
+
+import java.util.List;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import net.optionfactory.spring.data.jpa.filtering.filters.TextCompare;
+
+@Entity
+@NamedEntityGraph(name = "withOwner", attributeNodes = @NamedAttributeNode("owner"))
+@TextCompare(name = "ownerName", property = "owner.name")
+public class EntityForFetch {
+
+    @Id
+    public long id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    public Owner owner;
+    @ElementCollection
+    public List<String> tags;
+    @ElementCollection
+    public List<String> notes;
+}
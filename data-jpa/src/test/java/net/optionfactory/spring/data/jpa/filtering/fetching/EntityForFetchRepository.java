@@ -0,0 +1,7 @@
+package net.optionfactory.spring.data.jpa.filtering.fetching;
+
+import net.optionfactory.spring.data.jpa.filtering.WhitelistFilteringRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EntityForFetchRepository extends JpaRepository<EntityForFetch, Long>, WhitelistFilteringRepository<EntityForFetch> {
+}
@@ -0,0 +1,100 @@
+package net.optionfactory.spring.data.jpa.filtering.fetching;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import net.optionfactory.spring.data.jpa.filtering.FetchPlan;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.data.jpa.filtering.filters.TextCompare;
+import net.optionfactory.spring.data.jpa.filtering.filters.spi.InvalidFilterConfiguration;
+import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import net.optionfactory.spring.spring.data.jpa.SqlCapture;
+import org.hibernate.Hibernate;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = HibernateTestConfig.class)
+@Transactional
+public class FetchPlanTest {
+
+    @Autowired
+    private EntityForFetchRepository repo;
+    @Autowired
+    private OwnersRepository owners;
+    @PersistenceContext
+    private EntityManager em;
+
+    @Before
+    public void setup() {
+        final Owner mario = owners.save(owner(1, "mario"));
+        final Owner luigi = owners.save(owner(2, "luigi"));
+        for (long id = 1; id <= 5; ++id) {
+            repo.save(entity(id, id % 2 == 0 ? mario : luigi, List.of("a" + id, "b" + id, "c" + id)));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @After
+    public void clearCapturedStatements() {
+        SqlCapture.clear();
+    }
+
+    @Test
+    public void filtersReuseFetchedAssociations() {
+        final FilterRequest byOwner = FilterRequest.of(Map.of("ownerName", new String[]{
+            TextCompare.Operator.EQUALS.toString(),
+            TextCompare.Mode.CASE_SENSITIVE.toString(),
+            "mario"
+        }));
+        SqlCapture.clear();
+        final List<EntityForFetch> all = repo.findAll(byOwner, Sort.by("id"), FetchPlan.graph("withOwner"));
+        Assert.assertEquals(List.of(2L, 4L), all.stream().map(e -> e.id).collect(Collectors.toList()));
+        Assert.assertTrue(all.stream().allMatch(e -> Hibernate.isInitialized(e.owner)));
+        final List<String> statements = SqlCapture.statements();
+        Assert.assertEquals(1, statements.size());
+        Assert.assertEquals(statements.get(0), 1, statements.get(0).split(" join ").length - 1);
+    }
+
+    @Test(expected = InvalidFilterConfiguration.class)
+    public void plansFetchingTwoBagsAreRejected() {
+        repo.findAll(FilterRequest.unfiltered(), Sort.by("id"), FetchPlan.joins("tags", "notes"));
+    }
+
+    @Test
+    public void canPageWhileFetchingCollections() {
+        final Page<EntityForFetch> page = repo.findAll(FilterRequest.unfiltered(), PageRequest.of(0, 2, Sort.by(Sort.Order.desc("id"))), FetchPlan.joins("owner", "tags"));
+        Assert.assertEquals(5, page.getTotalElements());
+        Assert.assertEquals(List.of(5L, 4L), page.stream().map(e -> e.id).collect(Collectors.toList()));
+        Assert.assertTrue(page.stream().allMatch(e -> Hibernate.isInitialized(e.tags) && e.tags.size() == 3));
+        Assert.assertTrue(page.stream().allMatch(e -> Hibernate.isInitialized(e.owner)));
+    }
+
+    private static Owner owner(long id, String name) {
+        final Owner owner = new Owner();
+        owner.id = id;
+        owner.name = name;
+        return owner;
+    }
+
+    private static EntityForFetch entity(long id, Owner owner, List<String> tags) {
+        final EntityForFetch entity = new EntityForFetch();
+        entity.id = id;
+        entity.owner = owner;
+        entity.tags = tags;
+        return entity;
+    }
+}
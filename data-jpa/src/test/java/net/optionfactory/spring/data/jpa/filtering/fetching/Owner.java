@@ -0,0 +1,12 @@
+package net.optionfactory.spring.data.jpa.filtering.fetching;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+public class Owner {
+
+    @Id
+    public long id;
+    public String name;
+}
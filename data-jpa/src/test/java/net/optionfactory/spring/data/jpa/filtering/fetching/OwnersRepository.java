@@ -0,0 +1,6 @@
+package net.optionfactory.spring.data.jpa.filtering.fetching;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OwnersRepository extends JpaRepository<Owner, Long> {
+}
@@ -0,0 +1,33 @@
+package net.optionfactory.spring.data.jpa.filtering.keyset;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import net.optionfactory.spring.data.jpa.filtering.filters.NumberCompare;
+
+@Entity
+@NumberCompare(name = "a", property = "a")
+public class EntityForKeyset {
+
+    @Id
+    public long id;
+
+    public long a;
+
+    @Column(nullable = false)
+    public String b;
+
+    public String c;
+
+    public boolean flag;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date at;
+
+    @Column(nullable = false)
+    public byte[] payload;
+}
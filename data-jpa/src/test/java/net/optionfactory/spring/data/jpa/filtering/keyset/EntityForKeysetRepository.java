@@ -0,0 +1,7 @@
+package net.optionfactory.spring.data.jpa.filtering.keyset;
+
+import net.optionfactory.spring.data.jpa.filtering.WhitelistFilteringRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EntityForKeysetRepository extends JpaRepository<EntityForKeyset, Long>, WhitelistFilteringRepository<EntityForKeyset> {
+}
@@ -0,0 +1,134 @@
+package net.optionfactory.spring.data.jpa.filtering.keyset;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import net.optionfactory.spring.data.jpa.filtering.Cursor;
+import net.optionfactory.spring.data.jpa.filtering.CursorSlice;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.data.jpa.filtering.filters.spi.InvalidFilterRequest;
+import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import net.optionfactory.spring.spring.data.jpa.SqlCapture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = HibernateTestConfig.class)
+@Transactional
+public class KeysetTest {
+
+    private static final Sort SORT = Sort.by(Sort.Order.asc("a"), Sort.Order.desc("b"));
+
+    @Autowired
+    private EntityForKeysetRepository repo;
+
+    @Before
+    public void setup() {
+        repo.save(entity(1, 2, "A"));
+        repo.save(entity(2, 1, "B"));
+        repo.save(entity(3, 1, "C"));
+        repo.save(entity(4, 1, "D"));
+        repo.save(entity(5, 2, "E"));
+        repo.save(entity(6, 2, "F"));
+        repo.save(entity(7, 2, "F"));
+    }
+
+    @After
+    public void clearCapturedStatements() {
+        SqlCapture.clear();
+    }
+
+    @Test
+    public void canWalkForwardThroughAllSlices() {
+        final List<String> seen = new ArrayList<>();
+        Cursor cursor = Cursor.first();
+        int slices = 0;
+        do {
+            final CursorSlice<EntityForKeyset> slice = repo.findAll(FilterRequest.unfiltered(), SORT, cursor, 3);
+            slice.content.forEach(e -> seen.add(e.b + e.id));
+            cursor = slice.next == null ? null : Cursor.parse(slice.next.encode());
+            ++slices;
+        } while (cursor != null);
+        Assert.assertEquals(List.of("D4", "C3", "B2", "F6", "F7", "E5", "A1"), seen);
+        Assert.assertEquals(3, slices);
+    }
+
+    @Test
+    public void canWalkBackwardFromTheLastSlice() {
+        final CursorSlice<EntityForKeyset> last = repo.findAll(FilterRequest.unfiltered(), SORT, Cursor.last(), 3);
+        Assert.assertEquals(List.of("F7", "E5", "A1"), names(last));
+        Assert.assertFalse(last.hasNext());
+        final CursorSlice<EntityForKeyset> middle = repo.findAll(FilterRequest.unfiltered(), SORT, last.previous, 3);
+        Assert.assertEquals(List.of("C3", "B2", "F6"), names(middle));
+        final CursorSlice<EntityForKeyset> first = repo.findAll(FilterRequest.unfiltered(), SORT, middle.previous, 3);
+        Assert.assertEquals(List.of("D4"), names(first));
+        Assert.assertFalse(first.hasPrevious());
+        Assert.assertEquals(List.of("C3", "B2", "F6"), names(repo.findAll(FilterRequest.unfiltered(), SORT, first.next, 3)));
+    }
+
+    @Test
+    public void composesWithWhitelistedFilters() {
+        final FilterRequest filters = FilterRequest.of(Map.of("a", new String[]{"EQ", "2"}));
+        final CursorSlice<EntityForKeyset> first = repo.findAll(filters, SORT, null, 2);
+        Assert.assertEquals(List.of("F6", "F7"), names(first));
+        final CursorSlice<EntityForKeyset> second = repo.findAll(filters, SORT, first.next, 2);
+        Assert.assertEquals(List.of("E5", "A1"), names(second));
+        Assert.assertFalse(second.hasNext());
+    }
+
+    @Test
+    public void walksThroughSlicesSortedByTimestampsWithSubMillisecondPrecision() {
+        final Sort byTime = Sort.by(Sort.Order.asc("at"));
+        final CursorSlice<EntityForKeyset> first = repo.findAll(FilterRequest.unfiltered(), byTime, null, 4);
+        Assert.assertEquals(List.of("A1", "B2", "C3", "D4"), names(first));
+        final CursorSlice<EntityForKeyset> second = repo.findAll(FilterRequest.unfiltered(), byTime, Cursor.parse(first.next.encode()), 4);
+        Assert.assertEquals(List.of("E5", "F6", "F7"), names(second));
+    }
+
+    @Test
+    public void nullableSortKeysAreRejectedBeforeQuerying() {
+        SqlCapture.clear();
+        try {
+            repo.findAll(FilterRequest.unfiltered(), Sort.by("c"), null, 3);
+            Assert.fail("expected a nullable sort key to be rejected");
+        } catch (InvalidFilterRequest ex) {
+            Assert.assertEquals(List.of(), SqlCapture.statements());
+        }
+    }
+
+    @Test(expected = InvalidFilterRequest.class)
+    public void sortKeysOfUnsupportedTypesAreRejected() {
+        repo.findAll(FilterRequest.unfiltered(), Sort.by("payload"), null, 3);
+    }
+
+    @Test(expected = InvalidFilterRequest.class)
+    public void booleanKeysOtherThanTrueOrFalseAreRejected() {
+        repo.findAll(FilterRequest.unfiltered(), Sort.by("flag"), new Cursor(Cursor.Direction.NEXT, List.of("yes", "1")), 3);
+    }
+
+    private static List<String> names(CursorSlice<EntityForKeyset> slice) {
+        return slice.content.stream().map(e -> e.b + e.id).collect(Collectors.toList());
+    }
+
+    private static EntityForKeyset entity(long id, long a, String b) {
+        final EntityForKeyset entity = new EntityForKeyset();
+        entity.id = id;
+        entity.a = a;
+        entity.b = b;
+        //microseconds apart: truncating the cursor to milliseconds would skip rows
+        entity.at = Timestamp.from(Instant.parse("2021-01-01T00:00:00Z").plusNanos(id * 1000));
+        entity.payload = new byte[]{(byte) id};
+        return entity;
+    }
+}
@@ -0,0 +1,23 @@
+package net.optionfactory.spring.data.jpa.filtering.projections;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import net.optionfactory.spring.data.jpa.filtering.filters.NumberCompare;
+
+@Entity
+@NumberCompare(name = "a", property = "a")
+public class EntityForProjection {
+
+    @Id
+    public long id;
+
+    public long a;
+
+    public String b;
+
+    public String c;
+
+    @ManyToOne
+    public EntityForProjection parent;
+}
@@ -0,0 +1,26 @@
+package net.optionfactory.spring.data.jpa.filtering.projections;
+
+import net.optionfactory.spring.data.jpa.filtering.WhitelistFilteringRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EntityForProjectionRepository extends JpaRepository<EntityForProjection, Long>, WhitelistFilteringRepository<EntityForProjection> {
+
+    public interface IdAndB {
+
+        long getId();
+
+        String getB();
+    }
+
+    public interface IdAndParent {
+
+        long getId();
+
+        EntityForProjection getParent();
+    }
+
+    public static class OnlyC {
+
+        public String c;
+    }
+}
@@ -0,0 +1,74 @@
+package net.optionfactory.spring.data.jpa.filtering.projections;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.data.jpa.filtering.projections.EntityForProjectionRepository.IdAndB;
+import net.optionfactory.spring.data.jpa.filtering.projections.EntityForProjectionRepository.IdAndParent;
+import net.optionfactory.spring.data.jpa.filtering.projections.EntityForProjectionRepository.OnlyC;
+import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = HibernateTestConfig.class)
+@Transactional
+public class ProjectionTest {
+
+    @Autowired
+    private EntityForProjectionRepository repo;
+
+    @Before
+    public void setup() {
+        repo.save(entity(1, 1, "A", "x"));
+        repo.save(entity(2, 2, "B", "y"));
+        repo.save(entity(3, 1, "C", "z"));
+        final EntityForProjection child = entity(4, 1, "D", "w");
+        child.parent = repo.getOne(1L);
+        repo.save(child);
+    }
+
+    @Test
+    public void canProjectPagesOnInterfaces() {
+        final FilterRequest filters = FilterRequest.of(Map.of("a", new String[]{"EQ", "1"}));
+        final Page<IdAndB> page = repo.findAll(filters, PageRequest.of(0, 2, Sort.by(Sort.Order.desc("b"))), IdAndB.class);
+        Assert.assertEquals(3, page.getTotalElements());
+        Assert.assertEquals(List.of("4D", "3C"), page.stream().map(p -> p.getId() + p.getB()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void canProjectOnClassesWithPublicFields() {
+        final List<OnlyC> all = repo.findAll(FilterRequest.unfiltered(), Sort.by("id"), OnlyC.class);
+        Assert.assertEquals(List.of("x", "y", "z", "w"), all.stream().map(p -> p.c).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void rowsWithANullAssociationAreKept() {
+        final List<IdAndB> all = repo.findAll(FilterRequest.unfiltered(), Sort.by("id"), IdAndB.class);
+        Assert.assertEquals(List.of(1L, 2L, 3L, 4L), all.stream().map(IdAndB::getId).collect(Collectors.toList()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void associationsCannotBeProjected() {
+        repo.findAll(FilterRequest.unfiltered(), Sort.by("id"), IdAndParent.class);
+    }
+
+    private static EntityForProjection entity(long id, long a, String b, String c) {
+        final EntityForProjection entity = new EntityForProjection();
+        entity.id = id;
+        entity.a = a;
+        entity.b = b;
+        entity.c = c;
+        return entity;
+    }
+}
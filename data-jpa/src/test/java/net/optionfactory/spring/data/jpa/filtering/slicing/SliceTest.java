@@ -1,12 +1,19 @@
 package net.optionfactory.spring.data.jpa.filtering.slicing;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
 import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import net.optionfactory.spring.spring.data.jpa.SqlCapture;
+import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.support.TransactionTemplate;
 
 public class SliceTest {
@@ -31,6 +38,11 @@ public class SliceTest {
         });
     }
 
+    @After
+    public void clearCapturedStatements() {
+        SqlCapture.clear();
+    }
+
     @Test
     public void textSlice() {
         
@@ -38,4 +50,28 @@ public class SliceTest {
         Slice<EntityForSlice> findByName = repo.findByName("asd", p);
         findByName.hasPrevious();
     }
+
+    @Test
+    public void canFindSliceWithoutCounting() {
+        tx.execute(txs -> {
+            for (long id = 1; id <= 5; ++id) {
+                final EntityForSlice e = new EntityForSlice();
+                e.id = id;
+                e.name = "e" + id;
+                repo.save(e);
+            }
+            return null;
+        });
+        final Pageable first = PageRequest.of(0, 3, Sort.by("id"));
+        SqlCapture.clear();
+        final Slice<EntityForSlice> slice = repo.findSlice(FilterRequest.unfiltered(), first);
+        final List<String> statements = SqlCapture.statements();
+        Assert.assertEquals(1, statements.size());
+        Assert.assertFalse(statements.get(0).toLowerCase().contains("count("));
+        Assert.assertEquals(List.of(1L, 2L, 3L), slice.stream().map(e -> e.id).collect(Collectors.toList()));
+        Assert.assertTrue(slice.hasNext());
+        final Slice<EntityForSlice> last = repo.findSlice(FilterRequest.unfiltered(), slice.nextPageable());
+        Assert.assertEquals(List.of(4L, 5L, 123L), last.stream().map(e -> e.id).collect(Collectors.toList()));
+        Assert.assertFalse(last.hasNext());
+    }
 }
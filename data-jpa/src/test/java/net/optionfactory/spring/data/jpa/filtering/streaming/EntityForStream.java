@@ -0,0 +1,20 @@
+package net.optionfactory.spring.data.jpa.filtering.streaming;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import net.optionfactory.spring.data.jpa.filtering.filters.NumberCompare;
+
+@Entity
+@NumberCompare(name = "a", property = "a")
+public class EntityForStream {
+
+    @Id
+    public long id;
+
+    public long a;
+
+    @ManyToOne(fetch = FetchType.EAGER)
+    public GroupForStream group;
+}
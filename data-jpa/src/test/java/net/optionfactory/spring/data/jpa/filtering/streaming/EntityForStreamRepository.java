@@ -0,0 +1,16 @@
+package net.optionfactory.spring.data.jpa.filtering.streaming;
+
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.data.jpa.filtering.WhitelistFilteringRepository;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+public interface EntityForStreamRepository extends JpaRepository<EntityForStream, Long>, WhitelistFilteringRepository<EntityForStream> {
+
+    @Override
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "2"))
+    Stream<EntityForStream> streamAll(FilterRequest filters, Sort sort);
+}
@@ -0,0 +1,13 @@
+package net.optionfactory.spring.data.jpa.filtering.streaming;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+public class GroupForStream {
+
+    @Id
+    public long id;
+
+    public String name;
+}
@@ -0,0 +1,132 @@
+package net.optionfactory.spring.data.jpa.filtering.streaming;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import net.optionfactory.spring.data.jpa.filtering.FilterRequest;
+import net.optionfactory.spring.spring.data.jpa.HibernateTestConfig;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = HibernateTestConfig.class)
+@Transactional
+public class StreamTest {
+
+    @Autowired
+    private EntityForStreamRepository repo;
+    @PersistenceContext
+    private EntityManager em;
+
+    @Before
+    public void setup() {
+        for (long id = 1; id <= 7; ++id) {
+            repo.save(entity(id, id % 2));
+        }
+    }
+
+    @Test
+    public void canStreamFilteredAndSorted() {
+        final FilterRequest odd = FilterRequest.of(Map.of("a", new String[]{"EQ", "1"}));
+        try (Stream<EntityForStream> stream = repo.streamAll(odd, Sort.by(Sort.Order.desc("id")))) {
+            Assert.assertEquals(List.of(7L, 5L, 3L, 1L), stream.map(e -> e.id).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void consumedEntitiesAreDetached() {
+        em.flush();
+        em.clear();
+        try (Stream<EntityForStream> stream = repo.streamAll(FilterRequest.unfiltered(), Sort.by("id"))) {
+            final List<EntityForStream> seen = stream.collect(Collectors.toList());
+            Assert.assertEquals(7, seen.size());
+            Assert.assertFalse(em.contains(seen.get(0)));
+            Assert.assertFalse(em.contains(seen.get(5)));
+        }
+    }
+
+    @Test
+    public void alreadyManagedEntitiesAreNotDetached() {
+        em.flush();
+        em.clear();
+        final EntityForStream managed = em.find(EntityForStream.class, 3L);
+        try (Stream<EntityForStream> stream = repo.streamAll(FilterRequest.unfiltered(), Sort.by("id"))) {
+            final List<EntityForStream> seen = stream.collect(Collectors.toList());
+            Assert.assertSame(managed, seen.get(2));
+            Assert.assertTrue(em.contains(managed));
+            Assert.assertFalse(em.contains(seen.get(1)));
+        }
+    }
+
+    @Test
+    public void eagerAssociationsLoadedWithConsumedEntitiesAreDetached() {
+        final GroupForStream group = new GroupForStream();
+        group.id = 1;
+        group.name = "group";
+        em.persist(group);
+        em.find(EntityForStream.class, 2L).group = group;
+        em.flush();
+        em.clear();
+        try (Stream<EntityForStream> stream = repo.streamAll(FilterRequest.unfiltered(), Sort.by("id"))) {
+            final List<EntityForStream> seen = stream.collect(Collectors.toList());
+            Assert.assertNotNull(seen.get(1).group);
+            Assert.assertFalse(em.contains(seen.get(1).group));
+        }
+        Assert.assertEquals(0, em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities());
+    }
+
+    @Test
+    public void alreadyManagedAssociationsAreNotDetached() {
+        final GroupForStream group = new GroupForStream();
+        group.id = 1;
+        group.name = "group";
+        em.persist(group);
+        em.find(EntityForStream.class, 2L).group = group;
+        em.flush();
+        em.clear();
+        final GroupForStream managed = em.find(GroupForStream.class, 1L);
+        try (Stream<EntityForStream> stream = repo.streamAll(FilterRequest.unfiltered(), Sort.by("id"))) {
+            final List<EntityForStream> seen = stream.collect(Collectors.toList());
+            Assert.assertSame(managed, seen.get(1).group);
+            Assert.assertTrue(em.contains(managed));
+            Assert.assertFalse(em.contains(seen.get(1)));
+        }
+    }
+
+    @Test
+    public void fetchSizeCanBeOverriddenWithQueryHints() {
+        em.flush();
+        try (Stream<EntityForStream> stream = repo.streamAll(FilterRequest.unfiltered(), Sort.by("id"))) {
+            stream.findFirst();
+            //with a fetch size of 2 the server-side cursor is still open
+            Assert.assertEquals(1, openCursors());
+        }
+        try (Stream<EntityForStream> stream = repo.streamAll(null, FilterRequest.unfiltered(), Sort.by("id"))) {
+            stream.findFirst();
+            //the default fetch size reads all rows at once
+            Assert.assertEquals(0, openCursors());
+        }
+    }
+
+    private long openCursors() {
+        return ((Number) em.createNativeQuery("select count(*) from pg_cursors where statement not like '%pg_cursors%'").getSingleResult()).longValue();
+    }
+
+    private static EntityForStream entity(long id, long a) {
+        final EntityForStream entity = new EntityForStream();
+        entity.id = id;
+        entity.a = a;
+        return entity;
+    }
+}
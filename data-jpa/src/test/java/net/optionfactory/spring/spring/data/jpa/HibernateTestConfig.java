@@ -36,6 +36,7 @@ public class HibernateTestConfig {
         hibernateProperties.put("hibernate.show_sql", false);
         hibernateProperties.put("hibernate.format_sql", false);
         hibernateProperties.put("hibernate.generate_statistics", false);
+        hibernateProperties.put("hibernate.session_factory.statement_inspector", SqlCapture.class.getName());
         final LocalSessionFactoryBuilder builder = new LocalSessionFactoryBuilder(dataSource);
         builder.addProperties(hibernateProperties);
         builder.scanPackages(TestMarker.class.getPackage().getName());
@@ -0,0 +1,28 @@
+package net.optionfactory.spring.spring.data.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+public class SqlCapture implements StatementInspector {
+
+    private static final List<String> statements = new ArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        record(sql);
+        return sql;
+    }
+
+    private static synchronized void record(String sql) {
+        statements.add(sql);
+    }
+
+    public static synchronized void clear() {
+        statements.clear();
+    }
+
+    public static synchronized List<String> statements() {
+        return List.copyOf(statements);
+    }
+}
@@ -0,0 +1,58 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.UpstreamOps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyAsStringBenchmark {
+
+    @Param({"application/json", "text/xml;charset=UTF-8", "application/octet-stream", "multipart/mixed"})
+    public String contentType;
+
+    @Param({"256", "16384"})
+    public int size;
+
+    private MediaType mediaType;
+    private ByteArrayResource body;
+
+    @Setup
+    public void setup() {
+        this.mediaType = MediaType.parseMediaType(contentType);
+        final var sb = new StringBuilder("{\"items\":[");
+        while (sb.length() < size - 2) {
+            sb.append("\"abcdefghij\",");
+        }
+        sb.setLength(Math.min(sb.length(), size - 2));
+        sb.append("]}");
+        this.body = new ByteArrayResource(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String bodyAsString() {
+        return UpstreamOps.bodyAsString(mediaType, false, body);
+    }
+
+    @Benchmark
+    public String bodyAsStringBounded() {
+        return UpstreamOps.bodyAsString(mediaType, false, body, 1024);
+    }
+}
@@ -0,0 +1,67 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.digest.AuthenticationChallengeParser;
+import net.optionfactory.spring.upstream.digest.AuthenticationChallengeParser.AuthenticationChallenge;
+import net.optionfactory.spring.upstream.digest.DigestAuth;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+    private static final String CHALLENGE = "Digest realm=\"testrealm@host.com\", qop=\"auth,auth-int\", nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"";
+    private static final String SHA256_CHALLENGE = "Digest realm=\"http-auth@example.org\", qop=\"auth, auth-int\", algorithm=SHA-256, nonce=\"7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v\", opaque=\"FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS\"";
+    private static final byte[] BODY = "{\"query\":\"benchmark\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final AuthenticationChallengeParser parser = new AuthenticationChallengeParser();
+    private final DigestAuth digest = new DigestAuth("Mufasa", "Circle Of Life", () -> 172953915);
+    private final String[] freshChallenges = new String[4096];
+    private int next;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i != freshChallenges.length; ++i) {
+            freshChallenges[i] = String.format("Digest realm=\"testrealm@host.com\", qop=\"auth\", nonce=\"%032x\", opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"", i);
+        }
+    }
+
+    @Benchmark
+    public AuthenticationChallenge parseChallenge() {
+        return parser.parse(CHALLENGE);
+    }
+
+    @Benchmark
+    public String authHeader() {
+        return digest.authHeader("GET", "/dir/index.html", CHALLENGE);
+    }
+
+    /**
+     * Servers usually send a new nonce with every challenge: measures the
+     * challenge cache misses.
+     */
+    @Benchmark
+    public String authHeaderFreshNonce() {
+        next = (next + 1) & (freshChallenges.length - 1);
+        return digest.authHeader("GET", "/dir/index.html", freshChallenges[next]);
+    }
+
+    @Benchmark
+    public String authHeaderSha256AuthInt() {
+        return digest.authHeader("POST", "/dir/index.html", SHA256_CHALLENGE, BODY);
+    }
+}
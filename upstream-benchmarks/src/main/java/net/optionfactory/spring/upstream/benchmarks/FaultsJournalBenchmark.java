@@ -0,0 +1,92 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler.UpstreamFault;
+import net.optionfactory.spring.upstream.faults.journal.FaultsJournal;
+import net.optionfactory.spring.upstream.faults.journal.FaultsJournalCodec;
+import net.optionfactory.spring.upstream.faults.spooler.FaultsBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+/**
+ * Request-thread cost of journaling a fault: encoding, copying it into the
+ * mapped segment and forwarding it to a {@code FaultsBuffer}, as an
+ * {@code FaultsEmailsSpooler} would. Sampled, so that percentiles are
+ * reported. Segments are spooled (and deleted) every iteration to keep the
+ * journal directory bounded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FaultsJournalBenchmark {
+
+    @Param({"256", "2048"})
+    public int bodySize;
+
+    private Path directory;
+    private FaultsBuffer<String> buffer;
+    private FaultsJournal<String> journal;
+    private UpstreamFault<String> fault;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("faults-journal-benchmark");
+        this.buffer = FaultsBuffer.defaults();
+        final var codec = new FaultsJournalCodec<String>(ctx -> ctx, s -> s, 4096);
+        this.journal = new FaultsJournal<>(directory, 1024 * 1024, Duration.ofMillis(100), codec, buffer::add);
+        final String body = "x".repeat(bodySize);
+        this.fault = UpstreamFault.of("ctx", "1", URI.create("http://upstream/endpoint"), HttpStatus.BAD_GATEWAY, MediaType.APPLICATION_JSON, Instant.now(), body, Instant.now(), body, new IllegalStateException("boom"));
+    }
+
+    @Setup(Level.Iteration)
+    public void release() {
+        journal.spool(() -> {
+            buffer.drain();
+            return true;
+        });
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        journal.add(fault);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addContended() {
+        journal.add(fault);
+    }
+}
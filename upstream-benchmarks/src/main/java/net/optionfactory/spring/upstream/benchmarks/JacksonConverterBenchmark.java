@@ -0,0 +1,131 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Reading and writing through the {@link MappingJackson2HttpMessageConverter}
+ * the rest port installs, as opposed to the raw {@link ObjectMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonConverterBenchmark {
+
+    public static class Item {
+
+        public long id;
+        public String name;
+        public String description;
+        public double price;
+        public long updatedAt;
+    }
+
+    public static class Page {
+
+        public int page;
+        public long total;
+        public List<Item> items;
+    }
+
+    @Param({"1", "100"})
+    public int items;
+
+    private MappingJackson2HttpMessageConverter converter;
+    private Page page;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        final var mapper = new ObjectMapper();
+        this.converter = new MappingJackson2HttpMessageConverter(mapper);
+        this.page = new Page();
+        this.page.page = 1;
+        this.page.total = items;
+        this.page.items = new ArrayList<>();
+        for (int i = 0; i != items; ++i) {
+            final var item = new Item();
+            item.id = i;
+            item.name = "item-" + i;
+            item.description = "a reasonably sized description for item " + i;
+            item.price = i * 1.25;
+            item.updatedAt = 1_600_000_000_000L + i;
+            this.page.items.add(item);
+        }
+        this.serialized = mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Object read() throws Exception {
+        return converter.read(Page.class, new InMemoryInput(serialized));
+    }
+
+    @Benchmark
+    public int write() throws Exception {
+        final var output = new InMemoryOutput();
+        converter.write(page, MediaType.APPLICATION_JSON, output);
+        return output.body.size();
+    }
+
+    private static class InMemoryInput implements HttpInputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final byte[] body;
+
+        public InMemoryInput(byte[] body) {
+            this.headers.setContentType(MediaType.APPLICATION_JSON);
+            this.body = body;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private static class InMemoryOutput implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
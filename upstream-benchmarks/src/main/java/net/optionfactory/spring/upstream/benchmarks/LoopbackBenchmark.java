@@ -0,0 +1,76 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.rest.UpstreamRestPort;
+import net.optionfactory.spring.upstream.standin.StandinResponse;
+import net.optionfactory.spring.upstream.standin.StandinScript;
+import net.optionfactory.spring.upstream.standin.UpstreamStandin;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * A whole {@link UpstreamRestPort} exchange against an {@link UpstreamStandin}
+ * on the loopback interface: request mapping, interceptors, the pooled
+ * HttpClient and response mapping, with no upstream latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    @Param({"64", "8192"})
+    public int responseSize;
+
+    private UpstreamStandin standin;
+    private CloseableHttpClient client;
+    private UpstreamRestPort<Void> port;
+    private URI uri;
+
+    @Setup
+    public void setup() {
+        final var sb = new StringBuilder("{\"text\":\"");
+        while (sb.length() < responseSize - 2) {
+            sb.append('x');
+        }
+        sb.append("\"}");
+        this.standin = new UpstreamStandin(8, 0);
+        this.standin.script("/loopback", StandinScript.always(StandinResponse.json(sb.toString())));
+        this.uri = standin.uri("/loopback");
+        this.client = HttpClients.custom().setMaxConnPerRoute(16).setMaxConnTotal(16).build();
+        this.port = new UpstreamRestPort<>("loopback", () -> "1", new ObjectMapper(), client, List.of());
+    }
+
+    @TearDown
+    public void teardown() throws Exception {
+        client.close();
+        standin.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<Map> exchange() {
+        return port.exchange(null, "loopback", RequestEntity.get(uri).build(), Map.class);
+    }
+}
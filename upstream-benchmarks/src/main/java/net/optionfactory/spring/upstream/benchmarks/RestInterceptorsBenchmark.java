@@ -0,0 +1,179 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ExchangeContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ResponseContext;
+import net.optionfactory.spring.upstream.rest.UpstreamCompression;
+import net.optionfactory.spring.upstream.rest.UpstreamRestPort.RestInterceptors;
+import net.optionfactory.spring.upstream.timings.UpstreamInterceptorTimings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * The per-call overhead of {@link RestInterceptors}: context bookkeeping,
+ * body buffering and interceptor dispatch around an in-memory execution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestInterceptorsBenchmark {
+
+    @Param({"0", "4"})
+    public int interceptors;
+
+    @Param({"false", "true"})
+    public boolean streaming;
+
+    @Param({"256", "16384"})
+    public int responseSize;
+
+    @Param({"false", "true"})
+    public boolean timed;
+
+    private final ThreadLocal<ExchangeContext<Void>> contexts = new ThreadLocal<>();
+    private RestInterceptors<Void> restInterceptors;
+    private byte[] requestBody;
+    private byte[] responseBody;
+
+    @Setup
+    public void setup() {
+        final List<UpstreamInterceptor<Void>> chain = new ArrayList<>();
+        for (int i = 0; i != interceptors; ++i) {
+            chain.add(new TouchingInterceptor());
+        }
+        this.restInterceptors = new RestInterceptors<>("bench", UpstreamCompression.disabled(), timed ? new UpstreamInterceptorTimings().instrument(chain) : chain, contexts, streaming);
+        this.requestBody = "{\"query\":\"benchmark\"}".getBytes(StandardCharsets.UTF_8);
+        this.responseBody = new byte[responseSize];
+    }
+
+    @Benchmark
+    public void intercept(Blackhole bh) throws Exception {
+        final var context = new ExchangeContext<Void>();
+        context.prepare = new PrepareContext<>();
+        context.prepare.upstreamId = "bench";
+        context.prepare.endpointId = "endpoint";
+        context.prepare.requestId = "1";
+        contexts.set(context);
+        try {
+            final ClientHttpRequestExecution execution = (request, body) -> new InMemoryResponse(responseBody);
+            try (ClientHttpResponse response = restInterceptors.intercept(new InMemoryRequest(), requestBody, execution)) {
+                bh.consume(response.getBody().read());
+            }
+            bh.consume(context.response);
+        } finally {
+            contexts.remove();
+        }
+    }
+
+    private static class TouchingInterceptor implements UpstreamInterceptor<Void> {
+
+        @Override
+        public void before(PrepareContext<Void> prepare, RequestContext request) {
+            request.headers.getContentType();
+        }
+
+        @Override
+        public void remotingSuccess(PrepareContext<Void> prepare, RequestContext request, ResponseContext response) {
+            response.headers.getContentType();
+        }
+    }
+
+    private static class InMemoryRequest implements HttpRequest {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        public InMemoryRequest() {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+
+        @Override
+        public String getMethodValue() {
+            return "POST";
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return HttpMethod.POST;
+        }
+
+        @Override
+        public URI getURI() {
+            return URI.create("http://localhost/bench");
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private static class InMemoryResponse implements ClientHttpResponse {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final InputStream body;
+
+        public InMemoryResponse(byte[] body) {
+            this.headers.setContentType(MediaType.APPLICATION_JSON);
+            this.headers.setContentLength(body.length);
+            this.body = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return 200;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package net.optionfactory.spring.upstream.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.Main;
+
+/**
+ * Entry point of {@code benchmarks.jar}: runs JMH with the allocation profiler
+ * ({@code -prof gc}) enabled and results written as JSON, so that runs of
+ * different releases can be compared. Any JMH option can still be passed,
+ * e.g. {@code java -jar benchmarks.jar DigestBenchmark -f 1}.
+ */
+public class UpstreamBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        final List<String> options = new ArrayList<>(List.of(args));
+        if (!hasOption(options, "-prof", "gc")) {
+            options.addAll(List.of("-prof", "gc"));
+        }
+        if (!hasOption(options, "-rf", null)) {
+            options.addAll(List.of("-rf", "json", "-rff", "upstream-benchmarks.json"));
+        }
+        Main.main(options.toArray(String[]::new));
+    }
+
+    private static boolean hasOption(List<String> options, String name, String value) {
+        for (int i = 0; i != options.size(); ++i) {
+            if (!name.equals(options.get(i))) {
+                continue;
+            }
+            if (value == null || (i + 1 < options.size() && options.get(i + 1).startsWith(value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,272 @@
+package net.optionfactory.spring.upstream.faults.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * An {@code UpstreamFaultsSpooler} appending faults to a local journal of
+ * memory-mapped segments before forwarding them to a delegate (usually a
+ * {@code FaultsEmailsSpooler}). Appending is a copy into the mapped segment:
+ * a background thread forces written segments to disk every
+ * {@code forceInterval}, unmaps the ones that were rotated and prepares (and
+ * pre-faults) the next one, so a process crash loses nothing and a power loss at most one
+ * interval. Faults are forwarded to the delegate outside of the journal lock.
+ * Faults journaled by a previous run are replayed into the delegate on
+ * construction. Segments are deleted once their faults have been spooled by
+ * {@link #spool(BooleanSupplier)}.
+ */
+public class FaultsJournal<T> implements UpstreamFaultsSpooler<T>, Closeable {
+
+    private static final int PAGE_SIZE = 4096;
+    private final Logger logger = LoggerFactory.getLogger(FaultsJournal.class);
+    private final Path directory;
+    private final int segmentSize;
+    private final FaultsJournalCodec<T> codec;
+    private final UpstreamFaultsSpooler<T> delegate;
+    private final FaultsJournalReader<T> reader;
+    private final ScheduledExecutorService flusher;
+    //shared by adds between journaling and forwarding a fault, exclusive while a spool rotates
+    private final ReadWriteLock forwarding = new ReentrantReadWriteLock();
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+    private final int replayed;
+    private MappedByteBuffer segment;
+    private MappedByteBuffer next;
+    private long sequence;
+    private boolean dirty;
+    private boolean closed;
+    private long appended;
+    private long dropped;
+
+    public FaultsJournal(Path directory, int segmentSize, Duration forceInterval, FaultsJournalCodec<T> codec, UpstreamFaultsSpooler<T> delegate) {
+        Assert.isTrue(Files.isDirectory(directory), "directory must be a directory");
+        Assert.isTrue(Files.isWritable(directory), "directory must be writable");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+        this.delegate = delegate;
+        this.reader = new FaultsJournalReader<>(directory, codec);
+        final List<Path> existing = reader.segments();
+        this.replayed = reader.replay(delegate);
+        if (replayed != 0) {
+            logger.info("[faults-journal] replayed {} faults from {} segments", replayed, existing.size());
+        }
+        this.sequence = existing.isEmpty() ? 0 : FaultsJournalReader.sequence(existing.get(existing.size() - 1));
+        this.segment = open(++sequence);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "faults-journal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        final long period = forceInterval.toMillis();
+        this.flusher.scheduleWithFixedDelay(this::force, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void add(UpstreamFault<T> fault) {
+        final byte[] record = codec.encode(fault);
+        final var crc = new CRC32();
+        crc.update(record);
+        //a spool waits for the faults already journaled to reach the delegate before releasing their segment
+        forwarding.readLock().lock();
+        try {
+            append(record, (int) crc.getValue());
+            delegate.add(fault);
+        } finally {
+            forwarding.readLock().unlock();
+        }
+    }
+
+    private synchronized void append(byte[] record, int checksum) {
+        if (closed || record.length + FaultsJournalReader.HEADER_SIZE > segmentSize) {
+            ++dropped;
+            return;
+        }
+        if (segment.remaining() < record.length + FaultsJournalReader.HEADER_SIZE) {
+            rotate();
+        }
+        //the length is written last: a zero length marks the end of the segment
+        final int position = segment.position();
+        segment.putInt(position + 4, checksum);
+        segment.position(position + FaultsJournalReader.HEADER_SIZE);
+        segment.put(record);
+        segment.putInt(position, record.length);
+        dirty = true;
+        ++appended;
+    }
+
+    /**
+     * Runs the delegate spooling and, when it succeeds, deletes the segments
+     * holding the faults it was given.
+     */
+    public boolean spool(BooleanSupplier spooler) {
+        final long mark;
+        forwarding.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (!closed && segment.position() != 0) {
+                    rotate();
+                }
+                //once closed, the current segment is complete too
+                mark = closed ? sequence + 1 : sequence;
+            }
+        } finally {
+            forwarding.writeLock().unlock();
+        }
+        if (!spooler.getAsBoolean()) {
+            return false;
+        }
+        for (Path spooled : reader.segments()) {
+            if (FaultsJournalReader.sequence(spooled) >= mark) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(spooled);
+            } catch (IOException ex) {
+                logger.warn("[faults-journal] failed to delete {}: {}", spooled.getFileName(), ex.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void rotate() {
+        unforced.add(segment);
+        ++sequence;
+        segment = next != null ? next : open(sequence);
+        next = null;
+    }
+
+    private MappedByteBuffer open(long sequence) {
+        final Path path = directory.resolve(FaultsJournalReader.segmentName(sequence));
+        //the segment may have been prepared, still empty, by the flusher
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void force() {
+        final List<MappedByteBuffer> toForce;
+        final MappedByteBuffer current;
+        synchronized (this) {
+            toForce = new ArrayList<>(unforced);
+            unforced.clear();
+            current = segment;
+            if (dirty) {
+                toForce.add(segment);
+                dirty = false;
+            }
+        }
+        for (MappedByteBuffer buffer : toForce) {
+            try {
+                buffer.force();
+            } catch (RuntimeException ex) {
+                logger.warn("[faults-journal] failed to force segment", ex);
+            }
+        }
+        //rotated segments are no longer written: release their mappings instead of waiting for a GC
+        for (MappedByteBuffer buffer : toForce) {
+            if (buffer != current) {
+                FaultsJournalReader.unmap(buffer);
+            }
+        }
+        prepareNext();
+    }
+
+    private void prepareNext() {
+        final long nextSequence;
+        synchronized (this) {
+            if (closed || next != null) {
+                return;
+            }
+            nextSequence = sequence + 1;
+        }
+        try {
+            final MappedByteBuffer prepared = open(nextSequence);
+            prefault(prepared);
+            synchronized (this) {
+                if (sequence + 1 == nextSequence) {
+                    next = prepared;
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("[faults-journal] failed to prepare segment", ex);
+        }
+    }
+
+    /**
+     * Writes a zero byte in each page of an empty segment, so that the page
+     * faults of its first touch are taken here rather than by the request
+     * threads appending to it. Zeros leave the segment empty.
+     */
+    private static void prefault(MappedByteBuffer prepared) {
+        for (int offset = 0; offset < prepared.capacity(); offset += PAGE_SIZE) {
+            prepared.put(offset, (byte) 0);
+        }
+    }
+
+    public synchronized long appended() {
+        return appended;
+    }
+
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    public int replayed() {
+        return replayed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("[faults-journal] flusher did not terminate, segments are left mapped");
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warn("[faults-journal] interrupted while closing, segments are left mapped");
+            return;
+        }
+        force();
+        //no add writes once closed and the flusher is gone: nothing uses the mappings anymore
+        final MappedByteBuffer current;
+        final MappedByteBuffer prepared;
+        synchronized (this) {
+            current = segment;
+            prepared = next;
+            next = null;
+        }
+        FaultsJournalReader.unmap(current);
+        if (prepared != null) {
+            FaultsJournalReader.unmap(prepared);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package net.optionfactory.spring.upstream.faults.journal;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.function.Function;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler.UpstreamFault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+/**
+ * Binary encoding of journaled faults. Strings are length-prefixed UTF-8
+ * (-1 for null), instants are epoch millis (-1 for null), bodies are
+ * truncated to {@code maxBodyChars} and exceptions are reduced to their type
+ * and message. Contexts are encoded as strings by the given functions.
+ */
+public class FaultsJournalCodec<T> {
+
+    private static final byte VERSION = 1;
+
+    private final Function<T, String> contextWriter;
+    private final Function<String, T> contextReader;
+    private final int maxBodyChars;
+
+    public FaultsJournalCodec(Function<T, String> contextWriter, Function<String, T> contextReader, int maxBodyChars) {
+        this.contextWriter = contextWriter;
+        this.contextReader = contextReader;
+        this.maxBodyChars = maxBodyChars;
+    }
+
+    public static <T> FaultsJournalCodec<T> withoutContext(int maxBodyChars) {
+        return new FaultsJournalCodec<>(ctx -> null, s -> null, maxBodyChars);
+    }
+
+    public byte[] encode(UpstreamFault<T> fault) {
+        final byte[][] strings = new byte[][]{
+            utf8(fault.context != null ? contextWriter.apply(fault.context) : null),
+            utf8(fault.reqId),
+            utf8(fault.uri != null ? fault.uri.toString() : null),
+            utf8(fault.contentType != null ? fault.contentType.toString() : null),
+            utf8(truncate(fault.request)),
+            utf8(truncate(fault.response)),
+            utf8(fault.exception != null ? exceptionType(fault.exception) : null),
+            utf8(fault.exception != null ? fault.exception.getMessage() : null)
+        };
+        int size = 1 + 4 + 8 + 8;
+        for (byte[] s : strings) {
+            size += 4 + (s != null ? s.length : 0);
+        }
+        final var buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.putInt(fault.status != null ? fault.status.value() : -1);
+        buffer.putLong(fault.requestInstant != null ? fault.requestInstant.toEpochMilli() : -1);
+        buffer.putLong(fault.responseInstant != null ? fault.responseInstant.toEpochMilli() : -1);
+        for (byte[] s : strings) {
+            buffer.putInt(s != null ? s.length : -1);
+            if (s != null) {
+                buffer.put(s);
+            }
+        }
+        return buffer.array();
+    }
+
+    public UpstreamFault<T> decode(ByteBuffer buffer) {
+        final byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalStateException(String.format("unsupported journal record version %s", version));
+        }
+        final int status = buffer.getInt();
+        final long requestInstant = buffer.getLong();
+        final long responseInstant = buffer.getLong();
+        final String context = string(buffer);
+        final String reqId = string(buffer);
+        final String uri = string(buffer);
+        final String contentType = string(buffer);
+        final String request = string(buffer);
+        final String response = string(buffer);
+        final String exceptionType = string(buffer);
+        final String exceptionMessage = string(buffer);
+        return UpstreamFault.of(
+                context != null ? contextReader.apply(context) : null,
+                reqId,
+                uri != null ? URI.create(uri) : null,
+                status != -1 ? HttpStatus.resolve(status) : null,
+                contentType != null ? MediaType.parseMediaType(contentType) : null,
+                requestInstant != -1 ? Instant.ofEpochMilli(requestInstant) : null,
+                request,
+                responseInstant != -1 ? Instant.ofEpochMilli(responseInstant) : null,
+                response,
+                exceptionType != null ? new JournaledException(exceptionType, exceptionMessage) : null
+        );
+    }
+
+    private String truncate(String body) {
+        if (body == null || body.length() <= maxBodyChars) {
+            return body;
+        }
+        return String.format("%s...(truncated, %s chars)", body.substring(0, maxBodyChars), body.length());
+    }
+
+    private static String exceptionType(Throwable ex) {
+        return ex instanceof JournaledException ? ((JournaledException) ex).getType() : ex.getClass().getName();
+    }
+
+    private static byte[] utf8(String s) {
+        return s != null ? s.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stands in for the exception of a fault replayed from the journal.
+     */
+    public static class JournaledException extends RuntimeException {
+
+        private final String type;
+
+        public JournaledException(String type, String message) {
+            super(message != null ? String.format("%s: %s", type, message) : type, null, false, false);
+            this.type = type;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.optionfactory.spring.upstream.faults.journal;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads journal segments. Each record is framed as {@code length, crc32,
+ * payload}; a zero length marks the end of the written part of a segment, a
+ * checksum mismatch a record torn by a crash.
+ */
+public class FaultsJournalReader<T> {
+
+    public static final String SEGMENT_PREFIX = "faults-";
+    public static final String SEGMENT_SUFFIX = ".journal";
+    public static final int HEADER_SIZE = 8;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> type = Class.forName("sun.misc.Unsafe");
+            final Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            //unmapping is left to the garbage collector
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(FaultsJournalReader.class);
+    private final Path directory;
+    private final FaultsJournalCodec<T> codec;
+
+    public FaultsJournalReader(Path directory, FaultsJournalCodec<T> codec) {
+        this.directory = directory;
+        this.codec = codec;
+    }
+
+    public static String segmentName(long sequence) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Releases the mapping of a segment without waiting for the buffer to be
+     * garbage collected. The buffer must not be used afterwards. Returns false
+     * when the running JVM does not allow it: the mapping is then released
+     * by the garbage collector.
+     */
+    public static boolean unmap(ByteBuffer mapped) {
+        if (INVOKE_CLEANER == null || !mapped.isDirect()) {
+            return false;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, mapped);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    public static long sequence(Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    public List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> p.getFileName().toString().matches(SEGMENT_PREFIX + "\\d{16}" + SEGMENT_SUFFIX.replace(".", "\\.")))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public int replay(UpstreamFaultsSpooler<T> target) {
+        int replayed = 0;
+        for (Path segment : segments()) {
+            replayed += replay(segment, target);
+        }
+        return replayed;
+    }
+
+    public int replay(Path segment, UpstreamFaultsSpooler<T> target) {
+        ByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final var crc = new CRC32();
+            int replayed = 0;
+            while (buffer.remaining() >= HEADER_SIZE) {
+                final int length = buffer.getInt();
+                final int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                final ByteBuffer payload = buffer.slice().limit(length);
+                buffer.position(buffer.position() + length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("[faults-journal] torn record in {}, skipping the rest of the segment", segment.getFileName());
+                    break;
+                }
+                try {
+                    target.add(codec.decode(payload));
+                    ++replayed;
+                } catch (RuntimeException ex) {
+                    logger.warn("[faults-journal] unreadable record in {}: {}", segment.getFileName(), ex.getMessage());
+                }
+            }
+            return replayed;
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            //decoded faults copy what they need out of the segment
+            if (buffer != null) {
+                unmap(buffer);
+            }
+        }
+    }
+}
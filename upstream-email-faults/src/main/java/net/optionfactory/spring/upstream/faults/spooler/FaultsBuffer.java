@@ -0,0 +1,155 @@
+package net.optionfactory.spring.upstream.faults.spooler;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler.UpstreamFault;
+import net.optionfactory.spring.upstream.faults.journal.FaultsJournalCodec.JournaledException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A bounded buffer of upstream faults. The most recent {@code maxFaults}
+ * faults are kept, with request and response bodies truncated to
+ * {@code maxBodyChars}; identical faults (same URI, status and exception
+ * class) are also aggregated, up to {@code maxAggregates} distinct ones.
+ * Faults evicted from the buffer and faults not fitting in any aggregate are
+ * counted.
+ */
+public class FaultsBuffer<T> {
+
+    private final int maxFaults;
+    private final int maxAggregates;
+    private final int maxBodyChars;
+    private final ArrayDeque<UpstreamFault<T>> faults;
+    private final Map<Key, Aggregate<T>> aggregates = new LinkedHashMap<>();
+    private long droppedFaults;
+    private long droppedAggregates;
+
+    public FaultsBuffer(int maxFaults, int maxAggregates, int maxBodyChars) {
+        this.maxFaults = maxFaults;
+        this.maxAggregates = maxAggregates;
+        this.maxBodyChars = maxBodyChars;
+        this.faults = new ArrayDeque<>(maxFaults);
+    }
+
+    public static <T> FaultsBuffer<T> defaults() {
+        return new FaultsBuffer<>(100, 1000, 4096);
+    }
+
+    public synchronized void add(UpstreamFault<T> fault) {
+        final var truncated = UpstreamFault.of(fault.context, fault.reqId, fault.uri, fault.status, fault.contentType, fault.requestInstant, truncate(fault.request), fault.responseInstant, truncate(fault.response), fault.exception);
+        if (faults.size() == maxFaults) {
+            faults.poll();
+            ++droppedFaults;
+        }
+        faults.add(truncated);
+        final var key = new Key(fault.uri, fault.status, exceptionType(fault.exception));
+        final var seen = fault.responseInstant != null ? fault.responseInstant : Instant.now();
+        final var aggregate = aggregates.get(key);
+        if (aggregate != null) {
+            ++aggregate.count;
+            aggregate.lastSeen = seen;
+            aggregate.last = truncated;
+            return;
+        }
+        if (aggregates.size() == maxAggregates) {
+            ++droppedAggregates;
+            return;
+        }
+        final var created = new Aggregate<T>();
+        created.uri = key.uri;
+        created.status = key.status;
+        created.exceptionType = key.exceptionType;
+        created.count = 1;
+        created.firstSeen = seen;
+        created.lastSeen = seen;
+        created.last = truncated;
+        aggregates.put(key, created);
+    }
+
+    public synchronized Batch<T> drain() {
+        final var batch = new Batch<T>();
+        batch.faults = new ArrayList<>(faults);
+        batch.aggregates = new ArrayList<>(aggregates.values());
+        batch.dropped = droppedFaults;
+        batch.droppedAggregates = droppedAggregates;
+        faults.clear();
+        aggregates.clear();
+        droppedFaults = 0;
+        droppedAggregates = 0;
+        return batch;
+    }
+
+    public synchronized boolean isEmpty() {
+        return faults.isEmpty();
+    }
+
+    private static String exceptionType(Throwable ex) {
+        if (ex == null) {
+            return null;
+        }
+        return ex instanceof JournaledException ? ((JournaledException) ex).getType() : ex.getClass().getName();
+    }
+
+    private String truncate(String body) {
+        if (body == null || body.length() <= maxBodyChars) {
+            return body;
+        }
+        return String.format("%s...(truncated, %s chars)", body.substring(0, maxBodyChars), body.length());
+    }
+
+    public static class Aggregate<T> {
+
+        public URI uri;
+        public HttpStatus status;
+        public String exceptionType;
+        public long count;
+        public Instant firstSeen;
+        public Instant lastSeen;
+        public UpstreamFault<T> last;
+    }
+
+    public static class Batch<T> {
+
+        public List<UpstreamFault<T>> faults;
+        public List<Aggregate<T>> aggregates;
+        public long dropped;
+        public long droppedAggregates;
+
+        public boolean isEmpty() {
+            return faults.isEmpty();
+        }
+    }
+
+    private static class Key {
+
+        private final URI uri;
+        private final HttpStatus status;
+        private final String exceptionType;
+
+        public Key(URI uri, HttpStatus status, String exceptionType) {
+            this.uri = uri;
+            this.status = status;
+            this.exceptionType = exceptionType;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key o = (Key) other;
+            return Objects.equals(uri, o.uri) && status == o.status && Objects.equals(exceptionType, o.exceptionType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, status, exceptionType);
+        }
+    }
+}
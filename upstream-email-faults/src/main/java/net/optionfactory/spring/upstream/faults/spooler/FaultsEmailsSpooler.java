@@ -6,9 +6,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicReference;
 import net.optionfactory.spring.email.EmailMessage;
 import net.optionfactory.spring.email.EmailSenderAndCopyAddresses;
@@ -36,12 +34,16 @@ public class FaultsEmailsSpooler<T> implements UpstreamFaultsSpooler<T> {
     private final String emailTemplateName;
     private final Path emailSpoolDirectory;
     private final String recipient;
-    private final ConcurrentLinkedQueue<UpstreamFault<T>> faults;
+    private final FaultsBuffer<T> faults;
 
     private final AtomicReference<Instant> lastFaultSpool = new AtomicReference<>(Instant.EPOCH);
     private final AtomicReference<Duration> gracePeriod = new AtomicReference<>(Duration.ofMinutes(5));    
 
     public FaultsEmailsSpooler(EmailSenderAndCopyAddresses emailSenderConfiguration, SubjectTemplateConfiguration emailSubjects, TemplateEngine emailTemplates, TemplateEngine stringTemplates, String emailTemplateName, Path emailSpoolDirectory, String recipient) {
+        this(emailSenderConfiguration, emailSubjects, emailTemplates, stringTemplates, emailTemplateName, emailSpoolDirectory, recipient, FaultsBuffer.defaults());
+    }
+
+    public FaultsEmailsSpooler(EmailSenderAndCopyAddresses emailSenderConfiguration, SubjectTemplateConfiguration emailSubjects, TemplateEngine emailTemplates, TemplateEngine stringTemplates, String emailTemplateName, Path emailSpoolDirectory, String recipient, FaultsBuffer<T> faults) {
         Assert.isTrue(Files.isDirectory(emailSpoolDirectory), "emailSpoolDirectory must be a directory");
         Assert.isTrue(Files.isWritable(emailSpoolDirectory), "emailSpoolDirectory must be writable");
         this.senderAndCopyAddresses = emailSenderConfiguration;
@@ -51,7 +53,7 @@ public class FaultsEmailsSpooler<T> implements UpstreamFaultsSpooler<T> {
         this.emailTemplateName = emailTemplateName;
         this.emailSpoolDirectory = emailSpoolDirectory;
         this.recipient = recipient;
-        this.faults = new ConcurrentLinkedQueue<>();
+        this.faults = faults;
     }
 
     @Override
@@ -59,34 +61,42 @@ public class FaultsEmailsSpooler<T> implements UpstreamFaultsSpooler<T> {
         faults.add(fault);
     }
 
-    public synchronized void spool() {
+    /**
+     * Spools an email with the faults added since the last one, unless the
+     * grace period is still running. Returns true when an email is spooled.
+     */
+    public synchronized boolean spool() {
         var now = Instant.now();
         if (Duration.between(lastFaultSpool.get(), now).compareTo(gracePeriod.get()) < 0) {
             //max one email every grace period
-            return;
+            return false;
         }
         final Result<Path> spooled = dumpToEml();
         if (spooled.isError()) {
             logger.warn("[spool-emails][faults] failed to dump email: {}", spooled.getErrors());
-            return;
+            return false;
         }
         if (spooled.getValue() == null) {
             //success, but no cigar
-            return;
+            return false;
         }
         logger.info("[spool-emails][faults] spooled {}", spooled.getValue().getFileName());
         lastFaultSpool.set(now);
+        return true;
     }
 
     private Result<Path> dumpToEml() {
         try {
-            final List<UpstreamFault<T>> batch = drain();
+            final FaultsBuffer.Batch<T> batch = faults.drain();
             if(batch.isEmpty()){
                 return Result.value(null);
             }
             final var message = new EmailMessage();
             final var context = new Context();
-            context.setVariable("faults", batch);
+            context.setVariable("faults", batch.faults);
+            context.setVariable("aggregates", batch.aggregates);
+            context.setVariable("dropped", batch.dropped);
+            context.setVariable("droppedAggregates", batch.droppedAggregates);
             context.setVariable("tag", emailSubjects.subjectTag);
             message.subject = stringTemplates.process(emailSubjects.subjectTemplate.replace("{", "${"), context);
             message.htmlBody = emailTemplates.process(emailTemplateName, context);
@@ -98,20 +108,10 @@ public class FaultsEmailsSpooler<T> implements UpstreamFaultsSpooler<T> {
             emailMarshaller.marshal(senderAndCopyAddresses, message, List.of(), List.of(), tempPath);
             final Path targetPath = emailSpoolDirectory.resolve(tempPath.getFileName().toString().replace(".tmp", ".eml"));
             Files.move(tempPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
-            faults.clear();
             return Result.value(targetPath);
         } catch (IOException ex) {
             return Result.error(Problem.of("SPOOLING_ERROR", null, null, ex.getMessage()));
         }
     }
 
-    private List<UpstreamFault<T>> drain() {
-        final List<UpstreamFault<T>> batch = new ArrayList<>();
-        UpstreamFault<T> fault;
-        while((fault = faults.poll()) != null){
-            batch.add(fault);
-        }
-        return batch;
-    }
-
 }
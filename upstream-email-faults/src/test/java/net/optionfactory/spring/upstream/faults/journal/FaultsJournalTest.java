@@ -0,0 +1,175 @@
+package net.optionfactory.spring.upstream.faults.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler.UpstreamFault;
+import net.optionfactory.spring.upstream.faults.journal.FaultsJournalCodec.JournaledException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+public class FaultsJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FaultsJournalCodec<String> codec = new FaultsJournalCodec<>(ctx -> ctx, s -> s, 1024);
+
+    @Test
+    public void unspooledFaultsAreReplayedOnRestart() throws IOException {
+        final List<UpstreamFault<String>> forwarded = new ArrayList<>();
+        try (var journal = new FaultsJournal<>(folder.getRoot().toPath(), 4096, Duration.ofMillis(10), codec, forwarded::add)) {
+            for (int i = 0; i != 100; ++i) {
+                journal.add(fault(i));
+            }
+            Assert.assertEquals(100, journal.appended());
+        }
+        Assert.assertEquals(100, forwarded.size());
+
+        final List<UpstreamFault<String>> replayed = new ArrayList<>();
+        try (var journal = new FaultsJournal<>(folder.getRoot().toPath(), 4096, Duration.ofMillis(10), codec, replayed::add)) {
+            Assert.assertEquals(100, journal.replayed());
+        }
+        Assert.assertEquals(100, replayed.size());
+        final var last = replayed.get(99);
+        Assert.assertEquals("ctx99", last.context);
+        Assert.assertEquals(URI.create("http://upstream/99"), last.uri);
+        Assert.assertEquals(HttpStatus.BAD_GATEWAY, last.status);
+        Assert.assertEquals(MediaType.APPLICATION_JSON, last.contentType);
+        Assert.assertEquals(Instant.ofEpochMilli(99), last.requestInstant);
+        Assert.assertEquals("{\"response\":99}", last.response);
+        Assert.assertEquals(IllegalStateException.class.getName(), ((JournaledException) last.exception).getType());
+    }
+
+    @Test
+    public void spooledSegmentsAreDeleted() throws IOException {
+        try (var journal = new FaultsJournal<String>(folder.getRoot().toPath(), 4096, Duration.ofMillis(10), codec, f -> {})) {
+            journal.add(fault(1));
+            Assert.assertFalse(journal.spool(() -> false));
+            journal.add(fault(2));
+            Assert.assertTrue(journal.spool(() -> true));
+        }
+        final List<UpstreamFault<String>> replayed = new ArrayList<>();
+        new FaultsJournalReader<>(folder.getRoot().toPath(), codec).replay(replayed::add);
+        Assert.assertEquals(0, replayed.size());
+    }
+
+    @Test
+    public void tornRecordsEndTheReplayOfASegment() throws IOException {
+        try (var journal = new FaultsJournal<String>(folder.getRoot().toPath(), 4096, Duration.ofMillis(10), codec, f -> {})) {
+            journal.add(fault(1));
+            journal.add(fault(2));
+        }
+        final var reader = new FaultsJournalReader<>(folder.getRoot().toPath(), codec);
+        final var segment = reader.segments().get(0);
+        final int firstLength;
+        try (var file = new RandomAccessFile(segment.toFile(), "rw")) {
+            firstLength = file.readInt();
+            file.seek(FaultsJournalReader.HEADER_SIZE + firstLength + FaultsJournalReader.HEADER_SIZE + 10);
+            file.write(0xff);
+        }
+        final List<UpstreamFault<String>> replayed = new ArrayList<>();
+        reader.replay(replayed::add);
+        Assert.assertEquals(1, replayed.size());
+        Assert.assertEquals("1", replayed.get(0).reqId);
+    }
+
+    @Test
+    public void faultsAreForwardedOutsideOfTheJournalLock() throws Exception {
+        final var forwarding = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final List<UpstreamFault<String>> forwarded = new CopyOnWriteArrayList<>();
+        try (var journal = new FaultsJournal<String>(folder.getRoot().toPath(), 4096, Duration.ofMillis(10), codec, f -> {
+            if ("1".equals(f.reqId)) {
+                forwarding.countDown();
+                await(release);
+            }
+            forwarded.add(f);
+        })) {
+            final var blocked = new Thread(() -> journal.add(fault(1)));
+            blocked.start();
+            Assert.assertTrue(forwarding.await(5, TimeUnit.SECONDS));
+            //would wait for the blocked delegate if forwarding happened under the journal lock
+            final var other = CompletableFuture.runAsync(() -> journal.add(fault(2)));
+            other.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(2, journal.appended());
+            release.countDown();
+            blocked.join(5000);
+        }
+        Assert.assertEquals(2, forwarded.size());
+    }
+
+    @Test
+    public void spoolsWaitForJournaledFaultsToReachTheDelegate() throws Exception {
+        final var forwarding = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final List<UpstreamFault<String>> forwarded = new CopyOnWriteArrayList<>();
+        try (var journal = new FaultsJournal<String>(folder.getRoot().toPath(), 4096, Duration.ofMillis(10), codec, f -> {
+            forwarding.countDown();
+            await(release);
+            forwarded.add(f);
+        })) {
+            final var blocked = new Thread(() -> journal.add(fault(1)));
+            blocked.start();
+            Assert.assertTrue(forwarding.await(5, TimeUnit.SECONDS));
+            final var spooled = CompletableFuture.supplyAsync(() -> journal.spool(() -> forwarded.size() == 1));
+            Thread.sleep(100);
+            Assert.assertFalse(spooled.isDone());
+            release.countDown();
+            Assert.assertTrue(spooled.get(5, TimeUnit.SECONDS));
+            blocked.join(5000);
+        }
+    }
+
+    @Test
+    public void segmentsAreUnmappedOnRotationAndClose() throws Exception {
+        final Path maps = Path.of("/proc/self/maps");
+        Assume.assumeTrue(Files.isReadable(maps));
+        final var directory = folder.getRoot().toPath();
+        try (var journal = new FaultsJournal<String>(directory, 1024, Duration.ofMillis(10), codec, f -> {})) {
+            for (int i = 0; i != 50; ++i) {
+                journal.add(fault(i));
+            }
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            //the current and the prepared next segment stay mapped
+            while (mappedSegments(maps, directory) > 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(mappedSegments(maps, directory) <= 2);
+        }
+        Assert.assertEquals(0, mappedSegments(maps, directory));
+    }
+
+    private static long mappedSegments(Path maps, Path directory) throws IOException {
+        return Files.readAllLines(maps).stream()
+                .filter(line -> line.contains(directory.toString()))
+                .count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static UpstreamFault<String> fault(int i) {
+        return UpstreamFault.of("ctx" + i, Integer.toString(i), URI.create("http://upstream/" + i), HttpStatus.BAD_GATEWAY, MediaType.APPLICATION_JSON, Instant.ofEpochMilli(i), "{\"request\":" + i + "}", Instant.ofEpochMilli(i + 1), "{\"response\":" + i + "}", new IllegalStateException("boom " + i));
+    }
+}
@@ -0,0 +1,52 @@
+package net.optionfactory.spring.upstream.faults.spooler;
+
+import java.net.URI;
+import java.time.Instant;
+import net.optionfactory.spring.upstream.UpstreamFaultsSpooler.UpstreamFault;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+public class FaultsBufferTest {
+
+    @Test
+    public void identicalFaultsAreAggregated() {
+        final var buffer = new FaultsBuffer<Void>(10, 10, 100);
+        buffer.add(fault("http://a/x", HttpStatus.BAD_GATEWAY, new IllegalStateException(), Instant.ofEpochSecond(1)));
+        buffer.add(fault("http://a/x", HttpStatus.BAD_GATEWAY, new IllegalStateException(), Instant.ofEpochSecond(2)));
+        buffer.add(fault("http://a/x", HttpStatus.BAD_GATEWAY, new IllegalArgumentException(), Instant.ofEpochSecond(3)));
+        final var batch = buffer.drain();
+        Assert.assertEquals(2, batch.aggregates.size());
+        final var first = batch.aggregates.get(0);
+        Assert.assertEquals(2, first.count);
+        Assert.assertEquals(Instant.ofEpochSecond(1), first.firstSeen);
+        Assert.assertEquals(Instant.ofEpochSecond(2), first.lastSeen);
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void oldestFaultsAreEvictedAndCounted() {
+        final var buffer = new FaultsBuffer<Void>(2, 1, 100);
+        for (int i = 0; i != 5; ++i) {
+            buffer.add(fault("http://a/" + i, HttpStatus.INTERNAL_SERVER_ERROR, null, Instant.ofEpochSecond(i)));
+        }
+        final var batch = buffer.drain();
+        Assert.assertEquals(2, batch.faults.size());
+        Assert.assertEquals(URI.create("http://a/3"), batch.faults.get(0).uri);
+        Assert.assertEquals(3, batch.dropped);
+        Assert.assertEquals(1, batch.aggregates.size());
+        Assert.assertEquals(4, batch.droppedAggregates);
+    }
+
+    @Test
+    public void bodiesAreTruncated() {
+        final var buffer = new FaultsBuffer<Void>(2, 2, 4);
+        buffer.add(fault("http://a/", HttpStatus.INTERNAL_SERVER_ERROR, null, Instant.EPOCH));
+        Assert.assertEquals("requ...(truncated, 7 chars)", buffer.drain().faults.get(0).request);
+    }
+
+    private static UpstreamFault<Void> fault(String uri, HttpStatus status, Throwable ex, Instant at) {
+        return UpstreamFault.of(null, "1", URI.create(uri), status, MediaType.APPLICATION_JSON, at, "request", at, "response", ex);
+    }
+}
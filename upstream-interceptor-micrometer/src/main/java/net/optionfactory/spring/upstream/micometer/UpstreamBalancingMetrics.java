@@ -0,0 +1,46 @@
+package net.optionfactory.spring.upstream.micometer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.optionfactory.spring.upstream.balancing.UpstreamBalancedPort;
+import net.optionfactory.spring.upstream.balancing.UpstreamReplica;
+
+/**
+ * Exports the per-replica state of an {@link UpstreamBalancedPort}.
+ */
+public class UpstreamBalancingMetrics implements MeterBinder {
+
+    private final UpstreamBalancedPort<?> port;
+
+    public UpstreamBalancingMetrics(UpstreamBalancedPort<?> port) {
+        this.port = port;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (UpstreamReplica replica : port.replicas()) {
+            final String upstream = port.upstreamId();
+            final String uri = replica.uri().toString();
+            Gauge.builder("upstream_replica_outstanding", replica, UpstreamReplica::outstanding)
+                    .tags("upstream", upstream, "replica", uri)
+                    .register(registry);
+            Gauge.builder("upstream_replica_latency_ewma_seconds", replica, r -> r.ewmaNanos() / 1e9)
+                    .tags("upstream", upstream, "replica", uri)
+                    .register(registry);
+            Gauge.builder("upstream_replica_ejected", replica, r -> r.isEjected(System.nanoTime()) ? 1 : 0)
+                    .tags("upstream", upstream, "replica", uri)
+                    .register(registry);
+            FunctionCounter.builder("upstream_replica_requests", replica, UpstreamReplica::requests)
+                    .tags("upstream", upstream, "replica", uri)
+                    .register(registry);
+            FunctionCounter.builder("upstream_replica_failures", replica, UpstreamReplica::failures)
+                    .tags("upstream", upstream, "replica", uri)
+                    .register(registry);
+            FunctionCounter.builder("upstream_replica_ejections", replica, UpstreamReplica::ejections)
+                    .tags("upstream", upstream, "replica", uri)
+                    .register(registry);
+        }
+    }
+}
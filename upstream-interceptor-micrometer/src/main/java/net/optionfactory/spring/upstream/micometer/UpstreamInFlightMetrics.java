@@ -0,0 +1,35 @@
+package net.optionfactory.spring.upstream.micometer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.optionfactory.spring.upstream.inflight.UpstreamInFlightInterceptor;
+
+/**
+ * Exports the number of exchanges in flight, the age of the oldest one and
+ * the exchanges evicted without completing.
+ */
+public class UpstreamInFlightMetrics implements MeterBinder {
+
+    private final String name;
+    private final UpstreamInFlightInterceptor<?> inflight;
+
+    public UpstreamInFlightMetrics(String name, UpstreamInFlightInterceptor<?> inflight) {
+        this.name = name;
+        this.inflight = inflight;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("upstream_inflight_exchanges", inflight, UpstreamInFlightInterceptor::count)
+                .tags("registry", name)
+                .register(registry);
+        Gauge.builder("upstream_inflight_oldest_seconds", inflight, i -> i.oldest().toNanos() / 1e9)
+                .tags("registry", name)
+                .register(registry);
+        FunctionCounter.builder("upstream_inflight_evicted", inflight, UpstreamInFlightInterceptor::evicted)
+                .tags("registry", name)
+                .register(registry);
+    }
+}
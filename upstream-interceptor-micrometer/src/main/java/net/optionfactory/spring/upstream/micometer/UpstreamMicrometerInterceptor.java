@@ -1,9 +1,11 @@
 package net.optionfactory.spring.upstream.micometer;
 
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.Compression;
 
 public class UpstreamMicrometerInterceptor<CTX> implements UpstreamInterceptor<CTX> {
     
@@ -17,10 +19,12 @@ public class UpstreamMicrometerInterceptor<CTX> implements UpstreamInterceptor<C
         Timer.builder("upstream_duration_seconds")
               .tags("upstream", prepare.upstreamId)
               .tags("endpoint", prepare.endpointId)
-              .tags("response.status", response.status.name())
+              .tags("response.status", response.status != null ? response.status.name() : "UNKNOWN")
               .tags("outcome", "success")
               .register(metrics)
               .record(Duration.between(request.at, response.at));
+        recordCompression(prepare, "request", request.compression);
+        recordCompression(prepare, "response", response.compression);
     }
 
     @Override
@@ -32,6 +36,25 @@ public class UpstreamMicrometerInterceptor<CTX> implements UpstreamInterceptor<C
               .tags("outcome", "error")
               .register(metrics)
               .record(Duration.between(request.at, error.at));
+        recordCompression(prepare, "request", request.compression);
+    }
+
+    private void recordCompression(PrepareContext<CTX> prepare, String direction, Compression compression) {
+        if (compression == null) {
+            return;
+        }
+        Counter.builder("upstream_compressed_bytes")
+              .tags("upstream", prepare.upstreamId)
+              .tags("endpoint", prepare.endpointId)
+              .tags("direction", direction)
+              .register(metrics)
+              .increment(compression.compressedBytes);
+        Counter.builder("upstream_uncompressed_bytes")
+              .tags("upstream", prepare.upstreamId)
+              .tags("endpoint", prepare.endpointId)
+              .tags("direction", direction)
+              .register(metrics)
+              .increment(compression.uncompressedBytes);
     }
 
 }
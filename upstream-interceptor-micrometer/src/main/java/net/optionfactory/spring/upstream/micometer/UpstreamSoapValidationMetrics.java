@@ -0,0 +1,40 @@
+package net.optionfactory.spring.upstream.micometer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.soap.UpstreamSoapValidator;
+
+/**
+ * Exports the payload validations of an {@code UpstreamSoapPort}: the number
+ * of validated requests and responses, the failures and the time spent
+ * validating. Requires upstream-soap.
+ */
+public class UpstreamSoapValidationMetrics implements MeterBinder {
+
+    private final String upstreamId;
+    private final UpstreamSoapValidator<?> validator;
+
+    public UpstreamSoapValidationMetrics(String upstreamId, UpstreamSoapValidator<?> validator) {
+        this.upstreamId = upstreamId;
+        this.validator = validator;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("upstream_soap_validations", validator, UpstreamSoapValidator::validatedRequests)
+                .tags("upstream", upstreamId, "payload", "request")
+                .register(registry);
+        FunctionCounter.builder("upstream_soap_validations", validator, UpstreamSoapValidator::validatedResponses)
+                .tags("upstream", upstreamId, "payload", "response")
+                .register(registry);
+        FunctionCounter.builder("upstream_soap_validation_failures", validator, UpstreamSoapValidator::failures)
+                .tags("upstream", upstreamId)
+                .register(registry);
+        FunctionTimer.builder("upstream_soap_validation", validator, v -> v.validatedRequests() + v.validatedResponses(), UpstreamSoapValidator::validationNanos, TimeUnit.NANOSECONDS)
+                .tags("upstream", upstreamId)
+                .register(registry);
+    }
+}
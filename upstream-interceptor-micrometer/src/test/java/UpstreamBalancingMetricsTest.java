@@ -0,0 +1,66 @@
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import net.optionfactory.spring.upstream.UpstreamException;
+import net.optionfactory.spring.upstream.UpstreamPort;
+import net.optionfactory.spring.upstream.balancing.UpstreamBalancedPort;
+import net.optionfactory.spring.upstream.balancing.UpstreamBalancingStrategy;
+import net.optionfactory.spring.upstream.balancing.UpstreamEjection;
+import net.optionfactory.spring.upstream.micometer.UpstreamBalancingMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+public class UpstreamBalancingMetricsTest {
+
+    @Test
+    public void replicaStateIsExported() {
+        final var replicas = List.of(URI.create("http://a:8080"), URI.create("http://b:8080"));
+        final var ejection = new UpstreamEjection(1, Duration.ofMinutes(1), Duration.ofMinutes(1), 0.5);
+        final var port = new UpstreamBalancedPort<Void>("balanced", replicas, UpstreamBalancingStrategy.roundRobin(), ejection, new FailingOn("b"));
+        final var registry = new SimpleMeterRegistry();
+        new UpstreamBalancingMetrics(port).bindTo(registry);
+
+        port.exchange(null, "ep", RequestEntity.get(URI.create("/items")).build(), String.class);
+        try {
+            port.exchange(null, "ep", RequestEntity.get(URI.create("/items")).build(), String.class);
+            Assert.fail("expected a failure");
+        } catch (UpstreamException ex) {
+        }
+
+        Assert.assertEquals(1, registry.get("upstream_replica_requests").tags("upstream", "balanced", "replica", "http://a:8080").functionCounter().count(), 0);
+        Assert.assertEquals(0, registry.get("upstream_replica_failures").tags("upstream", "balanced", "replica", "http://a:8080").functionCounter().count(), 0);
+        Assert.assertEquals(0, registry.get("upstream_replica_ejected").tags("upstream", "balanced", "replica", "http://a:8080").gauge().value(), 0);
+        Assert.assertEquals(1, registry.get("upstream_replica_requests").tags("upstream", "balanced", "replica", "http://b:8080").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("upstream_replica_failures").tags("upstream", "balanced", "replica", "http://b:8080").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("upstream_replica_ejections").tags("upstream", "balanced", "replica", "http://b:8080").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("upstream_replica_ejected").tags("upstream", "balanced", "replica", "http://b:8080").gauge().value(), 0);
+        Assert.assertEquals(0, registry.get("upstream_replica_outstanding").tags("upstream", "balanced", "replica", "http://b:8080").gauge().value(), 0);
+        Assert.assertTrue(registry.get("upstream_replica_latency_ewma_seconds").tags("upstream", "balanced", "replica", "http://b:8080").gauge().value() >= 1);
+    }
+
+    private static class FailingOn implements UpstreamPort<Void> {
+
+        private final String host;
+
+        public FailingOn(String host) {
+            this.host = host;
+        }
+
+        @Override
+        public <T> ResponseEntity<T> exchange(Void context, String endpoint, RequestEntity<?> requestEntity, Class<T> responseType) {
+            if (host.equals(requestEntity.getUrl().getHost())) {
+                throw new UpstreamException("balanced", "UPSTREAM_DOWN", "Connection refused");
+            }
+            return ResponseEntity.ok().build();
+        }
+
+        @Override
+        public <T> ResponseEntity<T> exchange(Void context, String endpoint, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
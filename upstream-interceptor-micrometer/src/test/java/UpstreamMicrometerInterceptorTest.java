@@ -32,4 +32,27 @@ public class UpstreamMicrometerInterceptorTest {
         Assert.assertEquals("upstream_duration_seconds", registry.getMeters().get(0).getId().getName());
     }
 
+    @Test
+    public void compressedAndUncompressedBytesAreCounted() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final UpstreamMicrometerInterceptor<String> interceptor = new UpstreamMicrometerInterceptor<>(registry);
+
+        ExchangeContext<String> ctx = new UpstreamInterceptor.ExchangeContext<>();
+        ctx.prepare = new UpstreamInterceptor.PrepareContext<>();
+        ctx.prepare.requestId = "123";
+        ctx.prepare.endpointId = "endpoint";
+        ctx.prepare.upstreamId = "vita";
+        ctx.request = new UpstreamInterceptor.RequestContext();
+        ctx.request.at = Instant.now().minus(10, ChronoUnit.SECONDS);
+        ctx.response = new UpstreamInterceptor.ResponseContext();
+        ctx.response.at = Instant.now();
+        ctx.response.status = HttpStatus.OK;
+        ctx.response.compression = UpstreamInterceptor.Compression.of("gzip", 100, 1000);
+
+        interceptor.remotingSuccess(ctx.prepare, ctx.request, ctx.response);
+
+        Assert.assertEquals(100, registry.get("upstream_compressed_bytes").tag("direction", "response").counter().count(), 0);
+        Assert.assertEquals(1000, registry.get("upstream_uncompressed_bytes").tag("direction", "response").counter().count(), 0);
+    }
+
 }
@@ -0,0 +1,52 @@
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import javax.xml.XMLConstants;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import net.optionfactory.spring.upstream.micometer.UpstreamSoapValidationMetrics;
+import net.optionfactory.spring.upstream.soap.UpstreamSoapValidation;
+import net.optionfactory.spring.upstream.soap.UpstreamSoapValidator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.ws.client.support.interceptor.WebServiceValidationException;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+
+public class UpstreamSoapValidationMetricsTest {
+
+    private static final String XSD = ""
+            + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:test\" elementFormDefault=\"qualified\">"
+            + "<xs:element name=\"greeting\" type=\"xs:string\"/>"
+            + "</xs:schema>";
+
+    @Test
+    public void validationsFailuresAndTimeAreExported() throws Exception {
+        final var schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(new StringReader(XSD)));
+        final var validator = new UpstreamSoapValidator<Void>(schema, UpstreamSoapValidation.always(), new ThreadLocal<>(), false);
+        final var registry = new SimpleMeterRegistry();
+        new UpstreamSoapValidationMetrics("soap", validator).bindTo(registry);
+
+        validator.handleRequest(request("<t:greeting xmlns:t=\"urn:test\">hello</t:greeting>"));
+        try {
+            validator.handleRequest(request("<t:other xmlns:t=\"urn:test\"/>"));
+            Assert.fail("expected a validation failure");
+        } catch (WebServiceValidationException ex) {
+        }
+
+        Assert.assertEquals(2, registry.get("upstream_soap_validations").tags("upstream", "soap", "payload", "request").functionCounter().count(), 0);
+        Assert.assertEquals(0, registry.get("upstream_soap_validations").tags("upstream", "soap", "payload", "response").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("upstream_soap_validation_failures").tags("upstream", "soap").functionCounter().count(), 0);
+        Assert.assertEquals(2, registry.get("upstream_soap_validation").tags("upstream", "soap").functionTimer().count(), 0);
+        Assert.assertTrue(registry.get("upstream_soap_validation").tags("upstream", "soap").functionTimer().totalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    private static DefaultMessageContext request(String payload) throws Exception {
+        final var factory = new SaajSoapMessageFactory();
+        factory.afterPropertiesSet();
+        final var message = factory.createWebServiceMessage();
+        TransformerFactory.newInstance().newTransformer().transform(new StreamSource(new StringReader(payload)), message.getPayloadResult());
+        return new DefaultMessageContext(message, factory);
+    }
+}
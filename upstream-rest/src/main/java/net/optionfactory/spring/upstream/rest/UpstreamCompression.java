@@ -0,0 +1,214 @@
+package net.optionfactory.spring.upstream.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.Compression;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Content coding negotiation for {@link UpstreamRestPort}: advertises and
+ * decodes gzip/deflate responses and optionally gzips request bodies above a
+ * size threshold. Ports using this should be given http clients with
+ * transparent content compression disabled (as the ones from
+ * {@code UpstreamClients} are when a port opts into compression), otherwise
+ * the compressed size is not known. Buffered responses are decoded up to
+ * {@code maxDecodedBytes}: larger bodies fail the exchange rather than
+ * exhausting the heap.
+ */
+public class UpstreamCompression {
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final int NEVER = -1;
+    public static final long DEFAULT_MAX_DECODED_BYTES = 64 * 1024 * 1024;
+
+    private final boolean acceptCompressed;
+    private final int requestThreshold;
+    private final long maxDecodedBytes;
+
+    public UpstreamCompression(boolean acceptCompressed, int requestThreshold) {
+        this(acceptCompressed, requestThreshold, DEFAULT_MAX_DECODED_BYTES);
+    }
+
+    public UpstreamCompression(boolean acceptCompressed, int requestThreshold, long maxDecodedBytes) {
+        this.acceptCompressed = acceptCompressed;
+        this.requestThreshold = requestThreshold;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    public static UpstreamCompression disabled() {
+        return new UpstreamCompression(false, NEVER);
+    }
+
+    public static UpstreamCompression responses() {
+        return new UpstreamCompression(true, NEVER);
+    }
+
+    public static UpstreamCompression responsesAndRequestsAbove(int requestThresholdInBytes) {
+        return new UpstreamCompression(true, requestThresholdInBytes);
+    }
+
+    public boolean isEnabled() {
+        return acceptCompressed || requestThreshold != NEVER;
+    }
+
+    public void advertise(HttpHeaders headers) {
+        if (acceptCompressed && !headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
+    }
+
+    public byte[] encodeRequest(HttpHeaders headers, byte[] body, RequestContext request) throws IOException {
+        if (requestThreshold == NEVER || body.length < requestThreshold || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return body;
+        }
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(body);
+        }
+        final byte[] compressed = buffer.toByteArray();
+        headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        request.compression = Compression.of(GZIP, compressed.length, body.length);
+        return compressed;
+    }
+
+    public ClientHttpResponse decodeResponse(ClientHttpResponse response) {
+        final String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (!GZIP.equalsIgnoreCase(encoding) && !DEFLATE.equalsIgnoreCase(encoding)) {
+            return response;
+        }
+        return new DecodedResponse(response, encoding.toLowerCase(), maxDecodedBytes);
+    }
+
+    public static InputStream decoding(String encoding, InputStream compressed) throws IOException {
+        if (GZIP.equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(compressed);
+        }
+        if (DEFLATE.equalsIgnoreCase(encoding)) {
+            return new DeflateInputStream(compressed);
+        }
+        return compressed;
+    }
+
+    public static class DecodedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse inner;
+        private final String encoding;
+        private final long maxDecodedBytes;
+        private final HttpHeaders headers;
+        private byte[] decoded;
+        private Compression compression;
+
+        public DecodedResponse(ClientHttpResponse inner, String encoding, long maxDecodedBytes) {
+            this.inner = inner;
+            this.encoding = encoding;
+            this.maxDecodedBytes = maxDecodedBytes;
+            final HttpHeaders filtered = new HttpHeaders();
+            filtered.putAll(inner.getHeaders());
+            filtered.remove(HttpHeaders.CONTENT_ENCODING);
+            filtered.remove(HttpHeaders.CONTENT_LENGTH);
+            this.headers = HttpHeaders.readOnlyHttpHeaders(filtered);
+        }
+
+        public Compression compression() {
+            return compression;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (decoded == null) {
+                try (CountingInputStream counting = new CountingInputStream(inner.getBody()); InputStream is = decoding(encoding, counting)) {
+                    decoded = readAtMost(is, maxDecodedBytes);
+                    compression = Compression.of(encoding, counting.count, decoded.length);
+                }
+            }
+            return new ByteArrayInputStream(decoded);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        private static byte[] readAtMost(InputStream is, long max) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(StreamUtils.BUFFER_SIZE);
+            final byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+            long total = 0;
+            for (int read; (read = is.read(buffer)) != -1;) {
+                total += read;
+                if (total > max) {
+                    throw new IOException(String.format("decoded response body exceeds %s bytes", max));
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return inner.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return inner.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return inner.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            inner.close();
+        }
+
+    }
+
+    public static class CountingInputStream extends FilterInputStream {
+
+        public long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+    }
+}
@@ -0,0 +1,313 @@
+package net.optionfactory.spring.upstream.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.net.ssl.SSLContext;
+import net.optionfactory.spring.upstream.UpstreamException;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ExchangeContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ResponseContext;
+import net.optionfactory.spring.upstream.UpstreamPort;
+import net.optionfactory.spring.upstream.UpstreamResponseErrorHandler;
+import net.optionfactory.spring.upstream.counters.UpstreamRequestCounter;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * An {@link UpstreamPort} on {@code java.net.http.HttpClient}, negotiating
+ * HTTP/2 (ALPN over TLS, {@code Upgrade: h2c} in cleartext) so that
+ * concurrent exchanges are multiplexed over a few connections. Requests and
+ * responses are mapped with the same converters used by
+ * {@link UpstreamRestPort}.
+ */
+public class UpstreamJdkHttpPort<CTX> implements UpstreamPort<CTX> {
+
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final String upstreamId;
+    private final UpstreamRequestCounter requestCounter;
+    private final HttpClient client;
+    private final UpstreamCompression compression;
+    private final Duration requestTimeout;
+    private final List<UpstreamInterceptor<CTX>> interceptors;
+    private final List<HttpMessageConverter<?>> converters;
+    private final UpstreamResponseErrorHandler<CTX> errorHandler;
+
+    public UpstreamJdkHttpPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, SSLContext sslContext, Duration connectionTimeout, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(upstreamId, requestCounter, objectMapper, client(sslContext, connectionTimeout), UpstreamCompression.disabled(), null, interceptors);
+    }
+
+    public UpstreamJdkHttpPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, HttpClient client, UpstreamCompression compression, Duration requestTimeout, List<UpstreamInterceptor<CTX>> interceptors) {
+        final var mappingJacksonMessageConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+        final var formMessageConverter = new FormHttpMessageConverter();
+        formMessageConverter.addPartConverter(mappingJacksonMessageConverter);
+        this.converters = List.of(
+                new ByteArrayHttpMessageConverter(),
+                formMessageConverter,
+                mappingJacksonMessageConverter,
+                new ResourceHttpMessageConverter());
+        this.upstreamId = upstreamId;
+        this.requestCounter = requestCounter;
+        this.client = client;
+        this.compression = compression;
+        this.requestTimeout = requestTimeout;
+        this.interceptors = interceptors;
+        this.errorHandler = new UpstreamResponseErrorHandler<>(upstreamId, interceptors);
+    }
+
+    public static HttpClient client(SSLContext sslContext, Duration connectionTimeout) {
+        final var builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(connectionTimeout);
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public <T> ResponseEntity<T> exchange(CTX context, String endpointId, RequestEntity<?> requestEntity, Class<T> responseType) {
+        return exchange(context, endpointId, requestEntity, (Type) responseType);
+    }
+
+    @Override
+    public <T> ResponseEntity<T> exchange(CTX context, String endpointId, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> responseType) {
+        return exchange(context, endpointId, requestEntity, responseType.getType());
+    }
+
+    private <T> ResponseEntity<T> exchange(CTX context, String endpointId, RequestEntity<?> requestEntity, Type responseType) {
+        final ExchangeContext<CTX> ctx = new ExchangeContext<>();
+        ctx.prepare = new UpstreamInterceptor.PrepareContext<>();
+        ctx.prepare.requestId = requestCounter.next();
+        ctx.prepare.ctx = context;
+        ctx.prepare.endpointId = endpointId;
+        ctx.prepare.entity = requestEntity;
+        ctx.prepare.upstreamId = upstreamId;
+        try {
+            return execute(ctx, responseType);
+        } finally {
+            UpstreamRestPort.RestInterceptors.completed(interceptors, ctx.prepare);
+        }
+    }
+
+    private <T> ResponseEntity<T> execute(ExchangeContext<CTX> ctx, Type responseType) {
+        ctx.prepare.entity = makeEntity(ctx.prepare);
+
+        final var headers = new HttpHeaders();
+        headers.addAll(ctx.prepare.entity.getHeaders());
+        if (!headers.containsKey(HttpHeaders.ACCEPT)) {
+            final List<MediaType> accepted = acceptedMediaTypes(responseType);
+            if (!accepted.isEmpty()) {
+                headers.setAccept(accepted);
+            }
+        }
+        final byte[] requestBodyBytes = write(ctx.prepare.entity.getBody(), headers);
+        ctx.request = new RequestContext();
+        ctx.request.at = Instant.now();
+        ctx.request.body = new ByteArrayResource(requestBodyBytes);
+        ctx.request.headers = headers;
+        final ClientHttpResponse response;
+        try {
+            compression.advertise(headers);
+            final byte[] sentBodyBytes = compression.encodeRequest(headers, requestBodyBytes, ctx.request);
+            for (var interceptor : interceptors) {
+                interceptor.before(ctx.prepare, ctx.request);
+            }
+            final HttpResponse<byte[]> raw = client.send(toJdkRequest(ctx.prepare.entity, headers, sentBodyBytes), HttpResponse.BodyHandlers.ofByteArray());
+            response = compression.decodeResponse(new BufferedResponse(raw.statusCode(), toHeaders(raw.headers()), raw.body()));
+            try (final InputStream body = response.getBody()) {
+                ctx.response = new ResponseContext();
+                ctx.response.at = Instant.now();
+                //null for non-standard codes (e.g. 520), decisions are taken on the raw code
+                ctx.response.status = HttpStatus.resolve(response.getRawStatusCode());
+                ctx.response.headers = response.getHeaders();
+                ctx.response.body = new ByteArrayResource(StreamUtils.copyToByteArray(body));
+            }
+            if (response instanceof UpstreamCompression.DecodedResponse) {
+                ctx.response.compression = ((UpstreamCompression.DecodedResponse) response).compression();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw UpstreamRestPort.RestInterceptors.failure(upstreamId, interceptors, ctx, ex);
+        } catch (IOException | RuntimeException ex) {
+            throw UpstreamRestPort.RestInterceptors.failure(upstreamId, interceptors, ctx, ex);
+        }
+        final ResponseEntity<T> mapped;
+        try {
+            if (errorHandler.hasError(response)) {
+                UpstreamRestPort.RestInterceptors.success(interceptors, ctx);
+                errorHandler.handleError(response);
+            }
+            final T body = new HttpMessageConverterExtractor<T>(responseType, converters).extractData(response);
+            mapped = new ResponseEntity<>(body, response.getHeaders(), response.getRawStatusCode());
+        } catch (IOException | RestClientException ex) {
+            //the response is fully read: remotingSuccess is only fired once it is mapped, so that a mapping failure is reported once, as an error
+            throw UpstreamRestPort.RestInterceptors.mappingFailure(upstreamId, interceptors, ctx, ex);
+        }
+        UpstreamRestPort.RestInterceptors.success(interceptors, ctx);
+        for (UpstreamInterceptor<CTX> interceptor : interceptors) {
+            interceptor.mappingSuccess(ctx.prepare, ctx.request, ctx.response, mapped);
+        }
+        return mapped;
+    }
+
+    private RequestEntity<?> makeEntity(PrepareContext<CTX> prepare) {
+        final var headers = new HttpHeaders();
+        headers.addAll(prepare.entity.getHeaders());
+        for (var interceptor : interceptors) {
+            final var newHeaders = interceptor.prepare(prepare);
+            if (newHeaders != null) {
+                headers.addAll(newHeaders);
+            }
+        }
+        return new RequestEntity<>(prepare.entity.getBody(), headers, prepare.entity.getMethod(), prepare.entity.getUrl(), prepare.entity.getType());
+    }
+
+    private List<MediaType> acceptedMediaTypes(Type responseType) {
+        final List<MediaType> accepted = new ArrayList<>();
+        for (HttpMessageConverter<?> converter : converters) {
+            final boolean canRead = converter instanceof GenericHttpMessageConverter
+                    ? ((GenericHttpMessageConverter<?>) converter).canRead(responseType, null, null)
+                    : responseType instanceof Class && converter.canRead((Class<?>) responseType, null);
+            if (canRead) {
+                converter.getSupportedMediaTypes().stream().filter(mt -> !accepted.contains(mt)).forEach(accepted::add);
+            }
+        }
+        MediaType.sortBySpecificity(accepted);
+        return accepted;
+    }
+
+    private byte[] write(Object body, HttpHeaders headers) {
+        if (body == null) {
+            return new byte[0];
+        }
+        final MediaType contentType = headers.getContentType();
+        final var buffer = new ByteArrayOutputStream();
+        final HttpOutputMessage message = new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return buffer;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter.canWrite(body.getClass(), contentType)) {
+                try {
+                    ((HttpMessageConverter<Object>) converter).write(body, contentType, message);
+                } catch (IOException ex) {
+                    throw new UpstreamException(upstreamId, "REQUEST_ERROR", ex.getMessage());
+                }
+                return buffer.toByteArray();
+            }
+        }
+        throw new UpstreamException(upstreamId, "REQUEST_ERROR", String.format("no converter for request body %s (%s)", body.getClass().getName(), contentType));
+    }
+
+    private HttpRequest toJdkRequest(RequestEntity<?> entity, HttpHeaders headers, byte[] body) {
+        final var builder = HttpRequest.newBuilder(entity.getUrl())
+                .method(entity.getMethod().name(), body.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        headers.forEach((name, values) -> {
+            if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return builder.build();
+    }
+
+    private static HttpHeaders toHeaders(java.net.http.HttpHeaders jdkHeaders) {
+        final var headers = new HttpHeaders();
+        jdkHeaders.map().forEach((name, values) -> {
+            //HTTP/2 pseudo-headers (e.g. :status) are not headers
+            if (!name.startsWith(":")) {
+                headers.addAll(name, values);
+            }
+        });
+        return headers;
+    }
+
+    public static class BufferedResponse implements ClientHttpResponse {
+
+        private final int status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+
+        public BufferedResponse(int status, HttpHeaders headers, byte[] body) {
+            this.status = status;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.body = body;
+        }
+
+        /**
+         * As per {@link ClientHttpResponse#getStatusCode()}, throws for
+         * non-standard codes: use {@link #getRawStatusCode()} instead.
+         */
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.valueOf(status);
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return status;
+        }
+
+        @Override
+        public String getStatusText() {
+            final HttpStatus resolved = HttpStatus.resolve(status);
+            return resolved != null ? resolved.getReasonPhrase() : "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
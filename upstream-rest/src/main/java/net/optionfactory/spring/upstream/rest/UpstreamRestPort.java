@@ -1,61 +1,116 @@
 package net.optionfactory.spring.upstream.rest;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Type;
 import java.net.SocketException;
+import java.net.URI;
 import java.time.Instant;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import net.optionfactory.spring.upstream.UpstreamClients;
 import net.optionfactory.spring.upstream.UpstreamException;
 import net.optionfactory.spring.upstream.UpstreamInterceptor;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.ExchangeContext;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.ResponseContext;
-import net.optionfactory.spring.upstream.UpstreamPort;
 import net.optionfactory.spring.upstream.UpstreamResponseErrorHandler;
+import net.optionfactory.spring.upstream.UpstreamStreamingPort;
 import net.optionfactory.spring.upstream.counters.UpstreamRequestCounter;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.FormHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.util.StreamUtils;
 import org.springframework.web.client.RestTemplate;
 
-public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
+public class UpstreamRestPort<CTX> implements UpstreamStreamingPort<CTX> {
 
     private final String upstreamId;
     private final UpstreamRequestCounter requestCounter;
     private final RestTemplate rest;
+    private final ClientHttpRequestFactory streamingRequestFactory;
+    private final AbortableRequestFactory abortableRequestFactory;
+    private final ObjectMapper objectMapper;
     private final List<UpstreamInterceptor<CTX>> interceptors;
+    private final AbstractJackson2HttpMessageConverter jsonConverter;
+    private final List<AbstractJackson2HttpMessageConverter> binaryConverters;
     private final ThreadLocal<ExchangeContext<CTX>> callContexts = new ThreadLocal<>();
 
     public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, List<UpstreamInterceptor<CTX>> interceptors) {
-        final var builder = HttpClientBuilder.create();
-        builder.setSSLSocketFactory(socketFactory);
-        final var client = builder.setDefaultRequestConfig(RequestConfig.custom()
-                .setConnectTimeout(connectionTimeoutInMillis).build())
+        this(upstreamId, requestCounter, objectMapper, HttpClientBuilder.create()
+                .setSSLSocketFactory(socketFactory)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(connectionTimeoutInMillis).build())
                 .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
-                .build();
+                .build(), UpstreamCompression.disabled(), interceptors);
+    }
+
+    public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(upstreamId, requestCounter, objectMapper, clients.client(socketFactory, connectionTimeoutInMillis), UpstreamCompression.disabled(), interceptors);
+    }
+
+    public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, UpstreamCompression compression, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(upstreamId, requestCounter, objectMapper, clients.client(socketFactory, connectionTimeoutInMillis, !compression.isEnabled()), compression, interceptors);
+    }
+
+    public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, UpstreamCompression compression, List<AbstractJackson2HttpMessageConverter> binaryConverters, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(upstreamId, requestCounter, objectMapper, clients.client(socketFactory, connectionTimeoutInMillis, !compression.isEnabled()), compression, binaryConverters, interceptors);
+    }
+
+    public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, CloseableHttpClient client, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(upstreamId, requestCounter, objectMapper, client, UpstreamCompression.disabled(), interceptors);
+    }
+
+    public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, CloseableHttpClient client, UpstreamCompression compression, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(upstreamId, requestCounter, objectMapper, client, compression, List.of(), interceptors);
+    }
+
+    /**
+     * Binary Jackson converters (e.g. Smile, CBOR) are offered to the upstream
+     * in the Accept header before JSON. Requests are still sent as JSON unless
+     * their Content-Type is explicitly set to one of the binary formats.
+     */
+    public UpstreamRestPort(String upstreamId, UpstreamRequestCounter requestCounter, ObjectMapper objectMapper, CloseableHttpClient client, UpstreamCompression compression, List<AbstractJackson2HttpMessageConverter> binaryConverters, List<UpstreamInterceptor<CTX>> interceptors) {
         final var innerRequestFactory = new HttpComponentsClientHttpRequestFactory(client);
         final var requestFactory = new BufferingClientHttpRequestFactory(innerRequestFactory);
 
@@ -65,19 +120,25 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
         formMessageConverter.addPartConverter(mappingJacksonMessageConverter);
         final var resourceMessageConverter = new ResourceHttpMessageConverter();
 
-        final var converters = Arrays.<HttpMessageConverter<?>>asList(
-                byteArrayMessageConverter,
-                formMessageConverter,
-                mappingJacksonMessageConverter,
-                resourceMessageConverter);
+        final var converters = new ArrayList<HttpMessageConverter<?>>();
+        converters.add(byteArrayMessageConverter);
+        converters.add(formMessageConverter);
+        converters.add(mappingJacksonMessageConverter);
+        converters.addAll(binaryConverters);
+        converters.add(resourceMessageConverter);
 
         final var inner = new RestTemplate(requestFactory);
         inner.setMessageConverters(converters);
-        inner.setInterceptors(List.of(new RestInterceptors<>(upstreamId, interceptors, callContexts)));
+        inner.setInterceptors(List.of(new RestInterceptors<>(upstreamId, compression, interceptors, callContexts)));
         inner.setErrorHandler(new UpstreamResponseErrorHandler<>(upstreamId, interceptors));
+        this.abortableRequestFactory = new AbortableRequestFactory(client);
+        this.streamingRequestFactory = new InterceptingClientHttpRequestFactory(abortableRequestFactory, List.of(new RestInterceptors<>(upstreamId, compression, interceptors, callContexts, true)));
+        this.objectMapper = objectMapper;
         this.upstreamId = upstreamId;
         this.requestCounter = requestCounter;
         this.interceptors = interceptors;
+        this.jsonConverter = mappingJacksonMessageConverter;
+        this.binaryConverters = List.copyOf(binaryConverters);
         this.rest = inner;
     }
 
@@ -92,7 +153,7 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
         ctx.prepare.upstreamId = upstreamId;
         callContexts.set(ctx);
         try {
-            ctx.prepare.entity = makeEntity(ctx.prepare);
+            ctx.prepare.entity = makeEntity(ctx.prepare, responseType);
             final ResponseEntity<T> response = rest.exchange(ctx.prepare.entity, responseType);
             for (UpstreamInterceptor<CTX> interceptor : interceptors) {
                 interceptor.mappingSuccess(ctx.prepare, ctx.request, ctx.response, response);
@@ -100,6 +161,7 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
             return response;
         } finally {
             callContexts.remove();
+            RestInterceptors.completed(interceptors, ctx.prepare);
         }
     }
 
@@ -114,7 +176,7 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
         ctx.prepare.upstreamId = upstreamId;
         callContexts.set(ctx);
         try {
-            ctx.prepare.entity = makeEntity(ctx.prepare);
+            ctx.prepare.entity = makeEntity(ctx.prepare, responseType.getType());
             final ResponseEntity<T> response = rest.exchange(ctx.prepare.entity, responseType);
             for (UpstreamInterceptor<CTX> interceptor : interceptors) {
                 interceptor.mappingSuccess(ctx.prepare, ctx.request, ctx.response, response);
@@ -122,12 +184,88 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
             return response;
         } finally {
             callContexts.remove();
+            RestInterceptors.completed(interceptors, ctx.prepare);
+        }
+    }
+
+    @Override
+    public <T> Stream<T> exchangeStream(CTX context, String endpointId, RequestEntity<?> requestEntity, Class<T> elementType) {
+        return exchangeStream(context, endpointId, requestEntity, objectMapper.constructType(elementType));
+    }
+
+    @Override
+    public <T> Stream<T> exchangeStream(CTX context, String endpointId, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> elementType) {
+        return exchangeStream(context, endpointId, requestEntity, objectMapper.constructType(elementType.getType()));
+    }
+
+    private <T> Stream<T> exchangeStream(CTX context, String endpointId, RequestEntity<?> requestEntity, JavaType elementType) {
+        final ExchangeContext<CTX> ctx = new ExchangeContext<>();
+        ctx.prepare = new UpstreamInterceptor.PrepareContext<>();
+        ctx.prepare.requestId = requestCounter.next();
+        ctx.prepare.ctx = context;
+        ctx.prepare.endpointId = endpointId;
+        ctx.prepare.entity = requestEntity;
+        ctx.prepare.upstreamId = upstreamId;
+        callContexts.set(ctx);
+        boolean streaming = false;
+        try {
+            ctx.prepare.entity = makeEntity(ctx.prepare, null);
+            final ClientHttpResponse response = executeStreaming(ctx.prepare.entity);
+            final HttpUriRequest httpRequest = abortableRequestFactory.lastCreated();
+            final Runnable abort = httpRequest == null ? () -> {
+            } : httpRequest::abort;
+            try {
+                final JsonArrayIterator<CTX, T> iterator = new JsonArrayIterator<>(upstreamId, interceptors, ctx, response, abort, objectMapper, elementType);
+                streaming = true;
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(iterator::close);
+            } catch (IOException | RuntimeException ex) {
+                response.close();
+                throw RestInterceptors.failure(upstreamId, interceptors, ctx, ex);
+            }
+        } finally {
+            callContexts.remove();
+            abortableRequestFactory.forget();
+            if (!streaming) {
+                RestInterceptors.completed(interceptors, ctx.prepare);
+            }
         }
     }
 
-    private RequestEntity<?> makeEntity(PrepareContext<CTX> prepare) {
+    private ClientHttpResponse executeStreaming(RequestEntity<?> entity) {
+        final ClientHttpRequest request;
+        try {
+            request = streamingRequestFactory.createRequest(entity.getUrl(), entity.getMethod());
+            rest.httpEntityCallback(entity).doWithRequest(request);
+        } catch (IOException ex) {
+            throw new UpstreamException(upstreamId, "REQUEST_ERROR", ex.getMessage());
+        }
+        if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT)) {
+            request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+        }
+        ClientHttpResponse response = null;
+        try {
+            response = request.execute();
+            if (rest.getErrorHandler().hasError(response)) {
+                rest.getErrorHandler().handleError(entity.getUrl(), entity.getMethod(), response);
+            }
+            return response;
+        } catch (IOException | RuntimeException ex) {
+            if (response != null) {
+                response.close();
+            }
+            throw ex instanceof UpstreamException ? (UpstreamException) ex : new UpstreamException(upstreamId, "GENERIC_ERROR", ex.getMessage());
+        }
+    }
+
+    private RequestEntity<?> makeEntity(PrepareContext<CTX> prepare, Type responseType) {
         final var headers = new HttpHeaders();
         headers.addAll(prepare.entity.getHeaders());
+        if (responseType != null && !headers.containsKey(HttpHeaders.ACCEPT)) {
+            final List<MediaType> accepted = acceptedMediaTypes(responseType);
+            if (!accepted.isEmpty()) {
+                headers.setAccept(accepted);
+            }
+        }
         for (var interceptor : interceptors) {
             final var newHeaders = interceptor.prepare(prepare);
             if (newHeaders != null) {
@@ -137,16 +275,37 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
         return new RequestEntity<>(prepare.entity.getBody(), headers, prepare.entity.getMethod(), prepare.entity.getUrl(), prepare.entity.getType());
     }
 
+    private List<MediaType> acceptedMediaTypes(Type responseType) {
+        final List<MediaType> accepted = new ArrayList<>();
+        for (AbstractJackson2HttpMessageConverter converter : binaryConverters) {
+            if (converter.canRead(responseType, null, null)) {
+                accepted.addAll(converter.getSupportedMediaTypes());
+            }
+        }
+        if (!accepted.isEmpty() && jsonConverter.canRead(responseType, null, null)) {
+            accepted.addAll(jsonConverter.getSupportedMediaTypes());
+        }
+        return accepted;
+    }
+
     public static class RestInterceptors<CTX> implements ClientHttpRequestInterceptor {
 
         private final String upstreamId;
+        private final UpstreamCompression compression;
         private final List<UpstreamInterceptor<CTX>> interceptors;
         private final ThreadLocal<ExchangeContext<CTX>> exchangeContexts;
+        private final boolean streaming;
 
-        public RestInterceptors(String upstreamId, List<UpstreamInterceptor<CTX>> interceptors, ThreadLocal<ExchangeContext<CTX>> exchangeContexts) {
+        public RestInterceptors(String upstreamId, UpstreamCompression compression, List<UpstreamInterceptor<CTX>> interceptors, ThreadLocal<ExchangeContext<CTX>> exchangeContexts) {
+            this(upstreamId, compression, interceptors, exchangeContexts, false);
+        }
+
+        public RestInterceptors(String upstreamId, UpstreamCompression compression, List<UpstreamInterceptor<CTX>> interceptors, ThreadLocal<ExchangeContext<CTX>> exchangeContexts, boolean streaming) {
             this.upstreamId = upstreamId;
+            this.compression = compression;
             this.interceptors = interceptors;
             this.exchangeContexts = exchangeContexts;
+            this.streaming = streaming;
         }
 
         @Override
@@ -156,11 +315,30 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
             context.request.at = Instant.now();
             context.request.body = new ByteArrayResource(requestBodyBytes);
             context.request.headers = request.getHeaders();
+            compression.advertise(request.getHeaders());
+            final byte[] sentBodyBytes = compression.encodeRequest(request.getHeaders(), requestBodyBytes, context.request);
             for (var interceptor : interceptors) {
                 interceptor.before(context.prepare, context.request);
             }
             try {
-                final ClientHttpResponse response = execution.execute(request, requestBodyBytes);
+                if (streaming) {
+                    final ClientHttpResponse response = execution.execute(request, sentBodyBytes);
+                    context.response = new ResponseContext();
+                    context.response.at = Instant.now();
+                    context.response.status = response.getStatusCode();
+                    context.response.headers = response.getHeaders();
+                    if (!context.response.status.isError()) {
+                        //remotingSuccess is deferred to the JsonArrayIterator: a body failing to map is reported once, as an error
+                        context.response.body = new ByteArrayResource(new byte[0], "(streamed body)");
+                        return response;
+                    }
+                    try (final InputStream body = response.getBody()) {
+                        context.response.body = new ByteArrayResource(StreamUtils.copyToByteArray(body));
+                    }
+                    success(interceptors, context);
+                    return response;
+                }
+                final ClientHttpResponse response = compression.decodeResponse(execution.execute(request, sentBodyBytes));
                 try (final InputStream body = response.getBody()) {
                     context.response = new ResponseContext();
                     context.response.at = Instant.now();
@@ -168,32 +346,53 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
                     context.response.headers = response.getHeaders();
                     context.response.body = new ByteArrayResource(StreamUtils.copyToByteArray(body));
                 }
-                for (var interceptor : interceptors) {
-                    interceptor.remotingSuccess(context.prepare, context.request, context.response);
+                if (response instanceof UpstreamCompression.DecodedResponse) {
+                    context.response.compression = ((UpstreamCompression.DecodedResponse) response).compression();
                 }
+                success(interceptors, context);
                 return response;
             } catch (IOException | RuntimeException ex) {
-                context.error = new UpstreamInterceptor.ErrorContext();
-                context.error.at = Instant.now();
-                searchCauseOfType(ex, JsonMappingException.class).ifPresent(cex -> {
-                    context.error.ex = cex;
-                    for (var interceptor : interceptors) {
-                        interceptor.remotingError(context.prepare, context.request, context.error);
-                    }
-                    throw new UpstreamException(upstreamId, "MAPPING_ERROR", cex.getMessage());
-                });
-                searchCauseOfType(ex, SocketException.class).ifPresent(cex -> {
-                    context.error.ex = cex;
-                    for (var interceptor : interceptors) {
-                        interceptor.remotingError(context.prepare, context.request, context.error);
-                    }
-                    throw new UpstreamException(upstreamId, "UPSTREAM_DOWN", cex.getMessage());
-                });
-                context.error.ex = ex;
-                for (var interceptor : interceptors) {
-                    interceptor.remotingError(context.prepare, context.request, context.error);
-                }
-                throw new UpstreamException(upstreamId, "GENERIC_ERROR", ex.getMessage());
+                throw failure(upstreamId, interceptors, context, ex);
+            }
+        }
+
+        public static <CTX> void success(List<UpstreamInterceptor<CTX>> interceptors, ExchangeContext<CTX> context) {
+            for (var interceptor : interceptors) {
+                interceptor.remotingSuccess(context.prepare, context.request, context.response);
+            }
+        }
+
+        public static <CTX> UpstreamException failure(String upstreamId, List<UpstreamInterceptor<CTX>> interceptors, ExchangeContext<CTX> context, Exception ex) {
+            context.error = new UpstreamInterceptor.ErrorContext();
+            context.error.at = Instant.now();
+            final Optional<JsonMappingException> mappingError = searchCauseOfType(ex, JsonMappingException.class);
+            final Optional<SocketException> socketError = searchCauseOfType(ex, SocketException.class);
+            context.error.ex = mappingError.<Exception>map(e -> e).or(() -> socketError).orElse(ex);
+            for (var interceptor : interceptors) {
+                interceptor.remotingError(context.prepare, context.request, context.error);
+            }
+            if (mappingError.isPresent()) {
+                return new UpstreamException(upstreamId, "MAPPING_ERROR", context.error.ex.getMessage());
+            }
+            if (socketError.isPresent()) {
+                return new UpstreamException(upstreamId, "UPSTREAM_DOWN", context.error.ex.getMessage());
+            }
+            return new UpstreamException(upstreamId, "GENERIC_ERROR", ex.getMessage());
+        }
+
+        public static <CTX> UpstreamException mappingFailure(String upstreamId, List<UpstreamInterceptor<CTX>> interceptors, ExchangeContext<CTX> context, Exception ex) {
+            context.error = new UpstreamInterceptor.ErrorContext();
+            context.error.at = Instant.now();
+            context.error.ex = searchCauseOfType(ex, JsonMappingException.class).<Exception>map(e -> e).orElse(ex);
+            for (var interceptor : interceptors) {
+                interceptor.remotingError(context.prepare, context.request, context.error);
+            }
+            return new UpstreamException(upstreamId, "MAPPING_ERROR", context.error.ex.getMessage());
+        }
+
+        public static <CTX> void completed(List<UpstreamInterceptor<CTX>> interceptors, PrepareContext<CTX> prepare) {
+            for (var interceptor : interceptors) {
+                interceptor.completed(prepare);
             }
         }
 
@@ -206,4 +405,167 @@ public class UpstreamRestPort<CTX> implements UpstreamPort<CTX> {
             return Optional.empty();
         }
     }
+
+    /**
+     * Remembers the last request created by the calling thread, so that a
+     * stream closed before the end of the body can abort the connection.
+     */
+    private static class AbortableRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final ThreadLocal<HttpUriRequest> created = new ThreadLocal<>();
+
+        public AbortableRequestFactory(HttpClient client) {
+            super(client);
+        }
+
+        @Override
+        protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+            final HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+            created.set(request);
+            return request;
+        }
+
+        public HttpUriRequest lastCreated() {
+            return created.get();
+        }
+
+        public void forget() {
+            created.remove();
+        }
+    }
+
+    /**
+     * Reads the elements of a JSON array from an unbuffered response. The
+     * response is released when the end of the array is reached, on errors,
+     * or when the iterator is closed. Before the end of the array the
+     * connection is aborted rather than drained, so closing early does not
+     * download (and decode) the rest of the body. Interceptors get exactly one of
+     * remotingSuccess (at the end of the array, or when closed early) and
+     * remotingError (when the body cannot be read or mapped).
+     */
+    public static class JsonArrayIterator<CTX, T> implements Iterator<T>, Closeable {
+
+        private final String upstreamId;
+        private final List<UpstreamInterceptor<CTX>> interceptors;
+        private final ExchangeContext<CTX> context;
+        private final ClientHttpResponse response;
+        private final Runnable abort;
+        private final JsonParser parser;
+        private final ObjectReader reader;
+        private boolean ready;
+        private boolean done;
+        private boolean closed;
+        private boolean released;
+        private boolean reported;
+        private boolean exhausted;
+        private T next;
+
+        public JsonArrayIterator(String upstreamId, List<UpstreamInterceptor<CTX>> interceptors, ExchangeContext<CTX> context, ClientHttpResponse response, ObjectMapper objectMapper, JavaType elementType) throws IOException {
+            this(upstreamId, interceptors, context, response, () -> {
+            }, objectMapper, elementType);
+        }
+
+        public JsonArrayIterator(String upstreamId, List<UpstreamInterceptor<CTX>> interceptors, ExchangeContext<CTX> context, ClientHttpResponse response, Runnable abort, ObjectMapper objectMapper, JavaType elementType) throws IOException {
+            this.upstreamId = upstreamId;
+            this.interceptors = interceptors;
+            this.context = context;
+            this.response = response;
+            this.abort = abort;
+            final InputStream body = UpstreamCompression.decoding(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), response.getBody());
+            this.parser = objectMapper.getFactory().createParser(body);
+            this.reader = objectMapper.readerFor(elementType);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw JsonMappingException.from(parser, "expected a JSON array");
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ready) {
+                return true;
+            }
+            if (done) {
+                return false;
+            }
+            try {
+                final JsonToken token = parser.nextToken();
+                if (token != JsonToken.END_ARRAY && token != null) {
+                    next = reader.readValue(parser);
+                    ready = true;
+                    return true;
+                }
+            } catch (IOException | RuntimeException ex) {
+                done = true;
+                release();
+                reported = true;
+                final UpstreamException failure = RestInterceptors.failure(upstreamId, interceptors, context, ex);
+                close();
+                throw failure;
+            }
+            done = true;
+            exhausted = true;
+            release();
+            try {
+                reportSuccess();
+                final ResponseEntity<?> mapped = ResponseEntity.status(context.response.status).headers(context.response.headers).build();
+                for (var interceptor : interceptors) {
+                    interceptor.mappingSuccess(context.prepare, context.request, context.response, mapped);
+                }
+            } finally {
+                close();
+            }
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            final T current = next;
+            next = null;
+            return current;
+        }
+
+        @Override
+        public void close() {
+            done = true;
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release();
+            try {
+                reportSuccess();
+            } finally {
+                RestInterceptors.completed(interceptors, context.prepare);
+            }
+        }
+
+        private void reportSuccess() {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            RestInterceptors.success(interceptors, context);
+        }
+
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (!exhausted) {
+                abort.run();
+            }
+            try {
+                parser.close();
+            } catch (IOException ex) {
+                //the response is closed anyway
+            } finally {
+                response.close();
+            }
+        }
+    }
 }
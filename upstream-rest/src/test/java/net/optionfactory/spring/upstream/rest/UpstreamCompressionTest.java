@@ -0,0 +1,119 @@
+package net.optionfactory.spring.upstream.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+public class UpstreamCompressionTest {
+
+    @Test
+    public void requestBodiesAboveTheThresholdAreGzipped() throws IOException {
+        final byte[] body = "a".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        final HttpHeaders headers = new HttpHeaders();
+        final RequestContext request = new RequestContext();
+        final byte[] sent = UpstreamCompression.responsesAndRequestsAbove(100).encodeRequest(headers, body, request);
+        Assert.assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals(sent.length, request.compression.compressedBytes);
+        Assert.assertEquals(body.length, request.compression.uncompressedBytes);
+        try (InputStream decoded = UpstreamCompression.decoding("gzip", new ByteArrayInputStream(sent))) {
+            Assert.assertArrayEquals(body, StreamUtils.copyToByteArray(decoded));
+        }
+    }
+
+    @Test
+    public void requestBodiesBelowTheThresholdAreSentAsIs() throws IOException {
+        final byte[] body = "a".repeat(10).getBytes(StandardCharsets.UTF_8);
+        final HttpHeaders headers = new HttpHeaders();
+        final RequestContext request = new RequestContext();
+        Assert.assertSame(body, UpstreamCompression.responsesAndRequestsAbove(100).encodeRequest(headers, body, request));
+        Assert.assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertNull(request.compression);
+    }
+
+    @Test
+    public void gzippedResponsesAreDecoded() throws IOException {
+        final byte[] body = "{\"a\":1}".repeat(100).getBytes(StandardCharsets.UTF_8);
+        final byte[] gzipped = gzip(body);
+        final ClientHttpResponse response = UpstreamCompression.responses().decodeResponse(response("gzip", gzipped));
+        Assert.assertArrayEquals(body, StreamUtils.copyToByteArray(response.getBody()));
+        Assert.assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+        final var compression = ((UpstreamCompression.DecodedResponse) response).compression();
+        Assert.assertEquals(gzipped.length, compression.compressedBytes);
+        Assert.assertEquals(body.length, compression.uncompressedBytes);
+    }
+
+    @Test
+    public void identityResponsesAreNotWrapped() {
+        final ClientHttpResponse response = response(null, new byte[0]);
+        Assert.assertSame(response, UpstreamCompression.responses().decodeResponse(response));
+    }
+
+    @Test(expected = IOException.class)
+    public void responsesDecodingBeyondTheLimitAreRejected() throws IOException {
+        final byte[] bomb = gzip(new byte[4 * 1024 * 1024]);
+        final ClientHttpResponse response = new UpstreamCompression(true, -1, 1024 * 1024).decodeResponse(response("gzip", bomb));
+        response.getBody();
+    }
+
+    @Test
+    public void disabledCompressionIsNotEnabled() {
+        Assert.assertFalse(UpstreamCompression.disabled().isEnabled());
+        Assert.assertTrue(UpstreamCompression.responses().isEnabled());
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static ClientHttpResponse response(String encoding, byte[] body) {
+        final HttpHeaders headers = new HttpHeaders();
+        if (encoding != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        headers.setContentLength(body.length);
+        return new ClientHttpResponse() {
+            @Override
+            public HttpStatus getStatusCode() {
+                return HttpStatus.OK;
+            }
+
+            @Override
+            public int getRawStatusCode() {
+                return 200;
+            }
+
+            @Override
+            public String getStatusText() {
+                return "OK";
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
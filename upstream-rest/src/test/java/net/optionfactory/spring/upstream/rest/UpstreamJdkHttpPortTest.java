@@ -0,0 +1,105 @@
+package net.optionfactory.spring.upstream.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import net.optionfactory.spring.upstream.UpstreamException;
+import net.optionfactory.spring.upstream.rest.UpstreamRestPortTest.Greeting;
+import net.optionfactory.spring.upstream.rest.UpstreamRestPortTest.Recorder;
+import net.optionfactory.spring.upstream.standin.StandinLatency;
+import net.optionfactory.spring.upstream.standin.StandinResponse;
+import net.optionfactory.spring.upstream.standin.StandinScript;
+import net.optionfactory.spring.upstream.standin.StandinScript.Outcome;
+import net.optionfactory.spring.upstream.standin.UpstreamStandin;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+public class UpstreamJdkHttpPortTest {
+
+    private final UpstreamStandin standin = UpstreamStandin.start();
+    private final Recorder recorder = new Recorder();
+    private final UpstreamJdkHttpPort<Void> port = new UpstreamJdkHttpPort<>("standin", () -> "1", new ObjectMapper(), UpstreamJdkHttpPort.client(null, Duration.ofSeconds(1)), UpstreamCompression.disabled(), Duration.ofMillis(500), List.of(recorder));
+
+    @After
+    public void close() {
+        standin.close();
+    }
+
+    @Test
+    public void successfulExchangesAreMapped() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":\"hello\"}")));
+        final ResponseEntity<Greeting> got = port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class);
+        Assert.assertEquals(HttpStatus.OK, got.getStatusCode());
+        Assert.assertEquals("hello", got.getBody().text);
+        Assert.assertTrue(recorder.accepts.get(0).toString(), recorder.accepts.get(0).contains(MediaType.APPLICATION_JSON));
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void clientErrorsAreReportedAsRemotingSuccessesWithTheirStatus() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json(404, "{\"error\":\"missing\"}")));
+        assertFailsWith("GENERIC_ERROR", "404", () -> port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class));
+        Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void serverErrorsAreReportedAsRemotingSuccessesWithTheirStatus() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json(503, "{\"error\":\"down\"}")));
+        assertFailsWith("GENERIC_ERROR", "503", () -> port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class));
+        Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void nonStandardStatusCodesDoNotEscapeAsRawExceptions() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json(520, "{}")));
+        assertFailsWith("GENERIC_ERROR", "520", () -> port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class));
+        Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void nonStandardSuccessCodesAreMapped() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json(299, "{\"text\":\"hello\"}")));
+        final ResponseEntity<Greeting> got = port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class);
+        Assert.assertEquals(299, got.getStatusCodeValue());
+        Assert.assertEquals("hello", got.getBody().text);
+    }
+
+    @Test
+    public void timeoutsAreReportedAsRemotingErrors() {
+        standin.script("/greeting", StandinScript.of(StandinLatency.fixed(Duration.ofSeconds(3)), Outcome.respond(1, StandinResponse.json("{}"))));
+        assertFailsWith("GENERIC_ERROR", null, () -> port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class));
+        Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+    }
+
+    @Test
+    public void mappingFailuresAreReportedAsRemotingErrors() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":{\"nested\":1}}")));
+        assertFailsWith("MAPPING_ERROR", null, () -> port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class));
+        Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+    }
+
+    @Test
+    public void malformedBodiesAreReportedAsMappingErrors() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":")));
+        assertFailsWith("MAPPING_ERROR", null, () -> port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Map.class));
+        Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+    }
+
+    private static void assertFailsWith(String reason, String details, Runnable exchange) {
+        try {
+            exchange.run();
+            Assert.fail("expected an UpstreamException");
+        } catch (UpstreamException ex) {
+            Assert.assertEquals(reason, ex.problems.get(0).reason);
+            if (details != null) {
+                Assert.assertEquals(details, ex.problems.get(0).details);
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package net.optionfactory.spring.upstream.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import net.optionfactory.spring.upstream.UpstreamClients;
+import net.optionfactory.spring.upstream.UpstreamException;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.standin.StandinResponse;
+import net.optionfactory.spring.upstream.standin.StandinScript;
+import net.optionfactory.spring.upstream.standin.UpstreamStandin;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+public class UpstreamRestPortTest {
+
+    private final UpstreamStandin standin = UpstreamStandin.start();
+    private final UpstreamClients clients = new UpstreamClients(10, 5, Duration.ofSeconds(5));
+    private final Recorder recorder = new Recorder();
+
+    @After
+    public void close() throws IOException {
+        clients.close();
+        standin.close();
+    }
+
+    @Test
+    public void portsCanExchangeWithScriptedEndpoints() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":\"hello\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), HttpClients.createDefault(), List.of());
+        final var got = port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Map.class);
+        Assert.assertEquals("hello", got.getBody().get("text"));
+        Assert.assertEquals(1, standin.requests("/greeting"));
+    }
+
+    @Test
+    public void jsonOnlyPortsDoNotAdvertiseBinaryFormats() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":\"hello\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, UpstreamCompression.disabled(), List.of(), List.of(recorder));
+        port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Map.class);
+        final List<MediaType> accepted = recorder.accepts.get(0);
+        Assert.assertTrue(accepted.toString(), accepted.contains(MediaType.APPLICATION_JSON));
+        Assert.assertFalse(accepted.toString(), accepted.contains(MediaType.valueOf("application/x-jackson-smile")));
+        Assert.assertFalse(accepted.toString(), accepted.contains(MediaType.APPLICATION_CBOR));
+    }
+
+    @Test
+    public void smileIsAdvertisedAheadOfJsonAndDecoded() throws IOException {
+        final byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(Map.of("text", "hello"));
+        standin.script("/greeting", StandinScript.always(new StandinResponse(200, Map.of("Content-Type", "application/x-jackson-smile"), smile)));
+        final var converter = new MappingJackson2SmileHttpMessageConverter();
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, UpstreamCompression.disabled(), List.of(converter), List.of(recorder));
+        final var got = port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Map.class);
+        Assert.assertEquals("hello", got.getBody().get("text"));
+        Assert.assertEquals(List.of(MediaType.valueOf("application/x-jackson-smile"), MediaType.APPLICATION_JSON, MediaType.valueOf("application/*+json")), recorder.accepts.get(0));
+    }
+
+    @Test
+    public void cborIsAdvertisedAheadOfJsonAndDecoded() throws IOException {
+        final byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(Map.of("text", "hello"));
+        standin.script("/greeting", StandinScript.always(new StandinResponse(200, Map.of("Content-Type", "application/cbor"), cbor)));
+        final var converter = new MappingJackson2CborHttpMessageConverter();
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, UpstreamCompression.disabled(), List.of(converter), List.of(recorder));
+        final var got = port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Map.class);
+        Assert.assertEquals("hello", got.getBody().get("text"));
+        Assert.assertEquals(List.of(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON, MediaType.valueOf("application/*+json")), recorder.accepts.get(0));
+    }
+
+    @Test
+    public void explicitAcceptIsKept() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":\"hello\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, UpstreamCompression.disabled(), List.of(new MappingJackson2SmileHttpMessageConverter()), List.of(recorder));
+        port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).accept(MediaType.APPLICATION_JSON).build(), Map.class);
+        Assert.assertEquals(List.of(MediaType.APPLICATION_JSON), recorder.accepts.get(0));
+    }
+
+    @Test
+    public void streamedElementsAreMappedOneAtATime() {
+        standin.script("/greetings", StandinScript.always(StandinResponse.json("[{\"text\":\"a\"},{\"text\":\"b\"}]")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        try (Stream<Greeting> greetings = port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class)) {
+            Assert.assertEquals(List.of("a", "b"), greetings.map(g -> g.text).collect(Collectors.toList()));
+        }
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    @Test(timeout = 10_000)
+    public void closingAStreamEarlyReleasesTheConnection() {
+        final String elements = IntStream.range(0, 50_000).mapToObj(i -> String.format("{\"text\":\"%s\"}", i)).collect(Collectors.joining(",", "[", "]"));
+        standin.script("/greetings", StandinScript.always(StandinResponse.json(elements)));
+        clients.maxPerRoute(new HttpHost("127.0.0.1", standin.uri("/").getPort(), "http"), 1);
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        for (int i = 0; i != 3; ++i) {
+            try (Stream<Greeting> greetings = port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class)) {
+                Assert.assertEquals("0", greetings.findFirst().orElseThrow().text);
+            }
+        }
+        Assert.assertEquals(Collections.frequency(recorder.events, "before"), 3);
+        Assert.assertEquals(Collections.frequency(recorder.events, "remotingSuccess"), 3);
+        Assert.assertEquals(Collections.frequency(recorder.events, "completed"), 3);
+        Assert.assertFalse(recorder.events.contains("remotingError"));
+    }
+
+    @Test(timeout = 10_000)
+    public void closingASlowStreamEarlyDoesNotReadTheRestOfTheBody() throws IOException {
+        final HttpServer slow = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        slow.createContext("/greetings", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("[{\"text\":\"first\"}".getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                for (int i = 0; i != 100; ++i) {
+                    Thread.sleep(50);
+                    body.write(",{\"text\":\"more\"}".getBytes(StandardCharsets.UTF_8));
+                    body.flush();
+                }
+                body.write(']');
+            } catch (IOException | InterruptedException ex) {
+                //the client went away
+            }
+        });
+        slow.start();
+        try {
+            final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+            final URI uri = URI.create(String.format("http://127.0.0.1:%s/greetings", slow.getAddress().getPort()));
+            final Stream<Greeting> greetings = port.exchangeStream(null, "greetings", RequestEntity.get(uri).build(), Greeting.class);
+            Assert.assertEquals("first", greetings.findFirst().orElseThrow().text);
+            final long started = System.nanoTime();
+            greetings.close();
+            final long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            Assert.assertTrue(String.format("closed in %sms", elapsedMillis), elapsedMillis < 1000);
+            Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+        } finally {
+            slow.stop(0);
+        }
+    }
+
+    @Test
+    public void malformedElementsSurfaceAsMappingErrors() {
+        standin.script("/greetings", StandinScript.always(StandinResponse.json("[{\"text\":\"a\"},{\"text\":{\"nested\":1}}]")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        final List<String> got = new ArrayList<>();
+        try (Stream<Greeting> greetings = port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class)) {
+            greetings.forEach(g -> got.add(g.text));
+            Assert.fail("expected a mapping error");
+        } catch (UpstreamException ex) {
+            Assert.assertEquals("MAPPING_ERROR", ex.problems.get(0).reason);
+        }
+        Assert.assertEquals(List.of("a"), got);
+        Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+    }
+
+    @Test
+    public void nonArrayBodiesSurfaceAsMappingErrors() {
+        standin.script("/greetings", StandinScript.always(StandinResponse.json("{\"text\":\"a\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        try {
+            port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class).close();
+            Assert.fail("expected a mapping error");
+        } catch (UpstreamException ex) {
+            Assert.assertEquals("MAPPING_ERROR", ex.problems.get(0).reason);
+        }
+        Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+    }
+
+    @Test
+    public void streamedErrorStatusesAreReportedWithTheirBody() {
+        standin.script("/greetings", StandinScript.always(StandinResponse.json(503, "{\"error\":\"down\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        try {
+            port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class).close();
+            Assert.fail("expected an upstream error");
+        } catch (UpstreamException ex) {
+            Assert.assertEquals("503", ex.problems.get(0).details);
+        }
+        Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+        Assert.assertEquals("{\"error\":\"down\"}", new String(recorder.lastResponseBody, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void successfulExchangesCompleteOnce() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":\"hello\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class);
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void errorStatusesCompleteOnce() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json(503, "{\"error\":\"down\"}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        try {
+            port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class);
+            Assert.fail("expected an upstream error");
+        } catch (UpstreamException ex) {
+            Assert.assertEquals("503", ex.problems.get(0).details);
+        }
+        Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void remotingErrorsCompleteOnce() {
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        try {
+            port.exchange(null, "greeting", RequestEntity.get(URI.create("http://127.0.0.1:1/greeting")).build(), Greeting.class);
+            Assert.fail("expected an upstream error");
+        } catch (UpstreamException ex) {
+            Assert.assertEquals("UPSTREAM_DOWN", ex.problems.get(0).reason);
+        }
+        Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+    }
+
+    @Test
+    public void mappingErrorsCompleteOnce() {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":{\"nested\":1}}")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        try {
+            port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class);
+            Assert.fail("expected a mapping error");
+        } catch (RuntimeException ex) {
+            //expected
+        }
+        Assert.assertEquals(1, Collections.frequency(recorder.events, "completed"));
+        Assert.assertEquals("completed", recorder.events.get(recorder.events.size() - 1));
+        Assert.assertFalse(recorder.events.contains("mappingSuccess"));
+    }
+
+    @Test
+    public void failingPreparesCompleteOnce() {
+        final var failing = new UpstreamInterceptor<Void>() {
+            @Override
+            public HttpHeaders prepare(PrepareContext<Void> prepare) {
+                throw new IllegalStateException("no token");
+            }
+        };
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder, failing));
+        try {
+            port.exchange(null, "greeting", RequestEntity.get(standin.uri("/greeting")).build(), Greeting.class);
+            Assert.fail("expected a failure");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+        try {
+            port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class);
+            Assert.fail("expected a failure");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+        Assert.assertEquals(List.of("completed", "completed"), recorder.events);
+    }
+
+    @Test
+    public void streamsClosedWithoutBeingConsumedCompleteOnce() {
+        standin.script("/greetings", StandinScript.always(StandinResponse.json("[{\"text\":\"a\"},{\"text\":\"b\"}]")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        final Stream<Greeting> greetings = port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class);
+        Assert.assertEquals(List.of("before"), recorder.events);
+        greetings.close();
+        greetings.close();
+        Assert.assertEquals(List.of("before", "remotingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void streamsConsumedAndClosedCompleteOnce() {
+        standin.script("/greetings", StandinScript.always(StandinResponse.json("[{\"text\":\"a\"},{\"text\":\"b\"}]")));
+        final var port = new UpstreamRestPort<Void>("standin", () -> "1", new ObjectMapper(), clients, null, 1000, List.of(recorder));
+        final Stream<Greeting> greetings = port.exchangeStream(null, "greetings", RequestEntity.get(standin.uri("/greetings")).build(), Greeting.class);
+        Assert.assertEquals(2, greetings.count());
+        greetings.close();
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    public static class Greeting {
+
+        public String text;
+    }
+
+    public static class Recorder implements UpstreamInterceptor<Void> {
+
+        public final List<List<MediaType>> accepts = new CopyOnWriteArrayList<>();
+        public final List<String> events = new CopyOnWriteArrayList<>();
+        public volatile byte[] lastResponseBody;
+
+        @Override
+        public void before(PrepareContext<Void> prepare, RequestContext request) {
+            accepts.add(MediaType.parseMediaTypes(request.headers.get(HttpHeaders.ACCEPT)));
+            events.add("before");
+        }
+
+        @Override
+        public void remotingSuccess(PrepareContext<Void> prepare, RequestContext request, ResponseContext response) {
+            events.add("remotingSuccess");
+            try {
+                lastResponseBody = response.body.getInputStream().readAllBytes();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void remotingError(PrepareContext<Void> prepare, RequestContext request, ErrorContext error) {
+            events.add("remotingError");
+        }
+
+        @Override
+        public void mappingSuccess(PrepareContext<Void> prepare, RequestContext request, ResponseContext response, ResponseEntity<?> mapped) {
+            events.add("mappingSuccess");
+        }
+
+        @Override
+        public void completed(PrepareContext<Void> prepare) {
+            events.add("completed");
+        }
+    }
+}
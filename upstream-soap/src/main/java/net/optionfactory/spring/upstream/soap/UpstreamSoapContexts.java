@@ -0,0 +1,84 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.bind.JAXBContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+
+/**
+ * JAXB contexts shared by the ports binding the same set of packages.
+ * Contexts are immutable and thread safe, and building one for large
+ * generated packages takes seconds: each context is built at most once, by
+ * the first caller asking for it, without holding up callers asking for
+ * other contexts. Contexts are kept until {@link #clear()}: they are keyed
+ * by the packages configured on the ports, so their number is bounded by the
+ * configuration. The time spent creating each context is kept and exposed by
+ * {@link #creationTimes()}.
+ */
+public class UpstreamSoapContexts {
+
+    private static final UpstreamSoapContexts SHARED = new UpstreamSoapContexts();
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamSoapContexts.class);
+    private final Map<List<String>, LazyContext> contexts = new ConcurrentHashMap<>();
+    private final Map<List<String>, Duration> creationTimes = new ConcurrentHashMap<>();
+
+    public static UpstreamSoapContexts shared() {
+        return SHARED;
+    }
+
+    public JAXBContext context(String... packagesToScan) {
+        final var packages = new ArrayList<>(Arrays.asList(packagesToScan));
+        packages.sort(null);
+        final var key = List.copyOf(packages);
+        //only the placeholder is created while holding the map bin, the context is built outside
+        return contexts.computeIfAbsent(key, k -> new LazyContext()).get(key);
+    }
+
+    public Map<String, Duration> creationTimes() {
+        final var times = new LinkedHashMap<String, Duration>();
+        creationTimes.forEach((packages, elapsed) -> times.put(String.join(",", packages), elapsed));
+        return times;
+    }
+
+    public Duration totalCreationTime() {
+        return creationTimes.values().stream().reduce(Duration.ZERO, Duration::plus);
+    }
+
+    public void clear() {
+        contexts.clear();
+        creationTimes.clear();
+    }
+
+    private class LazyContext {
+
+        private volatile JAXBContext context;
+
+        public JAXBContext get(List<String> packages) {
+            final JAXBContext got = context;
+            if (got != null) {
+                return got;
+            }
+            synchronized (this) {
+                if (context == null) {
+                    final long start = System.nanoTime();
+                    final var scanning = new Jaxb2Marshaller();
+                    scanning.setPackagesToScan(packages.toArray(new String[0]));
+                    final JAXBContext built = scanning.getJaxbContext();
+                    final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+                    creationTimes.put(packages, elapsed);
+                    logger.info("[upstream-soap] created JAXBContext for {} in {}ms", packages, elapsed.toMillis());
+                    context = built;
+                }
+                return context;
+            }
+        }
+    }
+}
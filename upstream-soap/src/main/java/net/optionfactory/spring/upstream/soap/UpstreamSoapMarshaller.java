@@ -0,0 +1,136 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import org.springframework.oxm.XmlMappingException;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.oxm.mime.MimeContainer;
+
+/**
+ * A {@code Jaxb2Marshaller} using a JAXB context from an
+ * {@link UpstreamSoapContexts} registry and reusing JAXB marshallers and
+ * unmarshallers across calls. At most {@code poolSize} idle instances of each
+ * are kept. The instance borrowed by a {@code marshal} or {@code unmarshal}
+ * call goes back to the pool when the call returns or fails; instances
+ * obtained directly through {@link #createMarshaller()} or
+ * {@link #createUnmarshaller()} are left to the garbage collector.
+ * Unmarshallers get the schema supplied for the current call, if any.
+ */
+public class UpstreamSoapMarshaller extends Jaxb2Marshaller {
+
+    private final UpstreamSoapContexts contexts;
+    private final int poolSize;
+    private final Supplier<Schema> unmarshallingSchema;
+    private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+    private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleMarshallers = new AtomicInteger();
+    private final AtomicInteger idleUnmarshallers = new AtomicInteger();
+    private final ThreadLocal<Borrowed<Marshaller>> borrowedMarshaller = new ThreadLocal<>();
+    private final ThreadLocal<Borrowed<Unmarshaller>> borrowedUnmarshaller = new ThreadLocal<>();
+
+    public UpstreamSoapMarshaller(UpstreamSoapContexts contexts, int poolSize, Supplier<Schema> unmarshallingSchema) {
+        this.contexts = contexts;
+        this.poolSize = poolSize;
+        this.unmarshallingSchema = unmarshallingSchema;
+    }
+
+    public UpstreamSoapMarshaller(UpstreamSoapContexts contexts, int poolSize) {
+        this(contexts, poolSize, () -> null);
+    }
+
+    @Override
+    public JAXBContext getJaxbContext() {
+        return contexts.context(getPackagesToScan());
+    }
+
+    @Override
+    public Marshaller createMarshaller() {
+        Marshaller marshaller = marshallers.poll();
+        if (marshaller == null) {
+            marshaller = super.createMarshaller();
+        } else {
+            idleMarshallers.decrementAndGet();
+        }
+        final Borrowed<Marshaller> borrowed = borrowedMarshaller.get();
+        if (borrowed != null) {
+            borrowed.instance = marshaller;
+        }
+        return marshaller;
+    }
+
+    @Override
+    public Unmarshaller createUnmarshaller() {
+        Unmarshaller unmarshaller = unmarshallers.poll();
+        if (unmarshaller == null) {
+            unmarshaller = super.createUnmarshaller();
+        } else {
+            idleUnmarshallers.decrementAndGet();
+        }
+        unmarshaller.setSchema(unmarshallingSchema.get());
+        final Borrowed<Unmarshaller> borrowed = borrowedUnmarshaller.get();
+        if (borrowed != null) {
+            borrowed.instance = unmarshaller;
+        }
+        return unmarshaller;
+    }
+
+    @Override
+    public void marshal(Object graph, Result result, MimeContainer mimeContainer) throws XmlMappingException {
+        final Borrowed<Marshaller> borrowed = new Borrowed<>();
+        borrowedMarshaller.set(borrowed);
+        try {
+            super.marshal(graph, result, mimeContainer);
+        } finally {
+            borrowedMarshaller.remove();
+            if (borrowed.instance != null) {
+                borrowed.instance.setAttachmentMarshaller(null);
+                release(borrowed.instance, marshallers, idleMarshallers);
+            }
+        }
+    }
+
+    @Override
+    public Object unmarshal(Source source, MimeContainer mimeContainer) throws XmlMappingException {
+        final Borrowed<Unmarshaller> borrowed = new Borrowed<>();
+        borrowedUnmarshaller.set(borrowed);
+        try {
+            return super.unmarshal(source, mimeContainer);
+        } finally {
+            borrowedUnmarshaller.remove();
+            if (borrowed.instance != null) {
+                borrowed.instance.setAttachmentUnmarshaller(null);
+                borrowed.instance.setSchema(null);
+                release(borrowed.instance, unmarshallers, idleUnmarshallers);
+            }
+        }
+    }
+
+    private <T> void release(T instance, Queue<T> pool, AtomicInteger idle) {
+        if (idle.incrementAndGet() > poolSize) {
+            idle.decrementAndGet();
+            return;
+        }
+        pool.offer(instance);
+    }
+
+    public int idleMarshallers() {
+        return idleMarshallers.get();
+    }
+
+    public int idleUnmarshallers() {
+        return idleUnmarshallers.get();
+    }
+
+    private static class Borrowed<T> {
+
+        public T instance;
+    }
+}
@@ -0,0 +1,457 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.activation.DataHandler;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import org.apache.axiom.util.stax.xop.XOPEncodedStream;
+import org.apache.axiom.util.stax.xop.XOPUtils;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.oxm.Unmarshaller;
+import org.springframework.oxm.XmlMappingException;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.oxm.mime.MimeContainer;
+import org.springframework.oxm.mime.MimeUnmarshaller;
+import org.springframework.util.xml.StaxUtils;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.soap.SoapVersion;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+
+/**
+ * How {@link UpstreamSoapPort} builds SOAP messages and how much of them is
+ * captured for interceptors. DOM messages (SAAJ) are fully built in memory.
+ * Streaming messages (Axiom without payload caching, requires axiom-api and
+ * axiom-impl) are unmarshalled straight from the connection: the response
+ * payload can only be read once, so it is not validated by the payload
+ * validating interceptor: whether it is validated while unmarshalling is up
+ * to the port {@link UpstreamSoapValidation} policy, through
+ * {@link UpstreamSoapValidator#responseSchema()} (never with {@code NEVER}
+ * or {@code REQUESTS}, for a fraction of the exchanges with
+ * {@code SAMPLED}). Interceptors see the bytes captured while it was read. With MTOM enabled, binary content is sent and received as XOP
+ * attachments (cached to disk above a threshold when streaming) and
+ * interceptors see the envelope followed by a comment for each attachment
+ * instead of the attachment content.
+ */
+public class UpstreamSoapMessages {
+
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final boolean streaming;
+    private final int maxCapturedBytes;
+    private final boolean mtom;
+    private final File attachmentCacheDir;
+    private final int attachmentCacheThreshold;
+
+    public UpstreamSoapMessages(boolean streaming, int maxCapturedBytes) {
+        this(streaming, maxCapturedBytes, false, null, 0);
+    }
+
+    public UpstreamSoapMessages(boolean streaming, int maxCapturedBytes, boolean mtom, File attachmentCacheDir, int attachmentCacheThreshold) {
+        this.streaming = streaming;
+        this.maxCapturedBytes = maxCapturedBytes;
+        this.mtom = mtom;
+        this.attachmentCacheDir = attachmentCacheDir;
+        this.attachmentCacheThreshold = attachmentCacheThreshold;
+    }
+
+    public static UpstreamSoapMessages dom() {
+        return new UpstreamSoapMessages(false, UNBOUNDED);
+    }
+
+    public static UpstreamSoapMessages dom(int maxCapturedBytes) {
+        return new UpstreamSoapMessages(false, maxCapturedBytes);
+    }
+
+    public static UpstreamSoapMessages streaming(int maxCapturedBytes) {
+        return new UpstreamSoapMessages(true, maxCapturedBytes);
+    }
+
+    public static UpstreamSoapMessages mtom(int maxCapturedBytes) {
+        return new UpstreamSoapMessages(false, maxCapturedBytes, true, null, 0);
+    }
+
+    public static UpstreamSoapMessages streamingMtom(int maxCapturedBytes, File attachmentCacheDir, int attachmentCacheThreshold) {
+        return new UpstreamSoapMessages(true, maxCapturedBytes, true, attachmentCacheDir, attachmentCacheThreshold);
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public boolean isMtom() {
+        return mtom;
+    }
+
+    public WebServiceMessageFactory messageFactory(SoapVersion soapVersion) {
+        if (!streaming) {
+            return saaj(soapVersion);
+        }
+        if (mtom) {
+            //Axiom messages cannot be converted to XOP packages by the marshaller: requests are built with SAAJ
+            return new MtomStreamingMessageFactory(saaj(soapVersion), axiom(soapVersion));
+        }
+        return axiom(soapVersion);
+    }
+
+    public Unmarshaller unmarshaller(Jaxb2Marshaller marshaller) {
+        return streaming && mtom ? new XopUnmarshaller(marshaller) : marshaller;
+    }
+
+    private static SaajSoapMessageFactory saaj(SoapVersion soapVersion) {
+        final var mf = new SaajSoapMessageFactory();
+        mf.setSoapVersion(soapVersion);
+        mf.afterPropertiesSet();
+        return mf;
+    }
+
+    private AxiomSoapMessageFactory axiom(SoapVersion soapVersion) {
+        final var mf = new AxiomSoapMessageFactory();
+        mf.setSoapVersion(soapVersion);
+        mf.setPayloadCaching(false);
+        if (attachmentCacheDir != null) {
+            mf.setAttachmentCaching(true);
+            mf.setAttachmentCacheDir(attachmentCacheDir);
+            mf.setAttachmentCacheThreshold(attachmentCacheThreshold);
+        }
+        try {
+            mf.afterPropertiesSet();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return mf;
+    }
+
+    public Capture capture() {
+        return mtom ? new MultipartCapture(maxCapturedBytes) : new Capture(maxCapturedBytes);
+    }
+
+    public static class Capture extends OutputStream {
+
+        private final int maxBytes;
+        private final ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        private long total;
+
+        public Capture(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) {
+            if (kept.size() < maxBytes) {
+                kept.write(b);
+            }
+            ++total;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            final int keep = Math.min(len, maxBytes - kept.size());
+            if (keep > 0) {
+                kept.write(b, off, keep);
+            }
+            total += len;
+        }
+
+        public long total() {
+            return total;
+        }
+
+        public Resource toResource() {
+            if (total <= kept.size()) {
+                return new ByteArrayResource(kept.toByteArray());
+            }
+            final byte[] marker = String.format("...(truncated, %s bytes)", total).getBytes(StandardCharsets.UTF_8);
+            final var truncated = new ByteArrayOutputStream(kept.size() + marker.length);
+            truncated.writeBytes(kept.toByteArray());
+            truncated.writeBytes(marker);
+            return new ByteArrayResource(truncated.toByteArray());
+        }
+    }
+
+    /**
+     * Captures the root part of a MIME multipart message and replaces every
+     * other part with a comment reporting its Content-ID, Content-Type and
+     * size. Messages not starting with a MIME boundary are captured as they
+     * are.
+     */
+    public static class MultipartCapture extends Capture {
+
+        private static final byte[] CRLF = {'\r', '\n'};
+        private static final int MAX_HEADERS_BYTES = 4096;
+        private static final int CRLFCRLF = ('\r' << 24) | ('\n' << 16) | ('\r' << 8) | '\n';
+
+        private final ByteArrayOutputStream firstLine = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        private byte[] delimiter;
+        private boolean multipart;
+        private boolean detecting = true;
+        private int matched;
+        private int part;
+        private boolean inHeaders;
+        private int headersTail;
+        private String contentId;
+        private String contentType;
+        private long partBytes;
+
+        public MultipartCapture(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        public void write(int b) {
+            if (detecting) {
+                detect((byte) b);
+                return;
+            }
+            if (!multipart) {
+                super.write(b);
+                return;
+            }
+            scan((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (!detecting && !multipart) {
+                super.write(b, off, len);
+                return;
+            }
+            for (int i = off; i != off + len; ++i) {
+                write(b[i]);
+            }
+        }
+
+        private void detect(byte b) {
+            if (firstLine.size() == 0 && (b == '\r' || b == '\n')) {
+                return;
+            }
+            firstLine.write(b);
+            final byte[] line = firstLine.toByteArray();
+            if (line.length <= 2 && (line[0] != '-' || (line.length == 2 && line[1] != '-'))) {
+                detecting = false;
+                super.write(line, 0, line.length);
+                return;
+            }
+            if (b != '\n') {
+                return;
+            }
+            final String boundary = new String(line, StandardCharsets.US_ASCII).trim().substring(2);
+            delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+            detecting = false;
+            multipart = true;
+            part = 0;
+            startHeaders();
+            //the CRLF ending the first boundary line was consumed while detecting it
+            for (byte c : CRLF) {
+                header(c);
+            }
+        }
+
+        private void scan(byte b) {
+            if (b == delimiter[matched]) {
+                if (++matched == delimiter.length) {
+                    matched = 0;
+                    boundary();
+                }
+                return;
+            }
+            if (matched != 0) {
+                final int pending = matched;
+                matched = 0;
+                for (int i = 0; i != pending; ++i) {
+                    content(delimiter[i]);
+                }
+                scan(b);
+                return;
+            }
+            content(b);
+        }
+
+        private void content(byte b) {
+            if (inHeaders) {
+                header(b);
+                return;
+            }
+            if (part == 0) {
+                super.write(b);
+                return;
+            }
+            ++partBytes;
+        }
+
+        private void header(byte b) {
+            if (headers.size() < MAX_HEADERS_BYTES) {
+                headers.write(b);
+            }
+            //the last four bytes seen, to find the blank line without copying the headers
+            headersTail = (headersTail << 8) | (b & 0xff);
+            if (headersTail == CRLFCRLF) {
+                endHeaders(headers.toString(StandardCharsets.US_ASCII));
+            }
+        }
+
+        private void boundary() {
+            if (part > 0 && !inHeaders) {
+                final String comment = String.format("%n<!-- attachment cid:%s %s %s bytes -->", contentId, contentType, partBytes);
+                final byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+                super.write(bytes, 0, bytes.length);
+            }
+            ++part;
+            startHeaders();
+        }
+
+        private void startHeaders() {
+            inHeaders = true;
+            headers.reset();
+            headersTail = 0;
+            contentId = null;
+            contentType = null;
+            partBytes = 0;
+        }
+
+        private void endHeaders(String text) {
+            inHeaders = false;
+            for (String line : text.split("\r\n")) {
+                final int colon = line.indexOf(':');
+                if (colon == -1) {
+                    continue;
+                }
+                final String name = line.substring(0, colon).trim();
+                final String value = line.substring(colon + 1).trim();
+                if ("Content-ID".equalsIgnoreCase(name)) {
+                    contentId = value.replaceAll("^<|>$", "");
+                } else if ("Content-Type".equalsIgnoreCase(name)) {
+                    contentType = value;
+                }
+            }
+        }
+    }
+
+    private static class MtomStreamingMessageFactory implements WebServiceMessageFactory {
+
+        private final WebServiceMessageFactory outgoing;
+        private final WebServiceMessageFactory incoming;
+
+        public MtomStreamingMessageFactory(WebServiceMessageFactory outgoing, WebServiceMessageFactory incoming) {
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+        }
+
+        @Override
+        public WebServiceMessage createWebServiceMessage() {
+            return outgoing.createWebServiceMessage();
+        }
+
+        @Override
+        public WebServiceMessage createWebServiceMessage(InputStream inputStream) throws IOException {
+            return incoming.createWebServiceMessage(inputStream);
+        }
+    }
+
+    /**
+     * Presents XOP attachments of streamed messages to JAXB as
+     * {@code xop:Include} elements, so that they are bound to the (possibly
+     * disk cached) attachment data handlers instead of being inlined.
+     */
+    private static class XopUnmarshaller implements MimeUnmarshaller {
+
+        private final Jaxb2Marshaller delegate;
+
+        public XopUnmarshaller(Jaxb2Marshaller delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return delegate.supports(clazz);
+        }
+
+        @Override
+        public Object unmarshal(Source source) throws IOException, XmlMappingException {
+            return delegate.unmarshal(source);
+        }
+
+        @Override
+        public Object unmarshal(Source source, MimeContainer mimeContainer) throws XmlMappingException, IOException {
+            final XMLStreamReader reader = StaxUtils.isStaxSource(source) ? StaxUtils.getXMLStreamReader(source) : null;
+            if (reader == null || mimeContainer == null) {
+                return delegate.unmarshal(source, mimeContainer);
+            }
+            final XOPEncodedStream xop = XOPUtils.getXOPEncodedStream(reader);
+            final List<DataHandler> attachments = new ArrayList<>();
+            final Object unmarshalled = delegate.unmarshal(StaxUtils.createStaxSource(xop.getReader()), new MimeContainer() {
+                @Override
+                public boolean isXopPackage() {
+                    return true;
+                }
+
+                @Override
+                public boolean convertToXopPackage() {
+                    return true;
+                }
+
+                @Override
+                public void addAttachment(String contentId, DataHandler dataHandler) {
+                    mimeContainer.addAttachment(contentId, dataHandler);
+                }
+
+                @Override
+                public DataHandler getAttachment(String contentId) {
+                    final String cid = contentId.startsWith("<") && contentId.endsWith(">") ? contentId.substring(1, contentId.length() - 1) : contentId;
+                    try {
+                        final DataHandler attachment = xop.getMimePartProvider().getDataHandler(cid);
+                        attachments.add(attachment);
+                        return attachment;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            });
+            //attachments are read lazily: fetch them (caching them to disk) before the connection is closed
+            for (DataHandler attachment : attachments) {
+                attachment.getInputStream().close();
+            }
+            return unmarshalled;
+        }
+    }
+
+    public static class TeeInputStream extends FilterInputStream {
+
+        private final Capture capture;
+
+        public TeeInputStream(InputStream in, Capture capture) {
+            super(in);
+            this.capture = capture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                capture.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                capture.write(b, off, read);
+            }
+            return read;
+        }
+    }
+}
@@ -1,65 +1,107 @@
 package net.optionfactory.spring.upstream.soap;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import net.optionfactory.spring.upstream.UpstreamClients;
 import net.optionfactory.spring.upstream.UpstreamInterceptor;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.ErrorContext;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.ExchangeContext;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
 import net.optionfactory.spring.upstream.UpstreamInterceptor.ResponseContext;
 import net.optionfactory.spring.upstream.UpstreamPort;
+import net.optionfactory.spring.upstream.balancing.UpstreamFailureClassifier;
 import net.optionfactory.spring.upstream.counters.UpstreamRequestCounter;
 import net.optionfactory.spring.upstream.soap.UpstreamSoapPort.SoapInterceptors;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.HttpContext;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
-import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.oxm.MarshallingFailureException;
 import org.springframework.ws.WebServiceMessage;
 import org.springframework.ws.client.WebServiceClientException;
+import org.springframework.ws.client.WebServiceIOException;
+import org.springframework.ws.client.WebServiceTransportException;
 import org.springframework.ws.client.core.WebServiceTemplate;
 import org.springframework.ws.client.support.interceptor.ClientInterceptor;
-import org.springframework.ws.client.support.interceptor.PayloadValidatingInterceptor;
+import org.springframework.ws.client.support.interceptor.WebServiceValidationException;
 import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.SoapVersion;
-import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
 import org.springframework.ws.transport.context.TransportContextHolder;
 import org.springframework.ws.transport.http.HttpComponentsConnection;
 import org.springframework.ws.transport.http.HttpComponentsMessageSender;
 
-public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
+public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX>, UpstreamFailureClassifier {
+
+    public static final int DEFAULT_POOLED_MARSHALLERS = 16;
 
     private final String upstreamId;
     private final UpstreamRequestCounter requestCounter;
     private final WebServiceTemplate soap;
     private final List<UpstreamInterceptor<CTX>> interceptors;
+    private final UpstreamSoapMessages messages;
+    private final UpstreamSoapValidator<CTX> validator;
     private final ThreadLocal<ExchangeContext<CTX>> callContexts = new ThreadLocal<>();
+    private final ThreadLocal<UpstreamSoapMessages.Capture> responseCaptures = new ThreadLocal<>();
 
     public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
-        final var builder = HttpClientBuilder.create();
-        builder.setSSLSocketFactory(socketFactory);
-        
-        final var client = builder
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, HttpClientBuilder.create()
+                .setSSLSocketFactory(socketFactory)
                 .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(connectionTimeoutInMillis).build())
-                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
+                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build()), additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, clients.builder(socketFactory, connectionTimeoutInMillis), additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, UpstreamSoapMessages messages, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, clients.builder(socketFactory, connectionTimeoutInMillis), messages, additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, UpstreamSoapMessages messages, UpstreamSoapValidation validation, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, clients.builder(socketFactory, connectionTimeoutInMillis), messages, validation, additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, HttpClientBuilder builder, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, builder, UpstreamSoapMessages.dom(), additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, HttpClientBuilder builder, UpstreamSoapMessages messages, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, builder, messages, messages.isMtom() ? UpstreamSoapValidation.never() : UpstreamSoapValidation.always(), additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, HttpClientBuilder builder, UpstreamSoapMessages messages, UpstreamSoapValidation validation, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, builder, messages, validation, UpstreamSoapContexts.shared(), additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, HttpClientBuilder builder, UpstreamSoapMessages messages, UpstreamSoapValidation validation, UpstreamSoapContexts contexts, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        this(soapVersion, upstreamId, requestCounter, schemas, packageToScan, builder, messages, validation, contexts, DEFAULT_POOLED_MARSHALLERS, additionalInterceptors, interceptors);
+    }
+
+    public UpstreamSoapPort(SoapVersion soapVersion, String upstreamId, UpstreamRequestCounter requestCounter, Resource[] schemas, Class<?> packageToScan, HttpClientBuilder builder, UpstreamSoapMessages messages, UpstreamSoapValidation validation, UpstreamSoapContexts contexts, int pooledMarshallers, List<ClientInterceptor> additionalInterceptors, List<UpstreamInterceptor<CTX>> interceptors) {
+        if (messages.isMtom() && validation.isEnabled()) {
+            //xop:Include elements do not validate against the schemas
+            throw new IllegalArgumentException(String.format("upstream %s: schema validation is not supported with MTOM messages", upstreamId));
+        }
+        final var client = builder
                 .addInterceptorFirst(new HttpComponentsMessageSender.RemoveSoapHeadersInterceptor())
                 .addInterceptorLast((HttpResponse hr, HttpContext hc) -> {
                     final var headers = new HttpHeaders();
@@ -72,31 +114,36 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
                     ctx.response.status = HttpStatus.resolve(hr.getStatusLine().getStatusCode());
                     ctx.response.at = Instant.now();
                     ctx.response.body = null;
+                    if (messages.isStreaming() && hr.getEntity() != null) {
+                        final var capture = messages.capture();
+                        responseCaptures.set(capture);
+                        hr.setEntity(new HttpEntityWrapper(hr.getEntity()) {
+                            @Override
+                            public InputStream getContent() throws IOException {
+                                return new UpstreamSoapMessages.TeeInputStream(super.getContent(), capture);
+                            }
+                        });
+                    }
                 })
                 .build();
 
         final var inner = new WebServiceTemplate();
-        final SaajSoapMessageFactory mf = new SaajSoapMessageFactory();
-        mf.setSoapVersion(soapVersion);
-        initBean(mf);
-        inner.setMessageFactory(mf);
+        inner.setMessageFactory(messages.messageFactory(soapVersion));
         inner.setMessageSender(new HttpComponentsMessageSender(client));
-        final var ms = new Jaxb2Marshaller();
-        ms.setSchemas(schemas);
+        final UpstreamSoapValidator<CTX> validator = !validation.isEnabled()
+                ? null
+                : new UpstreamSoapValidator<>(UpstreamSoapSchemas.shared().schema(schemas), validation, callContexts, messages.isStreaming());
+        final var ms = new UpstreamSoapMarshaller(contexts, pooledMarshallers, validator != null ? validator::responseSchema : () -> null);
         ms.setPackagesToScan(packageToScan.getPackageName());
+        ms.setMtomEnabled(messages.isMtom());
         initBean(ms);
         inner.setMarshaller(ms);
-        inner.setUnmarshaller(ms);
-        final var validator = new PayloadValidatingInterceptor();
-        validator.setSchemas(schemas);
-        validator.setValidateRequest(true);
-        validator.setValidateResponse(true);
-        initBean(validator);
-        
+        inner.setUnmarshaller(messages.unmarshaller(ms));
+
         final ClientInterceptor[] clientInterceptors = Stream.of(
-                Stream.of(validator),
+                Stream.ofNullable(validator),
                 additionalInterceptors.stream(),
-                Stream.of(new SoapInterceptors<>(interceptors, callContexts))
+                Stream.of(new SoapInterceptors<>(interceptors, callContexts, messages))
         ).flatMap(Function.identity()).toArray(n -> new ClientInterceptor[n]);
         
         inner.setInterceptors(clientInterceptors);
@@ -104,9 +151,36 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
         this.upstreamId = upstreamId;
         this.requestCounter = requestCounter;
         this.interceptors = interceptors;
+        this.messages = messages;
+        this.validator = validator;
         this.soap = inner;
     }
 
+    /**
+     * The payload validator of this port, exposing validation counters and
+     * timings (exported by {@code UpstreamSoapValidationMetrics} in
+     * upstream-interceptor-micrometer). Null when validation is disabled.
+     */
+    public UpstreamSoapValidator<CTX> validator() {
+        return validator;
+    }
+
+    /**
+     * Blames the replica for I/O failures and HTTP errors carrying no SOAP
+     * fault. Requests failing marshalling or schema validation are never
+     * sent; SOAP faults and unmarshalling failures are answers.
+     */
+    @Override
+    public Outcome classify(RuntimeException ex) {
+        if (ex instanceof WebServiceIOException || ex instanceof WebServiceTransportException || ex instanceof UncheckedIOException) {
+            return Outcome.REPLICA_FAILURE;
+        }
+        if (ex instanceof MarshallingFailureException || ex instanceof WebServiceValidationException) {
+            return Outcome.NOT_SENT;
+        }
+        return Outcome.ANSWERED;
+    }
+
     private void initBean(InitializingBean b) {
         try {
             b.afterPropertiesSet();
@@ -146,8 +220,8 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
             }
             final var soapAction = ctx.prepare.entity.getHeaders().getFirst("SOAPAction");
             ctx.prepare.entity = new RequestEntity<>(ctx.prepare.entity.getBody(), headers, ctx.prepare.entity.getMethod(), ctx.prepare.entity.getUrl(), ctx.prepare.entity.getType());
-            final var got = soap.marshalSendAndReceive(ctx.prepare.entity.getUrl().toString(), ctx.prepare.entity.getBody(), (WebServiceMessage message) -> {
-                if(soapAction != null){
+            final Object got = soap.marshalSendAndReceive(ctx.prepare.entity.getUrl().toString(), ctx.prepare.entity.getBody(), (WebServiceMessage message) -> {
+                if (soapAction != null) {
                     ((SoapMessage) message).setSoapAction(soapAction);
                 }
                 final HttpComponentsConnection connection = (HttpComponentsConnection) TransportContextHolder.getTransportContext().getConnection();
@@ -157,6 +231,15 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
                     }
                 }
             });
+            //streamed responses are only read while unmarshalling, after the client interceptors ran:
+            //failures while reading them are reported as remoting errors by SoapInterceptors#afterCompletion
+            final var capture = responseCaptures.get();
+            if (capture != null) {
+                ctx.response.body = capture.toResource();
+                for (var interceptor : interceptors) {
+                    interceptor.remotingSuccess(ctx.prepare, ctx.request, ctx.response);
+                }
+            }
             final ResponseEntity<T> response = ResponseEntity.ok().headers(ctx.response.headers).body((T) got);
             for (UpstreamInterceptor<CTX> interceptor : interceptors) {
                 interceptor.mappingSuccess(ctx.prepare, ctx.request, ctx.response, response);
@@ -164,6 +247,10 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
             return response;
         } finally {
             callContexts.remove();
+            responseCaptures.remove();
+            for (var interceptor : interceptors) {
+                interceptor.completed(ctx.prepare);
+            }
         }
     }
 
@@ -171,10 +258,16 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
 
         private final List<UpstreamInterceptor<CTX>> interceptors;
         private final ThreadLocal<ExchangeContext<CTX>> callContexts;
+        private final UpstreamSoapMessages messages;
 
         public SoapInterceptors(List<UpstreamInterceptor<CTX>> interceptors, ThreadLocal<ExchangeContext<CTX>> callContexts) {
+            this(interceptors, callContexts, UpstreamSoapMessages.dom());
+        }
+
+        public SoapInterceptors(List<UpstreamInterceptor<CTX>> interceptors, ThreadLocal<ExchangeContext<CTX>> callContexts, UpstreamSoapMessages messages) {
             this.interceptors = interceptors;
             this.callContexts = callContexts;
+            this.messages = messages;
         }
 
         @Override
@@ -193,6 +286,9 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
 
         @Override
         public boolean handleResponse(MessageContext messageContext) throws WebServiceClientException {
+            if (messages.isStreaming()) {
+                return true;
+            }
             final ExchangeContext<CTX> ctx = callContexts.get();
             ctx.response.body = toResource(messageContext.getResponse());
             for (var interceptor : interceptors) {
@@ -203,6 +299,9 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
 
         @Override
         public boolean handleFault(MessageContext messageContext) throws WebServiceClientException {
+            if (messages.isStreaming()) {
+                return true;
+            }
             final ExchangeContext<CTX> ctx = callContexts.get();
             ctx.response.body = toResource(messageContext.getResponse());
             for (var interceptor : interceptors) {
@@ -225,11 +324,11 @@ public class UpstreamSoapPort<CTX> implements UpstreamPort<CTX> {
             }
         }
 
-        private static Resource toResource(WebServiceMessage message) {
+        private Resource toResource(WebServiceMessage message) {
             try {
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                message.writeTo(buffer);
-                return new ByteArrayResource(buffer.toByteArray());
+                final var capture = messages.capture();
+                message.writeTo(capture);
+                return capture.toResource();
             } catch (IOException ex) {
                 throw new UncheckedIOException(ex);
             }
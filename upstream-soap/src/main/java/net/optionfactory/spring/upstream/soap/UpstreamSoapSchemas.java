@@ -0,0 +1,66 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.validation.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.xml.validation.SchemaLoaderUtils;
+import org.springframework.xml.validation.XmlValidatorFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Compiled XML schemas, shared by the ports configured with the same XSD
+ * resources. {@code Schema} instances are thread safe. Schemas are compiled
+ * outside of the cache, so a slow compilation does not hold up the ports
+ * looking up other schemas; at most {@value #MAX_CACHED_SCHEMAS} are kept.
+ */
+public class UpstreamSoapSchemas {
+
+    public static final int MAX_CACHED_SCHEMAS = 64;
+    private static final UpstreamSoapSchemas SHARED = new UpstreamSoapSchemas();
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamSoapSchemas.class);
+    private final Map<List<Resource>, Schema> schemas = new ConcurrentHashMap<>();
+
+    public static UpstreamSoapSchemas shared() {
+        return SHARED;
+    }
+
+    public Schema schema(Resource[] resources) {
+        final List<Resource> key = List.of(resources);
+        final Schema got = schemas.get(key);
+        if (got != null) {
+            return got;
+        }
+        if (schemas.size() >= MAX_CACHED_SCHEMAS) {
+            schemas.clear();
+        }
+        //compiled outside the map: a racing caller may compile a duplicate, only one is kept
+        final Schema compiled = compile(resources);
+        final Schema previous = schemas.putIfAbsent(key, compiled);
+        return previous != null ? previous : compiled;
+    }
+
+    private Schema compile(Resource[] resources) {
+        final long start = System.nanoTime();
+        try {
+            final Schema schema = SchemaLoaderUtils.loadSchema(resources, XmlValidatorFactory.SCHEMA_W3C_XML);
+            logger.info("[upstream-soap] compiled {} schema resources in {}ms", resources.length, (System.nanoTime() - start) / 1_000_000);
+            return schema;
+        } catch (IOException | SAXException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public void clear() {
+        schemas.clear();
+    }
+
+    public int size() {
+        return schemas.size();
+    }
+}
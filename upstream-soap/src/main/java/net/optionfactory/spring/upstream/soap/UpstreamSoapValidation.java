@@ -0,0 +1,91 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Schema validation policy of an {@link UpstreamSoapPort}. The port-wide mode
+ * can be overridden for single endpoints. In {@code SAMPLED} mode a fraction
+ * of the exchanges (both request and response) is validated. Ports using MTOM
+ * messages cannot validate (xop:Include elements do not match the schemas):
+ * they must be configured with {@link #never()}, their default.
+ */
+public class UpstreamSoapValidation {
+
+    public enum Mode {
+        ALWAYS, NEVER, REQUESTS, SAMPLED;
+    }
+
+    public enum Decision {
+        NONE(false, false), REQUEST(true, false), BOTH(true, true);
+
+        public final boolean request;
+        public final boolean response;
+
+        private Decision(boolean request, boolean response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    private final Mode mode;
+    private final double rate;
+    private final Map<String, UpstreamSoapValidation> endpoints;
+
+    public UpstreamSoapValidation(Mode mode, double rate) {
+        this(mode, rate, Map.of());
+    }
+
+    public UpstreamSoapValidation(Mode mode, double rate, Map<String, UpstreamSoapValidation> endpoints) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException(String.format("sampling rate must be in [0, 1], got %s", rate));
+        }
+        this.mode = mode;
+        this.rate = rate;
+        this.endpoints = Map.copyOf(endpoints);
+    }
+
+    public static UpstreamSoapValidation always() {
+        return new UpstreamSoapValidation(Mode.ALWAYS, 1);
+    }
+
+    public static UpstreamSoapValidation never() {
+        return new UpstreamSoapValidation(Mode.NEVER, 0);
+    }
+
+    public static UpstreamSoapValidation requests() {
+        return new UpstreamSoapValidation(Mode.REQUESTS, 1);
+    }
+
+    public static UpstreamSoapValidation sampled(double rate) {
+        return new UpstreamSoapValidation(Mode.SAMPLED, rate);
+    }
+
+    public UpstreamSoapValidation withEndpoint(String endpointId, UpstreamSoapValidation validation) {
+        final var overrides = new HashMap<>(endpoints);
+        overrides.put(endpointId, new UpstreamSoapValidation(validation.mode, validation.rate));
+        return new UpstreamSoapValidation(mode, rate, overrides);
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.NEVER || endpoints.values().stream().anyMatch(v -> v.mode != Mode.NEVER);
+    }
+
+    public Decision decide(String endpointId) {
+        final var override = endpointId == null ? null : endpoints.get(endpointId);
+        if (override != null) {
+            return override.decide(null);
+        }
+        switch (mode) {
+            case ALWAYS:
+                return Decision.BOTH;
+            case REQUESTS:
+                return Decision.REQUEST;
+            case SAMPLED:
+                return ThreadLocalRandom.current().nextDouble() < rate ? Decision.BOTH : Decision.NONE;
+            default:
+                return Decision.NONE;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import javax.xml.validation.TypeInfoProvider;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ExchangeContext;
+import net.optionfactory.spring.upstream.soap.UpstreamSoapValidation.Decision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.WebServiceClientException;
+import org.springframework.ws.client.support.interceptor.ClientInterceptor;
+import org.springframework.ws.client.support.interceptor.WebServiceValidationException;
+import org.springframework.ws.context.MessageContext;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Validates payloads against a shared compiled {@code Schema} according to an
+ * {@link UpstreamSoapValidation} policy, accounting for the number of
+ * validations, failures and the time spent validating. Streamed responses
+ * cannot be read twice: they are validated while unmarshalling (see
+ * {@link #responseSchema()}) and fail the mapping when invalid; the time spent
+ * in the validator handler fed by the unmarshaller is accounted. Otherwise, as
+ * with {@code PayloadValidatingInterceptor}, invalid requests are rejected
+ * while invalid responses are logged.
+ */
+public class UpstreamSoapValidator<CTX> implements ClientInterceptor {
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamSoapValidator.class);
+    private final Schema schema;
+    private final Schema timedSchema;
+    private final UpstreamSoapValidation validation;
+    private final ThreadLocal<ExchangeContext<CTX>> callContexts;
+    private final boolean streaming;
+    private final ThreadLocal<Decision> decisions = new ThreadLocal<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    public UpstreamSoapValidator(Schema schema, UpstreamSoapValidation validation, ThreadLocal<ExchangeContext<CTX>> callContexts, boolean streaming) {
+        this.schema = schema;
+        this.timedSchema = new TimedSchema(schema, nanos, failures);
+        this.validation = validation;
+        this.callContexts = callContexts;
+        this.streaming = streaming;
+    }
+
+    @Override
+    public boolean handleRequest(MessageContext messageContext) throws WebServiceClientException {
+        final ExchangeContext<CTX> ctx = callContexts.get();
+        final Decision decision = validation.decide(ctx != null ? ctx.prepare.endpointId : null);
+        decisions.set(decision);
+        if (decision.request) {
+            requests.increment();
+            final SAXParseException[] errors = validate(messageContext.getRequest());
+            if (errors.length != 0) {
+                decisions.remove();
+                throw new WebServiceValidationException(errors);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean handleResponse(MessageContext messageContext) throws WebServiceClientException {
+        final Decision decision = decisions.get();
+        if (streaming || decision == null || !decision.response) {
+            return true;
+        }
+        responses.increment();
+        for (SAXParseException error : validate(messageContext.getResponse())) {
+            logger.warn("[upstream-soap] invalid response: {}", error.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean handleFault(MessageContext messageContext) throws WebServiceClientException {
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(MessageContext messageContext, Exception ex) throws WebServiceClientException {
+        //streamed responses are unmarshalled after completion
+        if (!streaming || ex != null) {
+            decisions.remove();
+        }
+    }
+
+    /**
+     * The schema a streamed response of the current exchange should be
+     * validated against while unmarshalling, or null.
+     */
+    public Schema responseSchema() {
+        final Decision decision = decisions.get();
+        decisions.remove();
+        if (!streaming || decision == null || !decision.response) {
+            return null;
+        }
+        responses.increment();
+        return timedSchema;
+    }
+
+    private SAXParseException[] validate(WebServiceMessage message) {
+        final Source source = message.getPayloadSource();
+        if (source == null) {
+            return new SAXParseException[0];
+        }
+        final List<SAXParseException> errors = new ArrayList<>();
+        final long start = System.nanoTime();
+        try {
+            final var validator = schema.newValidator();
+            validator.setErrorHandler(new ErrorHandler() {
+                @Override
+                public void warning(SAXParseException ex) {
+                }
+
+                @Override
+                public void error(SAXParseException ex) {
+                    errors.add(ex);
+                }
+
+                @Override
+                public void fatalError(SAXParseException ex) {
+                    errors.add(ex);
+                }
+            });
+            validator.validate(source);
+        } catch (SAXException | IOException ex) {
+            decisions.remove();
+            failures.increment();
+            throw new IllegalStateException(ex);
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+        if (!errors.isEmpty()) {
+            failures.increment();
+        }
+        return errors.toArray(new SAXParseException[0]);
+    }
+
+    public long validatedRequests() {
+        return requests.sum();
+    }
+
+    public long validatedResponses() {
+        return responses.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long validationNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * A schema whose validator handlers account the time spent validating
+     * and count the documents failing validation.
+     */
+    private static class TimedSchema extends Schema {
+
+        private final Schema inner;
+        private final LongAdder nanos;
+        private final LongAdder failures;
+
+        public TimedSchema(Schema inner, LongAdder nanos, LongAdder failures) {
+            this.inner = inner;
+            this.nanos = nanos;
+            this.failures = failures;
+        }
+
+        @Override
+        public Validator newValidator() {
+            return inner.newValidator();
+        }
+
+        @Override
+        public ValidatorHandler newValidatorHandler() {
+            return new TimedValidatorHandler(inner.newValidatorHandler(), nanos, failures);
+        }
+    }
+
+    private static class TimedValidatorHandler extends ValidatorHandler {
+
+        private final ValidatorHandler inner;
+        private final LongAdder nanos;
+        private final LongAdder failures;
+        private ErrorHandler errorHandler;
+        private boolean failed;
+
+        public TimedValidatorHandler(ValidatorHandler inner, LongAdder nanos, LongAdder failures) {
+            this.inner = inner;
+            this.nanos = nanos;
+            this.failures = failures;
+            inner.setErrorHandler(new ErrorHandler() {
+                @Override
+                public void warning(SAXParseException ex) throws SAXException {
+                    if (errorHandler != null) {
+                        errorHandler.warning(ex);
+                    }
+                }
+
+                @Override
+                public void error(SAXParseException ex) throws SAXException {
+                    failed();
+                    if (errorHandler == null) {
+                        throw ex;
+                    }
+                    errorHandler.error(ex);
+                }
+
+                @Override
+                public void fatalError(SAXParseException ex) throws SAXException {
+                    failed();
+                    if (errorHandler == null) {
+                        throw ex;
+                    }
+                    errorHandler.fatalError(ex);
+                }
+            });
+        }
+
+        private void failed() {
+            if (!failed) {
+                failed = true;
+                failures.increment();
+            }
+        }
+
+        @Override
+        public void setContentHandler(ContentHandler receiver) {
+            inner.setContentHandler(receiver);
+        }
+
+        @Override
+        public ContentHandler getContentHandler() {
+            return inner.getContentHandler();
+        }
+
+        @Override
+        public void setErrorHandler(ErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+        }
+
+        @Override
+        public ErrorHandler getErrorHandler() {
+            return errorHandler;
+        }
+
+        @Override
+        public void setResourceResolver(LSResourceResolver resourceResolver) {
+            inner.setResourceResolver(resourceResolver);
+        }
+
+        @Override
+        public LSResourceResolver getResourceResolver() {
+            return inner.getResourceResolver();
+        }
+
+        @Override
+        public TypeInfoProvider getTypeInfoProvider() {
+            return inner.getTypeInfoProvider();
+        }
+
+        @Override
+        public boolean getFeature(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+            return inner.getFeature(name);
+        }
+
+        @Override
+        public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+            inner.setFeature(name, value);
+        }
+
+        @Override
+        public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+            return inner.getProperty(name);
+        }
+
+        @Override
+        public void setProperty(String name, Object object) throws SAXNotRecognizedException, SAXNotSupportedException {
+            inner.setProperty(name, object);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            inner.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.startDocument();
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.endDocument();
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.startPrefixMapping(prefix, uri);
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.endPrefixMapping(prefix);
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.startElement(uri, localName, qName, atts);
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.endElement(uri, localName, qName);
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int offset, int length) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.characters(ch, offset, length);
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int offset, int length) throws SAXException {
+            final long start = System.nanoTime();
+            try {
+                inner.ignorableWhitespace(ch, offset, length);
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            inner.processingInstruction(target, data);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            inner.skippedEntity(name);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import net.optionfactory.spring.upstream.soap.jaxb.Greeting;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.oxm.UnmarshallingFailureException;
+
+public class UpstreamSoapMarshallerTest {
+
+    @Test
+    public void marshallersForTheSamePackagesShareTheContext() throws Exception {
+        final var contexts = new UpstreamSoapContexts();
+        final var a = marshaller(contexts);
+        final var b = marshaller(contexts);
+        Assert.assertSame(a.getJaxbContext(), b.getJaxbContext());
+        Assert.assertEquals(1, contexts.creationTimes().size());
+    }
+
+    @Test
+    public void marshallersAndUnmarshallersAreReused() throws Exception {
+        final var marshaller = marshaller(new UpstreamSoapContexts());
+        for (int i = 0; i != 3; ++i) {
+            final var greeting = new Greeting();
+            greeting.text = "hello " + i;
+            final var out = new StringWriter();
+            marshaller.marshal(greeting, new StreamResult(out));
+            final var got = (Greeting) marshaller.unmarshal(new StreamSource(new StringReader(out.toString())));
+            Assert.assertEquals("hello " + i, got.text);
+        }
+        Assert.assertEquals(1, marshaller.idleMarshallers());
+        Assert.assertEquals(1, marshaller.idleUnmarshallers());
+    }
+
+    @Test
+    public void unmarshallersUsedByFailedCallsAreReturnedToThePool() throws Exception {
+        final var marshaller = marshaller(new UpstreamSoapContexts());
+        try {
+            marshaller.unmarshal(new StreamSource(new StringReader("<broken")));
+            Assert.fail("expected an unmarshalling failure");
+        } catch (UnmarshallingFailureException ex) {
+            Assert.assertEquals(1, marshaller.idleUnmarshallers());
+        }
+    }
+
+    @Test
+    public void idleInstancesBeyondThePoolSizeAreDropped() throws Exception {
+        final var marshaller = marshaller(new UpstreamSoapContexts(), 1);
+        final var greeting = new Greeting();
+        greeting.text = "hello";
+        final var writing = new CountDownLatch(1);
+        final var resume = new CountDownLatch(1);
+        final var blocking = new StringWriter() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                writing.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(cbuf, off, len);
+            }
+        };
+        final var concurrent = new Thread(() -> marshaller.marshal(greeting, new StreamResult(blocking)));
+        concurrent.start();
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        marshaller.marshal(greeting, new StreamResult(new StringWriter()));
+        resume.countDown();
+        concurrent.join();
+        Assert.assertEquals(1, marshaller.idleMarshallers());
+    }
+
+    @Test
+    public void instancesNeverUsedAreNotPooled() throws Exception {
+        final var marshaller = marshaller(new UpstreamSoapContexts());
+        marshaller.createMarshaller();
+        marshaller.createUnmarshaller();
+        Assert.assertEquals(0, marshaller.idleMarshallers());
+        Assert.assertEquals(0, marshaller.idleUnmarshallers());
+    }
+
+    @Test
+    public void clearedContextsAreBuiltAgain() throws Exception {
+        final var contexts = new UpstreamSoapContexts();
+        final var before = contexts.context(Greeting.class.getPackageName());
+        contexts.clear();
+        Assert.assertTrue(contexts.creationTimes().isEmpty());
+        Assert.assertNotSame(before, contexts.context(Greeting.class.getPackageName()));
+        Assert.assertEquals(1, contexts.creationTimes().size());
+    }
+
+    private static UpstreamSoapMarshaller marshaller(UpstreamSoapContexts contexts) throws Exception {
+        return marshaller(contexts, 4);
+    }
+
+    private static UpstreamSoapMarshaller marshaller(UpstreamSoapContexts contexts, int poolSize) throws Exception {
+        final var marshaller = new UpstreamSoapMarshaller(contexts, poolSize);
+        marshaller.setPackagesToScan(Greeting.class.getPackageName());
+        marshaller.afterPropertiesSet();
+        return marshaller;
+    }
+}
@@ -0,0 +1,64 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+public class UpstreamSoapMessagesTest {
+
+    @Test
+    public void captureIsTruncatedToMaxBytes() throws IOException {
+        final var capture = UpstreamSoapMessages.dom(4).capture();
+        capture.write("<a>text</a>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("<a>t...(truncated, 11 bytes)", asString(capture));
+    }
+
+    @Test
+    public void mtomCaptureKeepsRootPartAndSummarizesAttachments() throws IOException {
+        final var capture = UpstreamSoapMessages.mtom(UpstreamSoapMessages.UNBOUNDED).capture();
+        final String message = ""
+                + "--b1\r\n"
+                + "Content-Type: application/xop+xml; type=\"text/xml\"\r\n"
+                + "Content-ID: <root>\r\n"
+                + "\r\n"
+                + "<e><xop:Include href=\"cid:att\"/></e>"
+                + "\r\n--b1\r\n"
+                + "Content-Type: application/pdf\r\n"
+                + "Content-ID: <att>\r\n"
+                + "\r\n"
+                + "0123456789\r\n--b\r\n-b1"
+                + "\r\n--b1--\r\n";
+        final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += 7) {
+            capture.write(bytes, i, Math.min(7, bytes.length - i));
+        }
+        Assert.assertEquals(String.format("<e><xop:Include href=\"cid:att\"/></e>%n<!-- attachment cid:att application/pdf 20 bytes -->"), asString(capture));
+    }
+
+    @Test
+    public void mtomCaptureFindsTheEndOfHeadersLongerThanTheKeptOnes() throws IOException {
+        final var capture = UpstreamSoapMessages.mtom(UpstreamSoapMessages.UNBOUNDED).capture();
+        final String message = ""
+                + "--b1\r\n"
+                + "Content-ID: <root>\r\n"
+                + "X-Padding: " + "x".repeat(8192) + "\r\n"
+                + "\r\n"
+                + "<e/>"
+                + "\r\n--b1--\r\n";
+        capture.write(message.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("<e/>", asString(capture));
+    }
+
+    @Test
+    public void mtomCaptureKeepsNonMultipartMessages() throws IOException {
+        final var capture = UpstreamSoapMessages.mtom(UpstreamSoapMessages.UNBOUNDED).capture();
+        capture.write("<e/>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("<e/>", asString(capture));
+    }
+
+    private static String asString(UpstreamSoapMessages.Capture capture) throws IOException {
+        return StreamUtils.copyToString(capture.toResource().getInputStream(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,295 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.balancing.UpstreamBalancedPort;
+import net.optionfactory.spring.upstream.balancing.UpstreamBalancingStrategy;
+import net.optionfactory.spring.upstream.balancing.UpstreamEjection;
+import net.optionfactory.spring.upstream.soap.jaxb.Document;
+import net.optionfactory.spring.upstream.soap.jaxb.Greeting;
+import net.optionfactory.spring.upstream.standin.StandinResponse;
+import net.optionfactory.spring.upstream.standin.StandinScript;
+import net.optionfactory.spring.upstream.standin.UpstreamStandin;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.ws.client.WebServiceTransportException;
+import org.springframework.ws.soap.SoapVersion;
+import org.springframework.ws.soap.client.SoapFaultClientException;
+
+public class UpstreamSoapPortTest {
+
+    private static final String GREETING = "<t:greeting xmlns:t=\"urn:test\"><t:text>hello</t:text></t:greeting>";
+
+    private static final byte[] UPLOAD = bytes(2048, 1);
+    private static final byte[] REPLY = bytes(4096, 2);
+
+    private final UpstreamStandin standin = UpstreamStandin.start();
+    private final Recorder recorder = new Recorder();
+
+    @After
+    public void close() {
+        standin.close();
+    }
+
+    @Test
+    public void streamedResponsesAreReportedAsRemotingSuccesses() {
+        standin.script("/soap", StandinScript.always(StandinResponse.soap11(GREETING)));
+        final var port = port(UpstreamSoapMessages.streaming(UpstreamSoapMessages.UNBOUNDED));
+        final ResponseEntity<Greeting> got = port.exchange(null, "greet", request(), Greeting.class);
+        Assert.assertEquals("hello", got.getBody().text);
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+        Assert.assertTrue(recorder.lastResponseBody, recorder.lastResponseBody.contains(GREETING));
+    }
+
+    @Test
+    public void streamedResponsesFailingToUnmarshalAreOnlyReportedAsRemotingErrors() {
+        standin.script("/soap", StandinScript.always(StandinResponse.soap11("<t:unknown xmlns:t=\"urn:test\"/>")));
+        final var port = port(UpstreamSoapMessages.streaming(UpstreamSoapMessages.UNBOUNDED));
+        try {
+            port.exchange(null, "greet", request(), Greeting.class);
+            Assert.fail("expected an unmarshalling failure");
+        } catch (RuntimeException ex) {
+            Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+        }
+    }
+
+    @Test
+    public void truncatedStreamedResponsesAreOnlyReportedAsRemotingErrors() {
+        standin.script("/soap", StandinScript.always(StandinResponse.of(200, "text/xml; charset=utf-8", "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body><t:greeting xmlns:t=\"urn:test\"><t:text>hel")));
+        final var port = port(UpstreamSoapMessages.streaming(UpstreamSoapMessages.UNBOUNDED));
+        try {
+            port.exchange(null, "greet", request(), Greeting.class);
+            Assert.fail("expected a parsing failure");
+        } catch (RuntimeException ex) {
+            Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+        }
+    }
+
+    @Test
+    public void streamedFaultsAreOnlyReportedAsRemotingErrors() {
+        standin.script("/soap", StandinScript.always(StandinResponse.soap11Fault("soapenv:Server", "boom")));
+        final var port = port(UpstreamSoapMessages.streaming(UpstreamSoapMessages.UNBOUNDED));
+        try {
+            port.exchange(null, "greet", request(), Greeting.class);
+            Assert.fail("expected a fault");
+        } catch (SoapFaultClientException ex) {
+            Assert.assertEquals("boom", ex.getFaultStringOrReason());
+            Assert.assertEquals(List.of("before", "remotingError", "completed"), recorder.events);
+        }
+    }
+
+    @Test
+    public void faultsDoNotEjectBalancedReplicas() {
+        standin.script("/soap", StandinScript.always(StandinResponse.soap11Fault("soapenv:Server", "boom")));
+        final var port = new UpstreamBalancedPort<Void>("standin", List.of(standin.uri("/")), UpstreamBalancingStrategy.roundRobin(), new UpstreamEjection(1, Duration.ofMinutes(1), Duration.ofMinutes(1), 1), port(UpstreamSoapMessages.dom()));
+        for (int i = 0; i != 3; ++i) {
+            try {
+                port.exchange(null, "greet", RequestEntity.post(URI.create("/soap")).body(new Greeting()), Greeting.class);
+                Assert.fail("expected a fault");
+            } catch (SoapFaultClientException ex) {
+                //expected
+            }
+        }
+        Assert.assertEquals(0, port.replicas().get(0).failures());
+        Assert.assertEquals(0, port.replicas().get(0).ejections());
+    }
+
+    @Test
+    public void httpErrorsWithoutFaultsCountAgainstBalancedReplicas() {
+        standin.script("/soap", StandinScript.always(new StandinResponse(503, Map.of("Content-Type", "text/plain"), "down".getBytes(StandardCharsets.UTF_8))));
+        final var port = new UpstreamBalancedPort<Void>("standin", List.of(standin.uri("/")), UpstreamBalancingStrategy.roundRobin(), UpstreamEjection.disabled(), port(UpstreamSoapMessages.dom()));
+        try {
+            port.exchange(null, "greet", RequestEntity.post(URI.create("/soap")).body(new Greeting()), Greeting.class);
+            Assert.fail("expected a transport failure");
+        } catch (WebServiceTransportException ex) {
+            //expected
+        }
+        Assert.assertEquals(1, port.replicas().get(0).failures());
+    }
+
+    @Test
+    public void domResponsesAreReportedAsRemotingSuccesses() {
+        standin.script("/soap", StandinScript.always(StandinResponse.soap11(GREETING)));
+        final var port = port(UpstreamSoapMessages.dom());
+        final ResponseEntity<Greeting> got = port.exchange(null, "greet", request(), Greeting.class);
+        Assert.assertEquals("hello", got.getBody().text);
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void mtomDocumentsRoundTripAsAttachments() throws IOException {
+        standin.script("/soap", StandinScript.always(xopResponse()));
+        final var port = port(UpstreamSoapMessages.mtom(UpstreamSoapMessages.UNBOUNDED), Document.class);
+        final ResponseEntity<Document> got = port.exchange(null, "upload", RequestEntity.post(standin.uri("/soap")).body(document()), Document.class);
+        Assert.assertEquals("reply.bin", got.getBody().name);
+        Assert.assertArrayEquals(REPLY, StreamUtils.copyToByteArray(got.getBody().content.getInputStream()));
+        Assert.assertTrue(recorder.lastRequestBody, recorder.lastRequestBody.contains("xop:Include"));
+        Assert.assertTrue(recorder.lastRequestBody, recorder.lastRequestBody.contains(String.format("application/octet-stream %s bytes -->", UPLOAD.length)));
+        Assert.assertTrue(recorder.lastResponseBody, recorder.lastResponseBody.endsWith(String.format("<!-- attachment cid:reply application/octet-stream %s bytes -->", REPLY.length)));
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    @Test
+    public void streamedMtomDocumentsRoundTripAsAttachments() throws IOException {
+        standin.script("/soap", StandinScript.always(xopResponse()));
+        final var port = port(UpstreamSoapMessages.streamingMtom(UpstreamSoapMessages.UNBOUNDED, null, 0), Document.class);
+        final ResponseEntity<Document> got = port.exchange(null, "upload", RequestEntity.post(standin.uri("/soap")).body(document()), Document.class);
+        Assert.assertEquals("reply.bin", got.getBody().name);
+        Assert.assertArrayEquals(REPLY, StreamUtils.copyToByteArray(got.getBody().content.getInputStream()));
+        Assert.assertTrue(recorder.lastResponseBody, recorder.lastResponseBody.endsWith(String.format("<!-- attachment cid:reply application/octet-stream %s bytes -->", REPLY.length)));
+        Assert.assertEquals(List.of("before", "remotingSuccess", "mappingSuccess", "completed"), recorder.events);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mtomPortsCannotBeConfiguredToValidate() {
+        new UpstreamSoapPort<Void>(SoapVersion.SOAP_11, "standin", () -> "1", new Resource[0], Document.class, HttpClientBuilder.create(), UpstreamSoapMessages.mtom(UpstreamSoapMessages.UNBOUNDED), UpstreamSoapValidation.always(), new UpstreamSoapContexts(), List.of(), List.of(recorder));
+    }
+
+    @Test
+    public void mtomPortsDoNotValidateByDefault() {
+        final var port = new UpstreamSoapPort<Void>(SoapVersion.SOAP_11, "standin", () -> "1", new Resource[0], Document.class, HttpClientBuilder.create(), UpstreamSoapMessages.mtom(UpstreamSoapMessages.UNBOUNDED), List.of(), List.of(recorder));
+        Assert.assertNull(port.validator());
+    }
+
+    private UpstreamSoapPort<Void> port(UpstreamSoapMessages messages) {
+        return port(messages, Greeting.class);
+    }
+
+    private UpstreamSoapPort<Void> port(UpstreamSoapMessages messages, Class<?> packageToScan) {
+        return new UpstreamSoapPort<>(SoapVersion.SOAP_11, "standin", () -> "1", new Resource[0], packageToScan, HttpClientBuilder.create(), messages, UpstreamSoapValidation.never(), new UpstreamSoapContexts(), List.of(), List.of(recorder));
+    }
+
+    private static Document document() {
+        final var document = new Document();
+        document.name = "upload.bin";
+        document.content = new DataHandler(new BytesDataSource(UPLOAD));
+        return document;
+    }
+
+    private static StandinResponse xopResponse() {
+        final var envelope = ""
+                + "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>"
+                + "<t:document xmlns:t=\"urn:test\"><t:name>reply.bin</t:name>"
+                + "<t:content><xop:Include xmlns:xop=\"http://www.w3.org/2004/08/xop/include\" href=\"cid:reply\"/></t:content>"
+                + "</t:document></soapenv:Body></soapenv:Envelope>";
+        final var body = new ByteArrayOutputStream();
+        body.writeBytes(("--MIMEBoundary\r\n"
+                + "Content-Type: application/xop+xml; charset=UTF-8; type=\"text/xml\"\r\n"
+                + "Content-Transfer-Encoding: binary\r\n"
+                + "Content-ID: <root>\r\n"
+                + "\r\n"
+                + envelope
+                + "\r\n--MIMEBoundary\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Transfer-Encoding: binary\r\n"
+                + "Content-ID: <reply>\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(REPLY);
+        body.writeBytes("\r\n--MIMEBoundary--\r\n".getBytes(StandardCharsets.US_ASCII));
+        final var contentType = "multipart/related; type=\"application/xop+xml\"; boundary=MIMEBoundary; start=\"<root>\"; start-info=\"text/xml\"";
+        return new StandinResponse(200, Map.of("Content-Type", contentType), body.toByteArray());
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        final byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private RequestEntity<Greeting> request() {
+        final var greeting = new Greeting();
+        greeting.text = "hi";
+        return RequestEntity.post(standin.uri("/soap")).body(greeting);
+    }
+
+    private static class BytesDataSource implements DataSource {
+
+        private final byte[] bytes;
+
+        public BytesDataSource(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public String getName() {
+            return "bytes";
+        }
+    }
+
+    public static class Recorder implements UpstreamInterceptor<Void> {
+
+        public final List<String> events = new CopyOnWriteArrayList<>();
+        public volatile String lastRequestBody;
+        public volatile String lastResponseBody;
+
+        @Override
+        public void before(PrepareContext<Void> prepare, RequestContext request) {
+            events.add("before");
+            lastRequestBody = asString(request.body);
+        }
+
+        @Override
+        public void remotingSuccess(PrepareContext<Void> prepare, RequestContext request, ResponseContext response) {
+            events.add("remotingSuccess");
+            lastResponseBody = asString(response.body);
+        }
+
+        @Override
+        public void remotingError(PrepareContext<Void> prepare, RequestContext request, ErrorContext error) {
+            events.add("remotingError");
+        }
+
+        @Override
+        public void mappingSuccess(PrepareContext<Void> prepare, RequestContext request, ResponseContext response, ResponseEntity<?> mapped) {
+            events.add("mappingSuccess");
+        }
+
+        @Override
+        public void completed(PrepareContext<Void> prepare) {
+            events.add("completed");
+        }
+
+        private static String asString(Resource body) {
+            try {
+                return StreamUtils.copyToString(body.getInputStream(), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
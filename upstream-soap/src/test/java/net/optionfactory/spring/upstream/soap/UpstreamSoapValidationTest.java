@@ -0,0 +1,30 @@
+package net.optionfactory.spring.upstream.soap;
+
+import net.optionfactory.spring.upstream.soap.UpstreamSoapValidation.Decision;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpstreamSoapValidationTest {
+
+    @Test
+    public void modesMapToDecisions() {
+        Assert.assertEquals(Decision.BOTH, UpstreamSoapValidation.always().decide("e"));
+        Assert.assertEquals(Decision.REQUEST, UpstreamSoapValidation.requests().decide("e"));
+        Assert.assertEquals(Decision.NONE, UpstreamSoapValidation.never().decide("e"));
+        Assert.assertEquals(Decision.NONE, UpstreamSoapValidation.sampled(0).decide("e"));
+        Assert.assertEquals(Decision.BOTH, UpstreamSoapValidation.sampled(1).decide("e"));
+    }
+
+    @Test
+    public void endpointsCanOverrideThePortMode() {
+        final var validation = UpstreamSoapValidation.never().withEndpoint("checked", UpstreamSoapValidation.always());
+        Assert.assertTrue(validation.isEnabled());
+        Assert.assertEquals(Decision.BOTH, validation.decide("checked"));
+        Assert.assertEquals(Decision.NONE, validation.decide("other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void samplingRateMustBeAProbability() {
+        UpstreamSoapValidation.sampled(1.5);
+    }
+}
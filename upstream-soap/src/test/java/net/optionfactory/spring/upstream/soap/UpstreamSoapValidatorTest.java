@@ -0,0 +1,75 @@
+package net.optionfactory.spring.upstream.soap;
+
+import java.io.StringReader;
+import javax.xml.transform.stream.StreamSource;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ExchangeContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
+import net.optionfactory.spring.upstream.soap.jaxb.Greeting;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.oxm.UnmarshallingFailureException;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+
+public class UpstreamSoapValidatorTest {
+
+    private static final Resource[] SCHEMAS = {new ClassPathResource("greeting.xsd")};
+
+    @Test
+    public void streamedResponseValidationTimeIsAccounted() throws Exception {
+        final var validator = streamingValidator();
+        final var marshaller = marshaller(validator);
+        validator.handleRequest(emptyRequest());
+        Assert.assertEquals(0, validator.validationNanos());
+        final var got = (Greeting) marshaller.unmarshal(new StreamSource(new StringReader("<t:greeting xmlns:t=\"urn:test\"><t:text>hello</t:text></t:greeting>")));
+        Assert.assertEquals("hello", got.text);
+        Assert.assertEquals(1, validator.validatedResponses());
+        Assert.assertEquals(0, validator.failures());
+        Assert.assertTrue(validator.validationNanos() > 0);
+    }
+
+    @Test
+    public void invalidStreamedResponsesAreCountedAsFailures() throws Exception {
+        final var validator = streamingValidator();
+        final var marshaller = marshaller(validator);
+        validator.handleRequest(emptyRequest());
+        try {
+            marshaller.unmarshal(new StreamSource(new StringReader("<t:greeting xmlns:t=\"urn:test\"><t:other>hello</t:other></t:greeting>")));
+            Assert.fail("expected a validation failure");
+        } catch (UnmarshallingFailureException ex) {
+            Assert.assertEquals(1, validator.validatedResponses());
+            Assert.assertEquals(1, validator.failures());
+        }
+    }
+
+    @Test
+    public void schemasAreSharedAcrossLookups() {
+        final var schemas = new UpstreamSoapSchemas();
+        Assert.assertSame(schemas.schema(SCHEMAS), schemas.schema(new Resource[]{new ClassPathResource("greeting.xsd")}));
+        Assert.assertEquals(1, schemas.size());
+    }
+
+    private static UpstreamSoapValidator<Void> streamingValidator() {
+        final var callContexts = new ThreadLocal<ExchangeContext<Void>>();
+        final var ctx = new ExchangeContext<Void>();
+        ctx.prepare = new PrepareContext<>();
+        ctx.prepare.endpointId = "greet";
+        callContexts.set(ctx);
+        return new UpstreamSoapValidator<>(new UpstreamSoapSchemas().schema(SCHEMAS), UpstreamSoapValidation.always(), callContexts, true);
+    }
+
+    private static UpstreamSoapMarshaller marshaller(UpstreamSoapValidator<Void> validator) throws Exception {
+        final var marshaller = new UpstreamSoapMarshaller(new UpstreamSoapContexts(), 4, validator::responseSchema);
+        marshaller.setPackagesToScan(Greeting.class.getPackageName());
+        marshaller.afterPropertiesSet();
+        return marshaller;
+    }
+
+    private static DefaultMessageContext emptyRequest() {
+        final var factory = new SaajSoapMessageFactory();
+        factory.afterPropertiesSet();
+        return new DefaultMessageContext(factory.createWebServiceMessage(), factory);
+    }
+}
@@ -0,0 +1,20 @@
+package net.optionfactory.spring.upstream.soap.jaxb;
+
+import javax.activation.DataHandler;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlMimeType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement(name = "document", namespace = "urn:test")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Document {
+
+    @XmlElement(namespace = "urn:test")
+    public String name;
+
+    @XmlElement(namespace = "urn:test")
+    @XmlMimeType("application/octet-stream")
+    public DataHandler content;
+}
@@ -0,0 +1,14 @@
+package net.optionfactory.spring.upstream.soap.jaxb;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement(name = "greeting", namespace = "urn:test")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Greeting {
+
+    @XmlElement(namespace = "urn:test")
+    public String text;
+}
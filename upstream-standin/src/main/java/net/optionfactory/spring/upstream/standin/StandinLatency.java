@@ -0,0 +1,48 @@
+package net.optionfactory.spring.upstream.standin;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * The distribution of the time a stand-in endpoint waits before responding.
+ */
+public interface StandinLatency {
+
+    long nanos(SplittableRandom random);
+
+    public static StandinLatency none() {
+        return random -> 0;
+    }
+
+    public static StandinLatency fixed(Duration latency) {
+        final long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+
+    public static StandinLatency uniform(Duration min, Duration max) {
+        final long from = min.toNanos();
+        final long to = max.toNanos();
+        return random -> from == to ? from : random.nextLong(from, to);
+    }
+
+    public static StandinLatency exponential(Duration mean) {
+        final double nanos = mean.toNanos();
+        return random -> (long) (-nanos * Math.log(1 - random.nextDouble()));
+    }
+
+    /**
+     * A log-normal distribution, the usual shape of service latencies: most
+     * responses close to the median and a long tail reaching {@code p99}.
+     */
+    public static StandinLatency logNormal(Duration median, Duration p99) {
+        final double mu = Math.log(median.toNanos());
+        final double sigma = (Math.log(p99.toNanos()) - mu) / 2.3263478740408408;
+        return random -> (long) Math.exp(mu + sigma * gaussian(random));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        final double u = 1 - random.nextDouble();
+        final double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
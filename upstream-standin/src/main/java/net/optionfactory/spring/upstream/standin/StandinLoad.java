@@ -0,0 +1,181 @@
+package net.optionfactory.spring.upstream.standin;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A closed-loop load harness: {@code concurrency} threads issue calls back to
+ * back for a warm-up period and then for the measured period, recording the
+ * latency of every call. Probes (e.g. leased or pending connections of a
+ * pool) are sampled while measuring.
+ */
+public class StandinLoad {
+
+    private final int concurrency;
+    private final Duration warmUp;
+    private final Duration duration;
+    private final Map<String, LongSupplier> probes = new LinkedHashMap<>();
+
+    public StandinLoad(int concurrency, Duration warmUp, Duration duration) {
+        this.concurrency = concurrency;
+        this.warmUp = warmUp;
+        this.duration = duration;
+    }
+
+    public StandinLoad probe(String name, LongSupplier probe) {
+        probes.put(name, probe);
+        return this;
+    }
+
+    public Report run(Callable<?> call) throws InterruptedException {
+        final long warmUpEnd = System.nanoTime() + warmUp.toNanos();
+        final long end = warmUpEnd + duration.toNanos();
+        final List<Recorder> recorders = new ArrayList<>();
+        final var done = new CountDownLatch(concurrency);
+        for (int i = 0; i != concurrency; ++i) {
+            final var recorder = new Recorder();
+            recorders.add(recorder);
+            final Thread t = new Thread(() -> {
+                try {
+                    recorder.loop(call, warmUpEnd, end);
+                } finally {
+                    done.countDown();
+                }
+            }, "standin-load-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        final Map<String, ProbeStats> sampled = new LinkedHashMap<>();
+        probes.keySet().forEach(name -> sampled.put(name, new ProbeStats()));
+        final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "standin-load-probes");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(() -> {
+            if (System.nanoTime() < warmUpEnd) {
+                return;
+            }
+            probes.forEach((name, probe) -> sampled.get(name).sample(probe.getAsLong()));
+        }, 10, 10, TimeUnit.MILLISECONDS);
+        try {
+            done.await();
+        } finally {
+            sampler.shutdownNow();
+        }
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        return Report.of(recorders, duration, sampled);
+    }
+
+    private static class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<String, Long> errors = new TreeMap<>();
+
+        public void loop(Callable<?> call, long warmUpEnd, long end) {
+            long now = System.nanoTime();
+            while (now < end) {
+                final long start = now;
+                String error = null;
+                try {
+                    call.call();
+                } catch (Exception ex) {
+                    error = ex.getClass().getSimpleName();
+                }
+                now = System.nanoTime();
+                if (start < warmUpEnd) {
+                    continue;
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = now - start;
+                if (error != null) {
+                    errors.merge(error, 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    public static class ProbeStats {
+
+        public long samples;
+        public long max = Long.MIN_VALUE;
+        public double mean;
+
+        private synchronized void sample(long value) {
+            ++samples;
+            max = Math.max(max, value);
+            mean += (value - mean) / samples;
+        }
+
+        @Override
+        public String toString() {
+            return samples == 0 ? "no samples" : String.format("mean %.1f max %d", mean, max);
+        }
+    }
+
+    public static class Report {
+
+        public long calls;
+        public long errors;
+        public Map<String, Long> errorsByType;
+        public double throughput;
+        public Duration p50;
+        public Duration p90;
+        public Duration p99;
+        public Duration p999;
+        public Duration max;
+        public Map<String, ProbeStats> probes;
+
+        private static Report of(List<Recorder> recorders, Duration duration, Map<String, ProbeStats> probes) {
+            final var report = new Report();
+            report.errorsByType = new TreeMap<>();
+            long[] all = new long[recorders.stream().mapToInt(r -> r.count).sum()];
+            int offset = 0;
+            for (Recorder recorder : recorders) {
+                System.arraycopy(recorder.latencies, 0, all, offset, recorder.count);
+                offset += recorder.count;
+                recorder.errors.forEach((type, n) -> report.errorsByType.merge(type, n, Long::sum));
+            }
+            Arrays.sort(all);
+            report.calls = all.length;
+            report.errors = report.errorsByType.values().stream().mapToLong(Long::longValue).sum();
+            report.throughput = all.length / (duration.toNanos() / 1e9);
+            report.p50 = percentile(all, 0.50);
+            report.p90 = percentile(all, 0.90);
+            report.p99 = percentile(all, 0.99);
+            report.p999 = percentile(all, 0.999);
+            report.max = all.length == 0 ? Duration.ZERO : Duration.ofNanos(all[all.length - 1]);
+            report.probes = probes;
+            return report;
+        }
+
+        private static Duration percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos(sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls %d (%.0f/s), errors %d %s, p50 %dus p90 %dus p99 %dus p99.9 %dus max %dus, probes %s",
+                    calls, throughput, errors, errorsByType,
+                    p50.toNanos() / 1000, p90.toNanos() / 1000, p99.toNanos() / 1000, p999.toNanos() / 1000, max.toNanos() / 1000,
+                    probes);
+        }
+    }
+}
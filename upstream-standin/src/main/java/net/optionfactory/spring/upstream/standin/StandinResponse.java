@@ -0,0 +1,46 @@
+package net.optionfactory.spring.upstream.standin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StandinResponse {
+
+    public final int status;
+    public final Map<String, String> headers;
+    public final byte[] body;
+
+    public StandinResponse(int status, Map<String, String> headers, byte[] body) {
+        this.status = status;
+        this.headers = Map.copyOf(headers);
+        this.body = body;
+    }
+
+    public static StandinResponse of(int status, String contentType, String body) {
+        final var headers = new LinkedHashMap<String, String>();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        return new StandinResponse(status, headers, body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+    }
+
+    public static StandinResponse json(String body) {
+        return of(200, "application/json", body);
+    }
+
+    public static StandinResponse json(int status, String body) {
+        return of(status, "application/json", body);
+    }
+
+    public static StandinResponse soap11(String payload) {
+        return of(200, "text/xml; charset=utf-8", String.format("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>%s</soapenv:Body></soapenv:Envelope>", payload));
+    }
+
+    public static StandinResponse soap11Fault(String code, String reason) {
+        return of(500, "text/xml; charset=utf-8", String.format("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body><soapenv:Fault><faultcode>%s</faultcode><faultstring>%s</faultstring></soapenv:Fault></soapenv:Body></soapenv:Envelope>", code, reason));
+    }
+
+    public static StandinResponse empty(int status) {
+        return new StandinResponse(status, Map.of(), new byte[0]);
+    }
+}
@@ -0,0 +1,87 @@
+package net.optionfactory.spring.upstream.standin;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * How a stand-in endpoint behaves: a latency distribution and a set of
+ * weighted outcomes, one of which is picked for every request.
+ */
+public class StandinScript {
+
+    public enum Kind {
+        RESPOND, SLOW_BODY, DROP_CONNECTION, THROTTLE;
+    }
+
+    public static class Outcome {
+
+        public final Kind kind;
+        public final double weight;
+        public final StandinResponse response;
+        public final int chunkSize;
+        public final Duration chunkInterval;
+        public final Duration retryAfter;
+
+        public Outcome(Kind kind, double weight, StandinResponse response, int chunkSize, Duration chunkInterval, Duration retryAfter) {
+            this.kind = kind;
+            this.weight = weight;
+            this.response = response;
+            this.chunkSize = chunkSize;
+            this.chunkInterval = chunkInterval;
+            this.retryAfter = retryAfter;
+        }
+
+        public static Outcome respond(double weight, StandinResponse response) {
+            return new Outcome(Kind.RESPOND, weight, response, 0, Duration.ZERO, Duration.ZERO);
+        }
+
+        public static Outcome slowBody(double weight, StandinResponse response, int chunkSize, Duration chunkInterval) {
+            return new Outcome(Kind.SLOW_BODY, weight, response, chunkSize, chunkInterval, Duration.ZERO);
+        }
+
+        public static Outcome dropConnection(double weight) {
+            return new Outcome(Kind.DROP_CONNECTION, weight, null, 0, Duration.ZERO, Duration.ZERO);
+        }
+
+        public static Outcome throttle(double weight, Duration retryAfter) {
+            return new Outcome(Kind.THROTTLE, weight, StandinResponse.empty(429), 0, Duration.ZERO, retryAfter);
+        }
+    }
+
+    private final StandinLatency latency;
+    private final List<Outcome> outcomes;
+    private final double totalWeight;
+
+    public StandinScript(StandinLatency latency, List<Outcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            throw new IllegalArgumentException("at least one outcome is required");
+        }
+        this.latency = latency;
+        this.outcomes = List.copyOf(outcomes);
+        this.totalWeight = outcomes.stream().mapToDouble(o -> o.weight).sum();
+    }
+
+    public static StandinScript of(StandinLatency latency, Outcome... outcomes) {
+        return new StandinScript(latency, List.of(outcomes));
+    }
+
+    public static StandinScript always(StandinResponse response) {
+        return of(StandinLatency.none(), Outcome.respond(1, response));
+    }
+
+    public StandinLatency latency() {
+        return latency;
+    }
+
+    public Outcome pick(SplittableRandom random) {
+        double point = random.nextDouble() * totalWeight;
+        for (Outcome outcome : outcomes) {
+            point -= outcome.weight;
+            if (point < 0) {
+                return outcome;
+            }
+        }
+        return outcomes.get(outcomes.size() - 1);
+    }
+}
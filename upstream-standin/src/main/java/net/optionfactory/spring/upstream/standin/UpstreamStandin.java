@@ -0,0 +1,170 @@
+package net.optionfactory.spring.upstream.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import net.optionfactory.spring.upstream.standin.StandinScript.Outcome;
+
+/**
+ * An embeddable HTTP server standing in for an upstream in tests and load
+ * runs. Endpoints are scripted by path; latencies and slow bodies are
+ * scheduled rather than slept, so a few threads can hold thousands of
+ * in-flight requests. Listens on an ephemeral loopback port.
+ */
+public class UpstreamStandin implements Closeable {
+
+    static {
+        //headers and body are written separately: without TCP_NODELAY every
+        //response waits for the client's delayed ACK (~40ms on Linux)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    private final SplittableRandom seeds;
+    private final ThreadLocal<SplittableRandom> randoms;
+    private final Map<String, StandinScript> scripts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+
+    public UpstreamStandin(int threads, long seed) {
+        this.seeds = new SplittableRandom(seed);
+        this.randoms = ThreadLocal.withInitial(this::split);
+        this.workers = Executors.newFixedThreadPool(threads, r -> daemon(r, "standin-worker"));
+        this.scheduler = Executors.newScheduledThreadPool(threads, r -> daemon(r, "standin-scheduler"));
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        this.server.setExecutor(workers);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public static UpstreamStandin start() {
+        return new UpstreamStandin(4, 0);
+    }
+
+    public UpstreamStandin script(String path, StandinScript script) {
+        scripts.put(path, script);
+        return this;
+    }
+
+    public URI uri(String path) {
+        return URI.create(String.format("http://%s:%s%s", server.getAddress().getHostString(), server.getAddress().getPort(), path));
+    }
+
+    public long requests(String path) {
+        final var counter = requests.get(path);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        final String path = exchange.getRequestURI().getPath();
+        requests.computeIfAbsent(path, k -> new LongAdder()).increment();
+        final StandinScript script = scripts.get(path);
+        if (script == null) {
+            respond(exchange, StandinResponse.empty(404));
+            return;
+        }
+        final SplittableRandom random = randoms.get();
+        final Outcome outcome = script.pick(random);
+        final long delay = script.latency().nanos(random);
+        if (delay <= 0) {
+            perform(exchange, outcome);
+            return;
+        }
+        scheduler.schedule(() -> perform(exchange, outcome), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void perform(HttpExchange exchange, Outcome outcome) {
+        try {
+            switch (outcome.kind) {
+                case DROP_CONNECTION:
+                    //closing an exchange before sending headers closes the connection
+                    exchange.close();
+                    return;
+                case THROTTLE:
+                    exchange.getResponseHeaders().set("Retry-After", Long.toString(Math.max(1, outcome.retryAfter.toSeconds())));
+                    respond(exchange, outcome.response);
+                    return;
+                case SLOW_BODY:
+                    sendHeaders(exchange, outcome.response);
+                    writeChunk(exchange, outcome, 0);
+                    return;
+                default:
+                    respond(exchange, outcome.response);
+            }
+        } catch (IOException | RuntimeException ex) {
+            exchange.close();
+        }
+    }
+
+    private void writeChunk(HttpExchange exchange, Outcome outcome, int offset) {
+        final byte[] body = outcome.response.body;
+        try {
+            final int end = Math.min(body.length, offset + Math.max(1, outcome.chunkSize));
+            final OutputStream os = exchange.getResponseBody();
+            os.write(Arrays.copyOfRange(body, offset, end));
+            os.flush();
+            if (end == body.length) {
+                exchange.close();
+                return;
+            }
+            scheduler.schedule(() -> writeChunk(exchange, outcome, end), outcome.chunkInterval.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (IOException | RuntimeException ex) {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, StandinResponse response) throws IOException {
+        sendHeaders(exchange, response);
+        if (response.body.length != 0) {
+            exchange.getResponseBody().write(response.body);
+        }
+        exchange.close();
+    }
+
+    private static void sendHeaders(HttpExchange exchange, StandinResponse response) throws IOException {
+        response.headers.forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+        exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+    }
+
+    private synchronized SplittableRandom split() {
+        return seeds.split();
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        final Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+}
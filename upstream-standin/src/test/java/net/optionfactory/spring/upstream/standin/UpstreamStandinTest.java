@@ -0,0 +1,69 @@
+package net.optionfactory.spring.upstream.standin;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import net.optionfactory.spring.upstream.standin.StandinScript.Outcome;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpstreamStandinTest {
+
+    private final UpstreamStandin standin = UpstreamStandin.start();
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @After
+    public void close() {
+        standin.close();
+    }
+
+    @Test
+    public void scriptedEndpointsRespond() throws Exception {
+        standin.script("/greeting", StandinScript.always(StandinResponse.json("{\"text\":\"hello\"}")));
+        final var response = client.send(HttpRequest.newBuilder(standin.uri("/greeting")).build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals("{\"text\":\"hello\"}", response.body());
+        Assert.assertEquals(1, standin.requests("/greeting"));
+    }
+
+    @Test
+    public void throttledRequestsGetRetryAfter() throws Exception {
+        standin.script("/throttled", StandinScript.of(StandinLatency.none(), Outcome.throttle(1, Duration.ofSeconds(7))));
+        final var response = client.send(HttpRequest.newBuilder(standin.uri("/throttled")).build(), HttpResponse.BodyHandlers.discarding());
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertEquals("7", response.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    @Test(expected = IOException.class)
+    public void droppedConnectionsFailTheCall() throws Exception {
+        standin.script("/dropped", StandinScript.of(StandinLatency.none(), Outcome.dropConnection(1)));
+        client.send(HttpRequest.newBuilder(standin.uri("/dropped")).build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Test
+    public void latencyAndSlowBodiesDelayTheResponse() throws Exception {
+        standin.script("/slow", StandinScript.of(StandinLatency.fixed(Duration.ofMillis(50)), Outcome.slowBody(1, StandinResponse.json("[1,2,3,4]"), 3, Duration.ofMillis(50))));
+        final long start = System.nanoTime();
+        final var response = client.send(HttpRequest.newBuilder(standin.uri("/slow")).build(), HttpResponse.BodyHandlers.ofString());
+        final long elapsed = (System.nanoTime() - start) / 1_000_000;
+        Assert.assertEquals("[1,2,3,4]", response.body());
+        Assert.assertTrue("elapsed " + elapsed, elapsed >= 150);
+    }
+
+    @Test
+    public void loadReportsLatenciesAndErrors() throws Exception {
+        standin.script("/mixed", StandinScript.of(StandinLatency.uniform(Duration.ofMillis(1), Duration.ofMillis(2)), Outcome.respond(9, StandinResponse.json("{}")), Outcome.respond(1, StandinResponse.json(503, "{}"))));
+        final var report = new StandinLoad(4, Duration.ofMillis(100), Duration.ofMillis(300)).run(() -> {
+            final var response = client.send(HttpRequest.newBuilder(standin.uri("/mixed")).build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException();
+            }
+            return response;
+        });
+        Assert.assertTrue(report.toString(), report.calls > 0);
+        Assert.assertTrue(report.toString(), report.errors > 0 && report.errors < report.calls);
+        Assert.assertTrue(report.toString(), report.p50.toNanos() >= 1_000_000);
+    }
+}
@@ -0,0 +1,249 @@
+package net.optionfactory.spring.upstream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Http clients shared by upstream ports and interceptors. One connection pool
+ * is kept for each TLS configuration ({@code SSLConnectionSocketFactory}
+ * instance, either passed around by the caller or registered by name with
+ * {@link #socketFactory}) and partitioned by route, so calls to the same
+ * host reuse the same keep-alive connections. Pools can be warmed up at startup so that the
+ * first calls after a deploy do not pay TCP and TLS handshakes. Clients
+ * transparently decode gzip/deflate responses unless
+ * {@code contentCompression} is disabled for ports that negotiate content
+ * coding themselves.
+ */
+public class UpstreamClients implements Closeable {
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamClients.class);
+    private final int maxTotal;
+    private final int defaultMaxPerRoute;
+    private final Duration idleTimeout;
+    private final Map<HttpHost, Integer> maxPerRoute = new ConcurrentHashMap<>();
+    private final Map<String, SSLConnectionSocketFactory> socketFactories = new ConcurrentHashMap<>();
+    private final Map<TlsKey, PoolingHttpClientConnectionManager> pools = new ConcurrentHashMap<>();
+    private final Map<ClientKey, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private volatile boolean closed;
+
+    public UpstreamClients(int maxTotal, int defaultMaxPerRoute, Duration idleTimeout) {
+        this.maxTotal = maxTotal;
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.idleTimeout = idleTimeout;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "upstream-clients-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        final long period = Math.max(1, idleTimeout.toMillis() / 2);
+        this.reaper.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static UpstreamClients defaults() {
+        return new UpstreamClients(200, 20, Duration.ofSeconds(30));
+    }
+
+    public UpstreamClients maxPerRoute(HttpHost host, int max) {
+        final HttpHost target = withPort(host);
+        maxPerRoute.put(target, max);
+        pools.values().forEach(pool -> applyMaxPerRoute(pool, target, max));
+        return this;
+    }
+
+    /**
+     * The socket factory registered under {@code name}, built on first use:
+     * ports using the same name share its pool and TLS session cache.
+     */
+    public SSLConnectionSocketFactory socketFactory(String name, Supplier<SSLConnectionSocketFactory> factory) {
+        ensureOpen();
+        return socketFactories.computeIfAbsent(name, k -> factory.get());
+    }
+
+    public CloseableHttpClient client(SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis) {
+        return client(socketFactory, connectionTimeoutInMillis, true);
+    }
+
+    public CloseableHttpClient client(SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, boolean contentCompression) {
+        ensureOpen();
+        return clients.computeIfAbsent(new ClientKey(socketFactory, connectionTimeoutInMillis, contentCompression), k -> {
+            final HttpClientBuilder builder = builder(socketFactory, connectionTimeoutInMillis);
+            if (!contentCompression) {
+                builder.disableContentCompression();
+            }
+            return builder.build();
+        });
+    }
+
+    public HttpClientBuilder builder(SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis) {
+        ensureOpen();
+        return HttpClientBuilder.create()
+                .setConnectionManager(pool(socketFactory))
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(connectionTimeoutInMillis).build())
+                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build());
+    }
+
+    public int warmUp(SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, URI upstream, int connections) {
+        ensureOpen();
+        final PoolingHttpClientConnectionManager pool = pool(socketFactory);
+        final HttpHost target = withPort(new HttpHost(upstream.getHost(), upstream.getPort(), upstream.getScheme()));
+        final HttpRoute route = new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+        final HttpClientContext context = HttpClientContext.create();
+        final List<HttpClientConnection> leased = new ArrayList<>();
+        int opened = 0;
+        try {
+            for (int i = 0; i != connections; ++i) {
+                final HttpClientConnection connection = pool.requestConnection(route, null).get(connectionTimeoutInMillis, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    pool.connect(connection, route, connectionTimeoutInMillis, context);
+                    pool.routeComplete(connection, route, context);
+                    ++opened;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException ex) {
+            logger.warn("[upstream-clients] failed to warm up connections to {}: {}", target, ex.getMessage());
+        } finally {
+            for (HttpClientConnection connection : leased) {
+                pool.releaseConnection(connection, null, idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        logger.info("[upstream-clients] warmed up {} connections to {}", opened, target);
+        return opened;
+    }
+
+    private PoolingHttpClientConnectionManager pool(SSLConnectionSocketFactory socketFactory) {
+        return pools.computeIfAbsent(new TlsKey(socketFactory), k -> {
+            final var registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", socketFactory != null ? socketFactory : SSLConnectionSocketFactory.getSocketFactory())
+                    .build();
+            final var pool = new PoolingHttpClientConnectionManager(registry);
+            pool.setMaxTotal(maxTotal);
+            pool.setDefaultMaxPerRoute(defaultMaxPerRoute);
+            pool.setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build());
+            maxPerRoute.forEach((host, max) -> applyMaxPerRoute(pool, host, max));
+            return pool;
+        });
+    }
+
+    private static void applyMaxPerRoute(PoolingHttpClientConnectionManager pool, HttpHost target, int max) {
+        pool.setMaxPerRoute(new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName())), max);
+    }
+
+    private static HttpHost withPort(HttpHost host) {
+        if (host.getPort() > 0) {
+            return host;
+        }
+        final int port = "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80;
+        return new HttpHost(host.getHostName(), port, host.getSchemeName());
+    }
+
+    private void evict() {
+        for (PoolingHttpClientConnectionManager pool : pools.values()) {
+            try {
+                pool.closeExpiredConnections();
+                pool.closeIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RuntimeException ex) {
+                logger.warn("[upstream-clients] failed to evict connections", ex);
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("UpstreamClients is closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        reaper.shutdownNow();
+        for (CloseableHttpClient client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+        for (PoolingHttpClientConnectionManager pool : pools.values()) {
+            pool.shutdown();
+        }
+        pools.clear();
+        socketFactories.clear();
+    }
+
+    private static class TlsKey {
+
+        private final SSLConnectionSocketFactory socketFactory;
+
+        public TlsKey(SSLConnectionSocketFactory socketFactory) {
+            this.socketFactory = socketFactory;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TlsKey && ((TlsKey) other).socketFactory == socketFactory;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(socketFactory);
+        }
+    }
+
+    private static class ClientKey {
+
+        private final SSLConnectionSocketFactory socketFactory;
+        private final int connectionTimeoutInMillis;
+        private final boolean contentCompression;
+
+        public ClientKey(SSLConnectionSocketFactory socketFactory, int connectionTimeoutInMillis, boolean contentCompression) {
+            this.socketFactory = socketFactory;
+            this.connectionTimeoutInMillis = connectionTimeoutInMillis;
+            this.contentCompression = contentCompression;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ClientKey)) {
+                return false;
+            }
+            final ClientKey o = (ClientKey) other;
+            return o.socketFactory == socketFactory && o.connectionTimeoutInMillis == connectionTimeoutInMillis && o.contentCompression == contentCompression;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(socketFactory), connectionTimeoutInMillis, contentCompression);
+        }
+    }
+}
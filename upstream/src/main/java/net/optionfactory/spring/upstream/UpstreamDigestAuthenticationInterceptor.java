@@ -2,21 +2,50 @@ package net.optionfactory.spring.upstream;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.optionfactory.spring.upstream.digest.DigestAuth;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
+/**
+ * Authenticates requests with HTTP Digest. The server challenge is fetched
+ * once per origin and reused, with a growing nonce count, until it is older
+ * than {@code challengeTtl} or the upstream answers {@code 401}: the
+ * challenge sent along with the {@code 401} (if any) is used by the
+ * following requests, so a request racing with a nonce expiry can fail once.
+ * Request bodies given as {@code byte[]} or {@code String} are protected
+ * when the server offers {@code qop=auth-int}.
+ */
 public class UpstreamDigestAuthenticationInterceptor<T> implements UpstreamInterceptor<T> {
 
+    public static final Duration DEFAULT_CHALLENGE_TTL = Duration.ofMinutes(1);
+    private static final int MAX_CACHED_CHALLENGES = 64;
+
     private final DigestAuth digestAuth;
     private final CloseableHttpClient authClient;
+    private final Duration challengeTtl;
+    private final Map<String, Challenge> challenges = new ConcurrentHashMap<>();
 
-    public UpstreamDigestAuthenticationInterceptor(String clientId, String clientSecret, CloseableHttpClient authClient) {
+    public UpstreamDigestAuthenticationInterceptor(String clientId, String clientSecret, CloseableHttpClient authClient, Duration challengeTtl) {
         this.digestAuth = DigestAuth.fromCredentials(clientId, clientSecret);
         this.authClient = authClient;
+        this.challengeTtl = challengeTtl;
+    }
+
+    public UpstreamDigestAuthenticationInterceptor(String clientId, String clientSecret, CloseableHttpClient authClient) {
+        this(clientId, clientSecret, authClient, DEFAULT_CHALLENGE_TTL);
     }
 
     @Override
@@ -24,13 +53,41 @@ public class UpstreamDigestAuthenticationInterceptor<T> implements UpstreamInter
         final HttpMethod method = prepare.entity.getMethod();
         final URI uri = prepare.entity.getUrl();
         final String uriPath = uri.getPath();
-        final String serverChallenge = challenge(prepare, uri);        
+        final Challenge challenge = challenge(prepare, uri);
         final HttpHeaders h = new HttpHeaders();
-        h.set("Authorization", digestAuth.authHeader(method.name(), uriPath, serverChallenge));
+        h.set("Authorization", digestAuth.authHeader(method.name(), uriPath, challenge.header, challenge.nonceCount.incrementAndGet(), body(prepare)));
         return h;
     }
 
-    private String challenge(PrepareContext<T> prepare, URI uri) {
+    @Override
+    public void remotingSuccess(PrepareContext<T> prepare, RequestContext request, ResponseContext response) {
+        if (response.status != HttpStatus.UNAUTHORIZED) {
+            return;
+        }
+        final String origin = origin(prepare.entity.getUrl());
+        final String header = response.headers == null ? null : response.headers.getFirst(HttpHeaders.WWW_AUTHENTICATE);
+        if (header == null || !header.regionMatches(true, 0, "digest", 0, 6)) {
+            challenges.remove(origin);
+            return;
+        }
+        challenges.put(origin, new Challenge(header, Instant.now()));
+    }
+
+    private Challenge challenge(PrepareContext<T> prepare, URI uri) {
+        final String origin = origin(uri);
+        final Challenge cached = challenges.get(origin);
+        if (cached != null && cached.fetchedAt.plus(challengeTtl).isAfter(Instant.now())) {
+            return cached;
+        }
+        final Challenge fetched = new Challenge(fetch(prepare, uri), Instant.now());
+        if (challenges.size() >= MAX_CACHED_CHALLENGES) {
+            challenges.clear();
+        }
+        challenges.put(origin, fetched);
+        return fetched;
+    }
+
+    private String fetch(PrepareContext<T> prepare, URI uri) {
         try (CloseableHttpResponse response = authClient.execute(new HttpPost(uri))) {
             return response.getFirstHeader("WWW-Authenticate").getValue();
         } catch (IOException ex) {
@@ -38,4 +95,36 @@ public class UpstreamDigestAuthenticationInterceptor<T> implements UpstreamInter
         }
     }
 
+    private static byte[] body(PrepareContext<?> prepare) {
+        final Object body = prepare.entity.getBody();
+        if (body instanceof byte[]) {
+            return (byte[]) body;
+        }
+        if (body instanceof String) {
+            //same defaults as StringHttpMessageConverter
+            final MediaType contentType = prepare.entity.getHeaders().getContentType();
+            final Charset charset = Optional.ofNullable(contentType)
+                    .map(MediaType::getCharset)
+                    .orElse(contentType != null && contentType.isCompatibleWith(MediaType.APPLICATION_JSON) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+            return ((String) body).getBytes(charset);
+        }
+        return null;
+    }
+
+    private static String origin(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private static class Challenge {
+
+        public final String header;
+        public final Instant fetchedAt;
+        public final AtomicInteger nonceCount = new AtomicInteger();
+
+        public Challenge(String header, Instant fetchedAt) {
+            this.header = header;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
 }
@@ -8,8 +8,20 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 @ResponseStatus(value = HttpStatus.BAD_GATEWAY)
 public class UpstreamException extends Failure {
 
+    /**
+     * The raw HTTP status of the upstream response causing this failure, null
+     * when no response was received.
+     */
+    public final Integer status;
+
     public UpstreamException(String upstreamId, String reason, String internalDetails) {
         super(Problem.of("UPSTREAM_PROBLEM", upstreamId, reason, internalDetails));
+        this.status = null;
+    }
+
+    public UpstreamException(String upstreamId, String reason, String internalDetails, int status) {
+        super(Problem.of("UPSTREAM_PROBLEM", upstreamId, reason, internalDetails));
+        this.status = status;
     }
 
 }
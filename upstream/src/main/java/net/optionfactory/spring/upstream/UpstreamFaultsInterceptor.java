@@ -6,9 +6,15 @@ import org.springframework.http.MediaType;
 public class UpstreamFaultsInterceptor<CTX> implements UpstreamInterceptor<CTX> {
 
     private final UpstreamFaultsSpooler<CTX> faults;
+    private final int maxBodyChars;
 
-    public UpstreamFaultsInterceptor(UpstreamFaultsSpooler<CTX> faults) {
+    public UpstreamFaultsInterceptor(UpstreamFaultsSpooler<CTX> faults, int maxBodyChars) {
         this.faults = faults;
+        this.maxBodyChars = maxBodyChars;
+    }
+
+    public UpstreamFaultsInterceptor(UpstreamFaultsSpooler<CTX> faults) {
+        this(faults, Integer.MAX_VALUE);
     }
 
     @Override
@@ -20,9 +26,9 @@ public class UpstreamFaultsInterceptor<CTX> implements UpstreamInterceptor<CTX>
             return;
         }
         final MediaType contentType = response.headers.getContentType();
-        final String responseBodyAsText = UpstreamOps.bodyAsString(contentType, true, response.body);
+        final String responseBodyAsText = UpstreamOps.bodyAsString(contentType, true, response.body, maxBodyChars);
 
-        final String requestBodyAsString = UpstreamOps.bodyAsString(MediaType.TEXT_XML /*fixme*/, true, request.body);
+        final String requestBodyAsString = UpstreamOps.bodyAsString(request.headers.getContentType(), true, request.body, maxBodyChars);
         
         faults.add(UpstreamFault.of(
                 prepare.ctx, 
@@ -40,7 +46,7 @@ public class UpstreamFaultsInterceptor<CTX> implements UpstreamInterceptor<CTX>
 
     @Override
     public void remotingError(PrepareContext<CTX> prepare, RequestContext request, ErrorContext error) {
-        final String requestBodyAsString = UpstreamOps.bodyAsString(MediaType.TEXT_XML /*fixme*/, true, request.body);
+        final String requestBodyAsString = UpstreamOps.bodyAsString(request.headers.getContentType(), true, request.body, maxBodyChars);
 
         faults.add(UpstreamFault.of(
                 prepare.ctx, 
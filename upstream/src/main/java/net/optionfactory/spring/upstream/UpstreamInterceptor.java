@@ -22,12 +22,28 @@ public interface UpstreamInterceptor<CTX> {
         public Instant at;
         public HttpHeaders headers;
         public Resource body;
+        public Compression compression;
     }
     public static class ResponseContext {
         public Instant at;
         public HttpStatus status;
         public HttpHeaders headers;
         public Resource body;
+        public Compression compression;
+    }
+    
+    public static class Compression {
+        public String encoding;
+        public long compressedBytes;
+        public long uncompressedBytes;
+
+        public static Compression of(String encoding, long compressedBytes, long uncompressedBytes) {
+            final var c = new Compression();
+            c.encoding = encoding;
+            c.compressedBytes = compressedBytes;
+            c.uncompressedBytes = uncompressedBytes;
+            return c;
+        }
     }
     
     public static class ErrorContext {
@@ -58,4 +74,12 @@ public interface UpstreamInterceptor<CTX> {
     default void mappingSuccess(PrepareContext<CTX> prepare, RequestContext request, ResponseContext response, ResponseEntity<?> mapped){
     
     }
+
+    /**
+     * Called exactly once per exchange, whatever its outcome, after every
+     * other callback. Streamed exchanges complete when the stream is
+     * exhausted, fails or is closed.
+     */
+    default void completed(PrepareContext<CTX> prepare) {
+    }
 }
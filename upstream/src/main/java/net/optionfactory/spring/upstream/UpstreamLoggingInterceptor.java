@@ -11,11 +11,17 @@ public class UpstreamLoggingInterceptor<CTX> implements UpstreamInterceptor<CTX>
     private final ContextLogEncoder<CTX> contextLogEncoder;
     private final boolean logHeaders;
     private final boolean logMultipart;
+    private final int maxBodyChars;
 
-    public UpstreamLoggingInterceptor(ContextLogEncoder<CTX> contextLogEncoder, boolean logHeaders, boolean logMultipart) {
+    public UpstreamLoggingInterceptor(ContextLogEncoder<CTX> contextLogEncoder, boolean logHeaders, boolean logMultipart, int maxBodyChars) {
         this.contextLogEncoder = contextLogEncoder;
         this.logHeaders = logHeaders;
         this.logMultipart = logMultipart;
+        this.maxBodyChars = maxBodyChars;
+    }
+
+    public UpstreamLoggingInterceptor(ContextLogEncoder<CTX> contextLogEncoder, boolean logHeaders, boolean logMultipart) {
+        this(contextLogEncoder, logHeaders, logMultipart, Integer.MAX_VALUE);
     }
 
     @Override
@@ -25,7 +31,7 @@ public class UpstreamLoggingInterceptor<CTX> implements UpstreamInterceptor<CTX>
             logger.info("[upstream:{}][op:pre]{}[req:{}][ep:{}] headers={}", prepare.upstreamId, ctxLogPrefix, prepare.requestId, prepare.endpointId, request.headers);
         }
         final String logPrefix = String.format("[upstream:%s][op:req]%s[req:%s][ep:%s]", prepare.upstreamId, ctxLogPrefix, prepare.requestId, prepare.endpointId);
-        logger.info("{} url: {} body: {}", logPrefix, prepare.entity.getUrl(), UpstreamOps.bodyAsString(request.headers.getContentType(), logMultipart, request.body));
+        logger.info("{} url: {} body: {}", logPrefix, prepare.entity.getUrl(), UpstreamOps.bodyAsString(request.headers.getContentType(), logMultipart, request.body, maxBodyChars));
     }
 
     @Override
@@ -35,7 +41,7 @@ public class UpstreamLoggingInterceptor<CTX> implements UpstreamInterceptor<CTX>
         final String logPrefix = String.format("[upstream:%s][op:res]%s[req:%s][ep:%s][ms:%s]", prepare.upstreamId, ctxLogPrefix, prepare.requestId, prepare.endpointId, elapsedMillis);
 
         final MediaType contentType = response.headers.getContentType();
-        final String responseBodyAsText = UpstreamOps.bodyAsString(contentType, true, response.body);
+        final String responseBodyAsText = UpstreamOps.bodyAsString(contentType, true, response.body, maxBodyChars);
         logger.info("{} status: {} type: {} body: {}", logPrefix, response.status, contentType, responseBodyAsText);
     }
 
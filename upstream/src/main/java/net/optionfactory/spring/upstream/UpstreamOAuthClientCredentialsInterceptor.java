@@ -6,6 +6,7 @@ import java.util.List;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -25,19 +26,22 @@ public class UpstreamOAuthClientCredentialsInterceptor<T> implements UpstreamInt
     private final RestTemplate restOauth;
 
     public UpstreamOAuthClientCredentialsInterceptor(String clientId, String clientSecret, SSLConnectionSocketFactory socketFactory, URI tokenUri) {
+        this(clientId, clientSecret, HttpClientBuilder.create()
+                .setSSLSocketFactory(socketFactory)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(5000).build())
+                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
+                .build(), tokenUri);
+    }
+
+    public UpstreamOAuthClientCredentialsInterceptor(String clientId, String clientSecret, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, URI tokenUri) {
+        this(clientId, clientSecret, clients.client(socketFactory, 5000), tokenUri);
+    }
+
+    public UpstreamOAuthClientCredentialsInterceptor(String clientId, String clientSecret, CloseableHttpClient client, URI tokenUri) {
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.tokenUri = tokenUri;
-        final var builder = HttpClientBuilder.create();
-        builder.setSSLSocketFactory(socketFactory);
-        final var client = builder.setDefaultRequestConfig(RequestConfig.custom()
-                .setConnectTimeout(5000).build())
-                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
-                .build();
-        final var requestFactory = new HttpComponentsClientHttpRequestFactory(client);
-        
-        this.restOauth = new RestTemplate(requestFactory);
-
+        this.restOauth = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
     }
 
     @Override
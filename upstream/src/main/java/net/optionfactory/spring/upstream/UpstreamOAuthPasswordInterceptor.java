@@ -5,6 +5,7 @@ import java.net.URI;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -23,18 +24,22 @@ public class UpstreamOAuthPasswordInterceptor<T> implements UpstreamInterceptor<
     private final RestTemplate restOauth;
 
     public UpstreamOAuthPasswordInterceptor(String clientId, String clientSecret, SSLConnectionSocketFactory socketFactory, URI tokenURI) {
+        this(clientId, clientSecret, HttpClientBuilder.create()
+                .setSSLSocketFactory(socketFactory)
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(5000).build())
+                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
+                .build(), tokenURI);
+    }
+
+    public UpstreamOAuthPasswordInterceptor(String clientId, String clientSecret, UpstreamClients clients, SSLConnectionSocketFactory socketFactory, URI tokenURI) {
+        this(clientId, clientSecret, clients.client(socketFactory, 5000), tokenURI);
+    }
+
+    public UpstreamOAuthPasswordInterceptor(String clientId, String clientSecret, CloseableHttpClient client, URI tokenURI) {
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.tokenURI = tokenURI;
-
-        final var builder = HttpClientBuilder.create();
-        builder.setSSLSocketFactory(socketFactory);
-        final var client = builder.setDefaultRequestConfig(RequestConfig.custom()
-                .setConnectTimeout(5000).build())
-                .setDefaultSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
-                .build();
-        final var requestFactory = new HttpComponentsClientHttpRequestFactory(client);
-        this.restOauth = new RestTemplate(requestFactory);
+        this.restOauth = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
     }
 
     @Override
@@ -1,18 +1,37 @@
 package net.optionfactory.spring.upstream;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.InputStreamSource;
 import org.springframework.http.MediaType;
-import org.springframework.util.StreamUtils;
+import org.springframework.util.ClassUtils;
 
 public class UpstreamOps {
 
     private static final Pattern UUID_WITH_ONLY_LETTERS = Pattern.compile("[A-Fa-f]{8}-[A-Fa-f]{4}-[A-Fa-f]{4}-[A-Fa-f]{4}-[A-Fa-f]{12}");
     private static final Pattern CONTAINS_NUMBERS = Pattern.compile("[0-9]");
 
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+    public static final MediaType APPLICATION_CBOR = MediaType.APPLICATION_CBOR;
+
+    private static final boolean SMILE_PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory", UpstreamOps.class.getClassLoader());
+    private static final boolean CBOR_PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.dataformat.cbor.CBORFactory", UpstreamOps.class.getClassLoader());
+
     private static final Set<String> LOGGED_MEDIA_TYPES = Set.of(
             "JSON",
             "TEXT",
@@ -20,19 +39,154 @@ public class UpstreamOps {
             "HTML",
             "XHTML"
     );
+    private static final int MAX_CACHED_MEDIA_TYPES = 256;
+    private static final Map<MediaType, BodyKind> BODY_KINDS = new ConcurrentHashMap<>();
+
+    private enum BodyKind {
+        TEXT, MULTIPART, SMILE, CBOR, BINARY;
+    }
 
     public static String bodyAsString(MediaType contentType, boolean logMultipart, InputStreamSource body) {
-        if (contentType != null && contentType.isCompatibleWith(MediaType.MULTIPART_MIXED) && !logMultipart) {
-            return "(multipart body)";
+        return bodyAsString(contentType, logMultipart, body, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Renders a body for logs and fault reports, decoding text with the
+     * charset of the content type (UTF-8 when missing) and reading at most
+     * {@code maxChars} characters of it.
+     */
+    public static String bodyAsString(MediaType contentType, boolean logMultipart, InputStreamSource body, int maxChars) {
+        switch (classify(contentType)) {
+            case MULTIPART:
+                return logMultipart ? textAsString(contentType, body, maxChars) : "(multipart body)";
+            case SMILE:
+                return binaryJsonAsString(contentType, Smile.MAPPER, body, maxChars);
+            case CBOR:
+                return binaryJsonAsString(contentType, Cbor.MAPPER, body, maxChars);
+            case BINARY:
+                return String.format("(binary:%s)", contentType);
+            default:
+                return textAsString(contentType, body, maxChars);
+        }
+    }
+
+    private static BodyKind classify(MediaType contentType) {
+        if (contentType == null) {
+            return BodyKind.TEXT;
+        }
+        //the kind only depends on type and subtype: parameters (boundaries, names) would make every key unique
+        final MediaType key = contentType.getParameters().isEmpty() ? contentType : new MediaType(contentType.getType(), contentType.getSubtype());
+        final BodyKind cached = BODY_KINDS.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final BodyKind kind = computeKind(key);
+        if (BODY_KINDS.size() >= MAX_CACHED_MEDIA_TYPES) {
+            BODY_KINDS.clear();
+        }
+        BODY_KINDS.put(key, kind);
+        return kind;
+    }
+
+    private static BodyKind computeKind(MediaType contentType) {
+        if (contentType.isCompatibleWith(MediaType.MULTIPART_MIXED)) {
+            return BodyKind.MULTIPART;
+        }
+        if (SMILE_PRESENT && APPLICATION_SMILE.includes(contentType)) {
+            return BodyKind.SMILE;
+        }
+        if (CBOR_PRESENT && APPLICATION_CBOR.includes(contentType)) {
+            return BodyKind.CBOR;
+        }
+        final String mimeType = (contentType.getType() + "/" + contentType.getSubtype()).toUpperCase();
+        return LOGGED_MEDIA_TYPES.stream().anyMatch(mimeType::contains) ? BodyKind.TEXT : BodyKind.BINARY;
+    }
+
+    private static String textAsString(MediaType contentType, InputStreamSource body, int maxChars) {
+        final Charset charset = charset(contentType);
+        if (body instanceof ByteArrayResource) {
+            final byte[] bytes = ((ByteArrayResource) body).getByteArray();
+            if ((long) bytes.length <= maxChars) {
+                return new String(bytes, charset);
+            }
+            //decodes just the prefix: the decoder stops when the output is full
+            final CharBuffer out = CharBuffer.allocate(maxChars + 1);
+            charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(ByteBuffer.wrap(bytes), out, true);
+            out.flip();
+            return out.remaining() > maxChars ? truncate(out.toString(), maxChars) : out.toString();
         }
-        if (contentType != null && !LOGGED_MEDIA_TYPES.stream().anyMatch(t -> contentType.toString().toUpperCase().contains(t))) {
+        try (var reader = new InputStreamReader(body.getInputStream(), charset)) {
+            //one more char than allowed tells whether the body was truncated
+            final long limit = (long) maxChars + 1;
+            final var sb = new StringBuilder();
+            final char[] buffer = new char[(int) Math.min(8192, limit)];
+            int read;
+            while (sb.length() < limit && (read = reader.read(buffer, 0, (int) Math.min(buffer.length, limit - sb.length()))) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.length() > maxChars ? truncate(sb.toString(), maxChars) : sb.toString();
+        } catch (IOException ex) {
             return String.format("(binary:%s)", contentType);
         }
-        try (var is = body.getInputStream()) {
-            return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+    }
+
+    private static Charset charset(MediaType contentType) {
+        try {
+            return contentType != null && contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException ex) {
+            //unknown or malformed charset names
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static String truncate(String value, int maxChars) {
+        if (value.length() <= maxChars) {
+            return value;
+        }
+        return value.substring(0, maxChars) + "...(truncated)";
+    }
+
+    /**
+     * Transcodes token by token, stopping once {@code maxChars} are
+     * rendered: only the rendered prefix of the body is decoded.
+     */
+    private static String binaryJsonAsString(MediaType contentType, ObjectMapper binaryMapper, InputStreamSource body, int maxChars) {
+        final var out = new StringWriter();
+        try (var is = body.getInputStream();
+                var parser = binaryMapper.getFactory().createParser(is);
+                var generator = Json.MAPPER.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+                if ((long) out.getBuffer().length() + generator.getOutputBuffered() > maxChars) {
+                    generator.flush();
+                    return truncate(out.toString(), maxChars);
+                }
+            }
+            generator.flush();
+            return out.toString();
         } catch (IOException ex) {
             return String.format("(binary:%s)", contentType);
         }
     }
 
+    //holders are only initialized when the dataformat is on the classpath
+    private static class Json {
+
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+
+    private static class Smile {
+
+        private static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory());
+    }
+
+    private static class Cbor {
+
+        private static final ObjectMapper MAPPER = new ObjectMapper(new CBORFactory());
+    }
+
 }
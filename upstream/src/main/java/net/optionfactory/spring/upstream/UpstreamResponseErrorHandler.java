@@ -17,6 +17,7 @@ public class UpstreamResponseErrorHandler<CTX> extends DefaultResponseErrorHandl
     
     @Override
     public void handleError(ClientHttpResponse response) throws IOException {
-        throw new UpstreamException(upstreamId, "GENERIC_ERROR", Integer.toString(response.getRawStatusCode()));
+        final int status = response.getRawStatusCode();
+        throw new UpstreamException(upstreamId, "GENERIC_ERROR", Integer.toString(status), status);
     }
 }
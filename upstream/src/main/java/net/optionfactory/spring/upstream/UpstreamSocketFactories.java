@@ -4,13 +4,23 @@ import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
 import org.apache.http.ssl.TrustStrategy;
 
+/**
+ * Socket factories for upstream ports. Every call builds a new factory (and
+ * {@code SSLContext}): {@link UpstreamClients} keeps a pool per factory
+ * instance, so ports meant to share connections and TLS sessions must be
+ * given the same instance, e.g. through
+ * {@link UpstreamClients#socketFactory(String, java.util.function.Supplier)}.
+ */
 public class UpstreamSocketFactories {
 
     public static SSLConnectionSocketFactory trusting(KeyStore keystore, TrustStrategy strategy, HostnameVerifier verifier) {
@@ -24,6 +34,17 @@ public class UpstreamSocketFactories {
         }
     }
 
+    public static SSLConnectionSocketFactory trusting(KeyStore keystore, TrustStrategy strategy, HostnameVerifier verifier, int sessionCacheSize, Duration sessionTimeout) {
+        try {
+            final SSLContext context = new SSLContextBuilder()
+                    .loadTrustMaterial(keystore, strategy)
+                    .build();
+            return new SSLConnectionSocketFactory(sessionCaching(context, sessionCacheSize, sessionTimeout), verifier);
+        } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     public static SSLConnectionSocketFactory trustAll() {
         try {
             final SSLContext context = new SSLContextBuilder()
@@ -36,8 +57,32 @@ public class UpstreamSocketFactories {
         }
     }
 
+    public static SSLConnectionSocketFactory trustAll(int sessionCacheSize, Duration sessionTimeout) {
+        try {
+            final SSLContext context = new SSLContextBuilder()
+                    .loadTrustMaterial(null, (chain, authType) -> true)
+                    .build();
+            return new SSLConnectionSocketFactory(sessionCaching(context, sessionCacheSize, sessionTimeout), new NoopHostnameVerifier());
+        } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException ex) {
+            //never happens.
+            throw new IllegalStateException(ex);
+        }
+    }
+
     public static SSLConnectionSocketFactory system() {
         return null;
     }
 
+    public static SSLConnectionSocketFactory system(int sessionCacheSize, Duration sessionTimeout) {
+        return new SSLConnectionSocketFactory(sessionCaching(SSLContexts.createDefault(), sessionCacheSize, sessionTimeout));
+    }
+
+    private static SSLContext sessionCaching(SSLContext context, int sessionCacheSize, Duration sessionTimeout) {
+        //sessions are only resumed within the same SSLContext: share the socket factory (e.g. through UpstreamClients)
+        final SSLSessionContext sessions = context.getClientSessionContext();
+        sessions.setSessionCacheSize(sessionCacheSize);
+        sessions.setSessionTimeout((int) sessionTimeout.toSeconds());
+        return context;
+    }
+
 }
@@ -0,0 +1,21 @@
+package net.optionfactory.spring.upstream;
+
+import java.util.stream.Stream;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+
+/**
+ * A port that can also map JSON array responses one element at a time.
+ */
+public interface UpstreamStreamingPort<CTX> extends UpstreamPort<CTX> {
+
+    /**
+     * Maps a JSON array response one element at a time, without buffering the
+     * response. The returned stream must be closed (e.g. with
+     * try-with-resources) unless it is fully consumed.
+     */
+    <T> Stream<T> exchangeStream(CTX context, String endpoint, RequestEntity<?> requestEntity, Class<T> elementType);
+
+    <T> Stream<T> exchangeStream(CTX context, String endpoint, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> elementType);
+
+}
@@ -0,0 +1,30 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the replica with the fewest requests in flight. The scan starts from
+ * a rotating offset so that ties do not always go to the first replica.
+ */
+public class LeastOutstandingStrategy implements UpstreamBalancingStrategy {
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public UpstreamReplica choose(List<UpstreamReplica> available) {
+        final int size = available.size();
+        final int start = Math.floorMod(offset.getAndIncrement(), size);
+        UpstreamReplica best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i != size; ++i) {
+            final UpstreamReplica candidate = available.get((start + i) % size);
+            final int outstanding = candidate.outstanding();
+            if (outstanding < bestOutstanding) {
+                best = candidate;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+}
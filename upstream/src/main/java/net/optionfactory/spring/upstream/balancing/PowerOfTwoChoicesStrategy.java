@@ -0,0 +1,26 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples two distinct replicas at random and picks the cheaper one by
+ * {@link UpstreamReplica#cost()}: close to least-loaded selection without
+ * scanning every replica or herding on a single one.
+ */
+public class PowerOfTwoChoicesStrategy implements UpstreamBalancingStrategy {
+
+    @Override
+    public UpstreamReplica choose(List<UpstreamReplica> available) {
+        final int size = available.size();
+        if (size == 1) {
+            return available.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int a = random.nextInt(size);
+        final int b = (a + 1 + random.nextInt(size - 1)) % size;
+        final UpstreamReplica first = available.get(a);
+        final UpstreamReplica second = available.get(b);
+        return second.cost() < first.cost() ? second : first;
+    }
+}
@@ -0,0 +1,14 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoundRobinStrategy implements UpstreamBalancingStrategy {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public UpstreamReplica choose(List<UpstreamReplica> available) {
+        return available.get(Math.floorMod(next.getAndIncrement(), available.size()));
+    }
+}
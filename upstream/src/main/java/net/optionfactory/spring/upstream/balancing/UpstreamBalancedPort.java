@@ -0,0 +1,198 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import net.optionfactory.spring.problems.Problem;
+import net.optionfactory.spring.upstream.UpstreamException;
+import net.optionfactory.spring.upstream.UpstreamPort;
+import net.optionfactory.spring.upstream.balancing.UpstreamFailureClassifier.Outcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Spreads the exchanges of a port over several replicas of the same
+ * upstream. The scheme and authority of every request URI are replaced by
+ * the ones of the chosen replica (its path, if any, is prepended), so
+ * request entities can be built against any of them or with a relative URI.
+ * Interceptors of the delegate port see the rewritten URI.
+ *
+ * Failures are tracked passively: connection failures, transport errors and
+ * 5xx responses count against a replica, while 4xx responses and mapping
+ * errors do not. Failures raised before the request is sent (no converter
+ * for the request body, failing interceptors) are not the replica's and are
+ * neither counted nor sampled. Other exceptions are classified by an
+ * {@link UpstreamFailureClassifier}: the delegate itself when it implements
+ * one, otherwise they are considered answers. When every replica is ejected,
+ * all of them are used again.
+ *
+ * @see UpstreamBalancedStreamingPort for streaming delegates
+ */
+public class UpstreamBalancedPort<CTX> implements UpstreamPort<CTX> {
+
+    private static final Duration EWMA_DECAY = Duration.ofSeconds(10);
+    private static final Duration FAILURE_PENALTY = Duration.ofSeconds(1);
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamBalancedPort.class);
+    private final String upstreamId;
+    private final List<UpstreamReplica> replicas;
+    private final UpstreamBalancingStrategy strategy;
+    private final UpstreamEjection ejection;
+    private final UpstreamFailureClassifier classifier;
+    private final UpstreamPort<CTX> delegate;
+
+    public UpstreamBalancedPort(String upstreamId, List<URI> replicas, UpstreamBalancingStrategy strategy, UpstreamEjection ejection, UpstreamFailureClassifier classifier, UpstreamPort<CTX> delegate) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException(String.format("no replicas configured for upstream %s", upstreamId));
+        }
+        this.upstreamId = upstreamId;
+        this.replicas = replicas.stream().map(uri -> new UpstreamReplica(uri, EWMA_DECAY.toNanos(), FAILURE_PENALTY.toNanos())).collect(Collectors.toUnmodifiableList());
+        this.strategy = strategy;
+        this.ejection = ejection;
+        this.classifier = classifier;
+        this.delegate = delegate;
+    }
+
+    public UpstreamBalancedPort(String upstreamId, List<URI> replicas, UpstreamBalancingStrategy strategy, UpstreamEjection ejection, UpstreamPort<CTX> delegate) {
+        this(upstreamId, replicas, strategy, ejection, classifierOf(delegate), delegate);
+    }
+
+    public UpstreamBalancedPort(String upstreamId, List<URI> replicas, UpstreamBalancingStrategy strategy, UpstreamPort<CTX> delegate) {
+        this(upstreamId, replicas, strategy, UpstreamEjection.defaults(), delegate);
+    }
+
+    public String upstreamId() {
+        return upstreamId;
+    }
+
+    public List<UpstreamReplica> replicas() {
+        return replicas;
+    }
+
+    @Override
+    public <T> ResponseEntity<T> exchange(CTX context, String endpoint, RequestEntity<?> requestEntity, Class<T> responseType) {
+        final UpstreamReplica replica = choose();
+        return tracked(replica, () -> delegate.exchange(context, endpoint, retarget(requestEntity, replica.uri()), responseType));
+    }
+
+    @Override
+    public <T> ResponseEntity<T> exchange(CTX context, String endpoint, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> responseType) {
+        final UpstreamReplica replica = choose();
+        return tracked(replica, () -> delegate.exchange(context, endpoint, retarget(requestEntity, replica.uri()), responseType));
+    }
+
+    UpstreamReplica choose() {
+        final long now = System.nanoTime();
+        List<UpstreamReplica> available = null;
+        for (int i = 0; i != replicas.size(); ++i) {
+            final UpstreamReplica replica = replicas.get(i);
+            final boolean ejected = replica.isEjected(now);
+            if (ejected && available == null) {
+                available = new ArrayList<>(replicas.subList(0, i));
+            } else if (!ejected && available != null) {
+                available.add(replica);
+            }
+        }
+        return strategy.choose(available == null || available.isEmpty() ? replicas : available);
+    }
+
+    <R> R tracked(UpstreamReplica replica, Supplier<R> call) {
+        replica.started();
+        final long start = System.nanoTime();
+        try {
+            final R result = call.get();
+            final long now = System.nanoTime();
+            replica.succeeded(now, now - start);
+            return result;
+        } catch (RuntimeException ex) {
+            final long now = System.nanoTime();
+            switch (outcome(ex)) {
+                case ANSWERED:
+                    replica.succeeded(now, now - start);
+                    break;
+                case REPLICA_FAILURE:
+                    if (replica.failed(now, ejection.consecutiveFailures) && canEject(now)) {
+                        final long duration = replica.eject(now, ejection.baseDuration.toNanos(), ejection.maxDuration.toNanos());
+                        logger.warn("[upstream-balancing] ejected replica {} of {} for {}ms: {}", replica, upstreamId, duration / 1_000_000, ex.getMessage());
+                    }
+                    break;
+                case NOT_SENT:
+                    break;
+            }
+            throw ex;
+        } finally {
+            replica.finished();
+        }
+    }
+
+    private boolean canEject(long now) {
+        final long ejected = replicas.stream().filter(r -> r.isEjected(now)).count();
+        return ejected + 1 <= (long) (ejection.maxEjectedFraction * replicas.size());
+    }
+
+    static UpstreamFailureClassifier classifierOf(UpstreamPort<?> delegate) {
+        return delegate instanceof UpstreamFailureClassifier ? (UpstreamFailureClassifier) delegate : UpstreamFailureClassifier.answered();
+    }
+
+    private Outcome outcome(RuntimeException ex) {
+        if (ex instanceof ResourceAccessException) {
+            return Outcome.REPLICA_FAILURE;
+        }
+        if (ex instanceof RestClientException) {
+            //no converter for the request or the response, failing client interceptors
+            return Outcome.NOT_SENT;
+        }
+        if (!(ex instanceof UpstreamException)) {
+            return classifier.classify(ex);
+        }
+        final UpstreamException failure = (UpstreamException) ex;
+        final Problem problem = failure.problems.get(0);
+        if ("UPSTREAM_DOWN".equals(problem.reason)) {
+            return Outcome.REPLICA_FAILURE;
+        }
+        if ("MAPPING_ERROR".equals(problem.reason)) {
+            return Outcome.ANSWERED;
+        }
+        if (!"GENERIC_ERROR".equals(problem.reason)) {
+            //REQUEST_ERROR or raised by an interceptor
+            return Outcome.NOT_SENT;
+        }
+        if (failure.status != null) {
+            return failure.status >= 500 ? Outcome.REPLICA_FAILURE : Outcome.ANSWERED;
+        }
+        //no response: connection reset, read timeouts
+        return Outcome.REPLICA_FAILURE;
+    }
+
+    static RequestEntity<?> retarget(RequestEntity<?> entity, URI base) {
+        final URI original = entity.getUrl();
+        final var sb = new StringBuilder();
+        sb.append(base.getScheme()).append("://").append(base.getRawAuthority());
+        final String basePath = base.getRawPath();
+        if (basePath != null && !basePath.isEmpty() && !"/".equals(basePath)) {
+            sb.append(basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath);
+        }
+        final String path = original.getRawPath();
+        if (path != null && !path.isEmpty()) {
+            if (path.charAt(0) != '/') {
+                sb.append('/');
+            }
+            sb.append(path);
+        }
+        if (original.getRawQuery() != null) {
+            sb.append('?').append(original.getRawQuery());
+        }
+        if (original.getRawFragment() != null) {
+            sb.append('#').append(original.getRawFragment());
+        }
+        return new RequestEntity<>(entity.getBody(), entity.getHeaders(), entity.getMethod(), URI.create(sb.toString()), entity.getType());
+    }
+}
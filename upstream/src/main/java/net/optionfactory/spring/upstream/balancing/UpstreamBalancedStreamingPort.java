@@ -0,0 +1,43 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Stream;
+import net.optionfactory.spring.upstream.UpstreamStreamingPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+
+/**
+ * An {@link UpstreamBalancedPort} over a streaming delegate. Streamed
+ * exchanges are tracked up to the response headers: a replica is not
+ * considered busy while its elements are being consumed.
+ */
+public class UpstreamBalancedStreamingPort<CTX> extends UpstreamBalancedPort<CTX> implements UpstreamStreamingPort<CTX> {
+
+    private final UpstreamStreamingPort<CTX> delegate;
+
+    public UpstreamBalancedStreamingPort(String upstreamId, List<URI> replicas, UpstreamBalancingStrategy strategy, UpstreamEjection ejection, UpstreamFailureClassifier classifier, UpstreamStreamingPort<CTX> delegate) {
+        super(upstreamId, replicas, strategy, ejection, classifier, delegate);
+        this.delegate = delegate;
+    }
+
+    public UpstreamBalancedStreamingPort(String upstreamId, List<URI> replicas, UpstreamBalancingStrategy strategy, UpstreamEjection ejection, UpstreamStreamingPort<CTX> delegate) {
+        this(upstreamId, replicas, strategy, ejection, classifierOf(delegate), delegate);
+    }
+
+    public UpstreamBalancedStreamingPort(String upstreamId, List<URI> replicas, UpstreamBalancingStrategy strategy, UpstreamStreamingPort<CTX> delegate) {
+        this(upstreamId, replicas, strategy, UpstreamEjection.defaults(), delegate);
+    }
+
+    @Override
+    public <T> Stream<T> exchangeStream(CTX context, String endpoint, RequestEntity<?> requestEntity, Class<T> elementType) {
+        final UpstreamReplica replica = choose();
+        return tracked(replica, () -> delegate.exchangeStream(context, endpoint, retarget(requestEntity, replica.uri()), elementType));
+    }
+
+    @Override
+    public <T> Stream<T> exchangeStream(CTX context, String endpoint, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> elementType) {
+        final UpstreamReplica replica = choose();
+        return tracked(replica, () -> delegate.exchangeStream(context, endpoint, retarget(requestEntity, replica.uri()), elementType));
+    }
+}
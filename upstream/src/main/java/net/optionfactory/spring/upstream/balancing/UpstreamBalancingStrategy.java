@@ -0,0 +1,24 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.util.List;
+
+/**
+ * Picks the replica serving the next request among the available (not
+ * ejected) ones. Implementations are called concurrently.
+ */
+public interface UpstreamBalancingStrategy {
+
+    UpstreamReplica choose(List<UpstreamReplica> available);
+
+    public static UpstreamBalancingStrategy roundRobin() {
+        return new RoundRobinStrategy();
+    }
+
+    public static UpstreamBalancingStrategy leastOutstanding() {
+        return new LeastOutstandingStrategy();
+    }
+
+    public static UpstreamBalancingStrategy powerOfTwoChoices() {
+        return new PowerOfTwoChoicesStrategy();
+    }
+}
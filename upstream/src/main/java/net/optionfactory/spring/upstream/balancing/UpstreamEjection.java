@@ -0,0 +1,38 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.time.Duration;
+
+/**
+ * Passive health checking: a replica failing {@code consecutiveFailures}
+ * requests in a row is taken out of rotation for {@code baseDuration},
+ * doubling on every further ejection up to {@code maxDuration}. At most
+ * {@code maxEjectedFraction} of the replicas are ejected at once.
+ */
+public class UpstreamEjection {
+
+    public final int consecutiveFailures;
+    public final Duration baseDuration;
+    public final Duration maxDuration;
+    public final double maxEjectedFraction;
+
+    public UpstreamEjection(int consecutiveFailures, Duration baseDuration, Duration maxDuration, double maxEjectedFraction) {
+        if (consecutiveFailures < 1) {
+            throw new IllegalArgumentException("consecutiveFailures must be positive");
+        }
+        if (maxEjectedFraction < 0 || maxEjectedFraction > 1) {
+            throw new IllegalArgumentException("maxEjectedFraction must be in [0, 1]");
+        }
+        this.consecutiveFailures = consecutiveFailures;
+        this.baseDuration = baseDuration;
+        this.maxDuration = maxDuration;
+        this.maxEjectedFraction = maxEjectedFraction;
+    }
+
+    public static UpstreamEjection defaults() {
+        return new UpstreamEjection(5, Duration.ofSeconds(30), Duration.ofMinutes(5), 0.5);
+    }
+
+    public static UpstreamEjection disabled() {
+        return new UpstreamEjection(Integer.MAX_VALUE, Duration.ZERO, Duration.ZERO, 0);
+    }
+}
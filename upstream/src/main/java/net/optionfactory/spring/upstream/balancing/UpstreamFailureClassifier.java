@@ -0,0 +1,40 @@
+package net.optionfactory.spring.upstream.balancing;
+
+/**
+ * Tells an {@link UpstreamBalancedPort} whose fault a failure raised by its
+ * delegate is, for the exceptions the balanced port does not know about
+ * (anything but {@code UpstreamException} and Spring's
+ * {@code RestClientException}s). A delegate implementing this interface is
+ * used as the classifier of the ports balancing it.
+ */
+@FunctionalInterface
+public interface UpstreamFailureClassifier {
+
+    enum Outcome {
+        /**
+         * The replica answered: its latency is sampled and its consecutive
+         * failures are reset.
+         */
+        ANSWERED,
+        /**
+         * The replica could not be reached or failed to answer: the failure
+         * counts towards its ejection.
+         */
+        REPLICA_FAILURE,
+        /**
+         * The request never left: the replica is neither sampled nor
+         * blamed.
+         */
+        NOT_SENT;
+    }
+
+    Outcome classify(RuntimeException ex);
+
+    /**
+     * Considers every unknown failure an answer: unknown failures never eject
+     * a replica.
+     */
+    static UpstreamFailureClassifier answered() {
+        return ex -> Outcome.ANSWERED;
+    }
+}
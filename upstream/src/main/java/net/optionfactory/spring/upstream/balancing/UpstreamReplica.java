@@ -0,0 +1,134 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A replica of a balanced upstream and its passive health: outstanding
+ * requests, a peak-sensitive EWMA of latencies and the ejection state.
+ * Failures are not sampled, as a replica failing fast would look cheap:
+ * they raise the estimate to a penalty instead, which decays like any
+ * other sample.
+ */
+public class UpstreamReplica {
+
+    private final URI uri;
+    private final long decayNanos;
+    private final long penaltyNanos;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private double ewmaNanos;
+    private long lastSampleNanos;
+    private int consecutiveFailures;
+    private int ejections;
+    private volatile long ejectedUntilNanos;
+    private volatile boolean ejected;
+
+    public UpstreamReplica(URI uri, long decayNanos, long penaltyNanos) {
+        this.uri = uri;
+        this.decayNanos = decayNanos;
+        this.penaltyNanos = penaltyNanos;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public synchronized int ejections() {
+        return ejections;
+    }
+
+    public synchronized double ewmaNanos() {
+        return ewmaNanos;
+    }
+
+    public boolean isEjected(long nowNanos) {
+        return ejected && nowNanos - ejectedUntilNanos < 0;
+    }
+
+    /**
+     * The load estimate used by {@link PowerOfTwoChoicesStrategy}: expected
+     * latency, decayed since the last sample, scaled by the requests already
+     * queued on the replica. Replicas without samples cost nothing, so they
+     * get probed first, and a penalized replica is probed again once its
+     * penalty fades.
+     */
+    public double cost() {
+        final double decayed;
+        synchronized (this) {
+            decayed = decayed(System.nanoTime());
+        }
+        return decayed * (outstanding.get() + 1);
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+        requests.increment();
+    }
+
+    void finished() {
+        outstanding.decrementAndGet();
+    }
+
+    synchronized void succeeded(long nowNanos, long latencyNanos) {
+        sample(nowNanos, latencyNanos);
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Returns true when the failure crosses the threshold and the replica
+     * should be ejected.
+     */
+    synchronized boolean failed(long nowNanos, int threshold) {
+        failures.increment();
+        ewmaNanos = Math.max(penaltyNanos, decayed(nowNanos) * 2);
+        lastSampleNanos = nowNanos;
+        return ++consecutiveFailures >= threshold && !isEjected(nowNanos);
+    }
+
+    synchronized long eject(long nowNanos, long baseNanos, long maxNanos) {
+        final long duration = Math.min(maxNanos, baseNanos << Math.min(ejections, 20));
+        ejections++;
+        consecutiveFailures = 0;
+        ejectedUntilNanos = nowNanos + duration;
+        ejected = true;
+        return duration;
+    }
+
+    private void sample(long nowNanos, long latencyNanos) {
+        if (latencyNanos > ewmaNanos) {
+            ewmaNanos = latencyNanos;
+        } else {
+            final double w = weight(nowNanos);
+            ewmaNanos = ewmaNanos * w + latencyNanos * (1 - w);
+        }
+        lastSampleNanos = nowNanos;
+    }
+
+    private double decayed(long nowNanos) {
+        return ewmaNanos * weight(nowNanos);
+    }
+
+    private double weight(long nowNanos) {
+        return Math.exp(-Math.max(0, nowNanos - lastSampleNanos) / (double) decayNanos);
+    }
+
+    @Override
+    public String toString() {
+        return uri.toString();
+    }
+}
@@ -1,21 +1,71 @@
 package net.optionfactory.spring.upstream.digest;
 
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import org.apache.commons.codec.binary.Hex;
+import net.optionfactory.spring.upstream.digest.AuthenticationChallengeParser.AuthenticationChallenge;
 
+/**
+ * Computes Digest {@code Authorization} headers (RFC 2617, RFC 7616). Hashing
+ * runs on per-thread {@link MessageDigest} instances and scratch buffers, HA1
+ * is computed once per realm and parsed challenges are cached, so a header
+ * costs a couple of digest rounds and the resulting String.
+ */
 public class DigestAuth {
-    
+
+    private static final int MAX_CACHED_CHALLENGES = 256;
+    private static final int MAX_CACHED_REALMS = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Digest algorithms; the {@code -sess} variants hash the server and
+     * client nonces into HA1.
+     */
+    public enum Algorithm {
+        MD5("MD5", "MD5", 16, false),
+        MD5_SESS("MD5-sess", "MD5", 16, true),
+        SHA_256("SHA-256", "SHA-256", 32, false),
+        SHA_256_SESS("SHA-256-sess", "SHA-256", 32, true);
+
+        public final String token;
+        public final String jcaName;
+        public final int length;
+        public final boolean session;
+
+        private Algorithm(String token, String jcaName, int length, boolean session) {
+            this.token = token;
+            this.jcaName = jcaName;
+            this.length = length;
+            this.session = session;
+        }
+
+        public static Algorithm fromToken(String token) {
+            if (token == null) {
+                return MD5;
+            }
+            for (Algorithm algorithm : values()) {
+                if (algorithm.token.equalsIgnoreCase(token)) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalStateException(String.format("Unsupported digest algorithm: %s", token));
+        }
+    }
+
     private final String clientId;
     private final String clientSecret;
     private final Supplier<Integer> clientNonceFactory;
+    private final AuthenticationChallengeParser parser = new AuthenticationChallengeParser();
+    private final Map<String, AuthenticationChallenge> challenges = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> ha1s = new ConcurrentHashMap<>();
 
     public DigestAuth(String clientId, String clientSecret, Supplier<Integer> clientNonceFactory) {
         this.clientId = clientId;
@@ -29,43 +79,218 @@ public class DigestAuth {
     }
 
     public String authHeader(String method, String uriPath, String serverChallenge) {
-        final AuthenticationChallengeParser.AuthenticationChallenge challenge = new AuthenticationChallengeParser().parse(serverChallenge);
-        if (!"digest".equalsIgnoreCase(challenge.scheme)) {
+        return authHeader(method, uriPath, serverChallenge, 1, null);
+    }
+
+    public String authHeader(String method, String uriPath, String serverChallenge, byte[] body) {
+        return authHeader(method, uriPath, serverChallenge, 1, body);
+    }
+
+    /**
+     * Builds the header for a request. When a body is given and the server
+     * offers {@code qop=auth-int}, the body is protected too; otherwise
+     * {@code qop=auth} is used. The nonce count must grow with every request
+     * reusing the same server nonce.
+     */
+    public String authHeader(String method, String uriPath, String serverChallenge, int nonceCount, byte[] body) {
+        final AuthenticationChallenge challenge = challenge(serverChallenge);
+        if (!"digest".equals(challenge.scheme)) {
             throw new IllegalStateException("Not a Digest challenge: " + serverChallenge);
         }
         final String serverRealm = challenge.params.get("realm");
         final String serverNonce = challenge.params.get("nonce");
         final String serverOpaque = challenge.params.get("opaque");
-        final String nc = "00000001";
-        final String clientNonce = String.format("%08x", clientNonceFactory.get());
-        final String ha1 = md5LowercaseHex(String.format("%s:%s:%s", clientId, serverRealm, clientSecret));
-        final String ha2 = md5LowercaseHex(String.format("%s:%s", method, uriPath));
-        final String response = md5LowercaseHex(String.format("%s:%s:%s:%s:%s:%s", ha1, serverNonce, nc, clientNonce, "auth", ha2));
-        final Map<String, String> digestParams = new LinkedHashMap<>();
-        digestParams.put("username", quoted(clientId));
-        digestParams.put("realm", quoted(serverRealm));
-        digestParams.put("nonce", quoted(serverNonce));
-        digestParams.put("uri", quoted(uriPath));
-        digestParams.put("qop", "auth");
-        digestParams.put("nc", nc);
-        digestParams.put("cnonce", quoted(clientNonce));
-        digestParams.put("response", quoted(response));
-        digestParams.put("opaque", quoted(serverOpaque));
-        final String digestParamsValue = digestParams.entrySet().stream().map((e) -> String.format("%s=%s", e.getKey(), e.getValue())).collect(Collectors.joining(", "));
-        return String.format("Digest %s", digestParamsValue);
+        final String serverAlgorithm = challenge.params.get("algorithm");
+        if (serverRealm == null || serverNonce == null) {
+            throw new IllegalStateException("Incomplete Digest challenge: " + serverChallenge);
+        }
+        final Algorithm algorithm = Algorithm.fromToken(serverAlgorithm);
+        final String qop = qop(challenge.params.get("qop"), body != null);
+        final int clientNonce = clientNonceFactory.get();
+
+        final Scratch s = SCRATCH.get();
+        final MessageDigest md = s.digest(algorithm);
+        final int hexLength = algorithm.length * 2;
+        if (ha1s.size() >= MAX_CACHED_REALMS) {
+            ha1s.clear();
+        }
+        final byte[] credentialsHash = ha1s.computeIfAbsent(algorithm.jcaName + ":" + serverRealm, k -> {
+            s.update(md, clientId).update(md, ':').update(md, serverRealm).update(md, ':').update(md, clientSecret);
+            return Arrays.copyOf(s.hexDigest(md, algorithm), hexLength);
+        });
+        final byte[] ha1;
+        if (algorithm.session) {
+            md.update(credentialsHash);
+            s.update(md, ':').update(md, serverNonce).update(md, ':').hexInt(md, clientNonce);
+            ha1 = s.sessionHa1;
+            System.arraycopy(s.hexDigest(md, algorithm), 0, ha1, 0, hexLength);
+        } else {
+            ha1 = credentialsHash;
+        }
+        s.update(md, method).update(md, ':').update(md, uriPath);
+        if ("auth-int".equals(qop)) {
+            final MessageDigest bmd = s.bodyDigest(algorithm);
+            bmd.update(body != null ? body : new byte[0]);
+            s.update(md, ':');
+            md.update(s.hexDigest(bmd, algorithm), 0, hexLength);
+        }
+        final byte[] ha2 = s.hexDigest(md, algorithm);
+        md.update(ha1, 0, hexLength);
+        s.update(md, ':').update(md, serverNonce).update(md, ':').hexInt(md, nonceCount);
+        s.update(md, ':').hexInt(md, clientNonce).update(md, ':').update(md, qop).update(md, ':');
+        md.update(ha2, 0, hexLength);
+        s.hexDigest(md, algorithm);
+
+        final StringBuilder sb = s.header;
+        sb.setLength(0);
+        sb.append("Digest username=");
+        quoted(sb, clientId);
+        sb.append(", realm=");
+        quoted(sb, serverRealm);
+        sb.append(", nonce=");
+        quoted(sb, serverNonce);
+        sb.append(", uri=");
+        quoted(sb, uriPath);
+        if (serverAlgorithm != null) {
+            sb.append(", algorithm=").append(algorithm.token);
+        }
+        sb.append(", qop=").append(qop);
+        sb.append(", nc=");
+        hexInt(sb, nonceCount);
+        sb.append(", cnonce=\"");
+        hexInt(sb, clientNonce);
+        sb.append("\", response=\"");
+        for (int i = 0; i != hexLength; ++i) {
+            sb.append((char) s.hex[i]);
+        }
+        sb.append('"');
+        if (serverOpaque != null) {
+            sb.append(", opaque=");
+            quoted(sb, serverOpaque);
+        }
+        return sb.toString();
     }
 
-    private static String quoted(String v) {
-        return String.format("\"%s\"", v.replace("\"", "\\\""));
+    private AuthenticationChallenge challenge(String serverChallenge) {
+        final AuthenticationChallenge cached = challenges.get(serverChallenge);
+        if (cached != null) {
+            return cached;
+        }
+        final AuthenticationChallenge parsed = parser.parse(serverChallenge);
+        if (challenges.size() >= MAX_CACHED_CHALLENGES) {
+            challenges.clear();
+        }
+        challenges.put(serverChallenge, parsed);
+        return parsed;
     }
 
-    private static String md5LowercaseHex(String v) {
-        try {
-            final byte[] md5 = MessageDigest.getInstance("MD5").digest(v.getBytes(StandardCharsets.UTF_8));
-            return Hex.encodeHexString(md5, true);
-        } catch (NoSuchAlgorithmException ex) {
-            throw new IllegalStateException(ex);
+    private static String qop(String offered, boolean hasBody) {
+        if (offered == null) {
+            return "auth";
+        }
+        boolean auth = false;
+        boolean authInt = false;
+        for (String option : offered.split(",")) {
+            final String o = option.strip();
+            auth |= "auth".equalsIgnoreCase(o);
+            authInt |= "auth-int".equalsIgnoreCase(o);
         }
+        return authInt && (hasBody || !auth) ? "auth-int" : "auth";
     }
-    
+
+    private static void hexInt(StringBuilder sb, int v) {
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            sb.append(HEX[(v >>> shift) & 0xf]);
+        }
+    }
+
+    private static void quoted(StringBuilder sb, String v) {
+        sb.append('"');
+        for (int i = 0; i != v.length(); ++i) {
+            final char c = v.charAt(i);
+            if (c == '"') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static class Scratch {
+
+        private final Map<Algorithm, MessageDigest[]> digests = new EnumMap<>(Algorithm.class);
+        private final byte[] bytes = new byte[256];
+        private final byte[] digest = new byte[32];
+        private final byte[] hex = new byte[64];
+        private final byte[] sessionHa1 = new byte[64];
+        private final StringBuilder header = new StringBuilder(256);
+
+        public MessageDigest digest(Algorithm algorithm) {
+            return digests.computeIfAbsent(algorithm, a -> new MessageDigest[]{instance(a), instance(a)})[0];
+        }
+
+        /**
+         * A second digest, as auth-int hashes the body while HA2 is in
+         * progress.
+         */
+        public MessageDigest bodyDigest(Algorithm algorithm) {
+            return digests.computeIfAbsent(algorithm, a -> new MessageDigest[]{instance(a), instance(a)})[1];
+        }
+
+        public Scratch update(MessageDigest md, char c) {
+            md.update((byte) c);
+            return this;
+        }
+
+        public Scratch update(MessageDigest md, String v) {
+            final int length = v.length();
+            if (length > bytes.length) {
+                md.update(v.getBytes(StandardCharsets.UTF_8));
+                return this;
+            }
+            for (int i = 0; i != length; ++i) {
+                final char c = v.charAt(i);
+                if (c >= 0x80) {
+                    md.update(v.getBytes(StandardCharsets.UTF_8));
+                    return this;
+                }
+                bytes[i] = (byte) c;
+            }
+            md.update(bytes, 0, length);
+            return this;
+        }
+
+        public Scratch hexInt(MessageDigest md, int v) {
+            for (int shift = 28; shift >= 0; shift -= 4) {
+                md.update((byte) HEX[(v >>> shift) & 0xf]);
+            }
+            return this;
+        }
+
+        /**
+         * Completes the digest and returns the lowercase hex of the result
+         * as ASCII bytes; the buffer is reused by the next call.
+         */
+        public byte[] hexDigest(MessageDigest md, Algorithm algorithm) {
+            try {
+                md.digest(digest, 0, algorithm.length);
+            } catch (DigestException ex) {
+                throw new IllegalStateException(ex);
+            }
+            for (int i = 0; i != algorithm.length; ++i) {
+                hex[i * 2] = (byte) HEX[(digest[i] >>> 4) & 0xf];
+                hex[i * 2 + 1] = (byte) HEX[digest[i] & 0xf];
+            }
+            return hex;
+        }
+
+        private static MessageDigest instance(Algorithm algorithm) {
+            try {
+                return MessageDigest.getInstance(algorithm.jcaName);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,48 @@
+package net.optionfactory.spring.upstream.inflight;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * An exchange currently in flight. Identity and start time are fixed; the
+ * phase is updated as the exchange progresses.
+ */
+public class InFlightExchange {
+
+    public enum Phase {
+        PREPARING, AWAITING_RESPONSE, MAPPING, FAILED;
+    }
+
+    public final String upstreamId;
+    public final String endpointId;
+    public final String requestId;
+    public final Thread thread;
+    public final long startNanos;
+    volatile Phase phase = Phase.PREPARING;
+    volatile boolean reported;
+
+    public InFlightExchange(String upstreamId, String endpointId, String requestId, Thread thread, long startNanos) {
+        this.upstreamId = upstreamId;
+        this.endpointId = endpointId;
+        this.requestId = requestId;
+        this.thread = thread;
+        this.startNanos = startNanos;
+    }
+
+    public Phase phase() {
+        return phase;
+    }
+
+    public Duration elapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    public Instant startedAt() {
+        return Instant.now().minus(elapsed());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%s request %s (%s, %dms, thread %s)", upstreamId, endpointId, requestId, phase, elapsed().toMillis(), thread.getName());
+    }
+}
@@ -0,0 +1,169 @@
+package net.optionfactory.spring.upstream.inflight;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.inflight.InFlightExchange.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Tracks the exchanges in flight on the ports it is registered on, for
+ * diagnostics. The hot path is a put and a remove on a concurrent map keyed
+ * by the exchange's {@link PrepareContext} and a few volatile writes. A
+ * watchdog thread reports, once, every exchange exceeding its endpoint
+ * threshold: it is logged and handed to the listener. Exchanges still
+ * registered after {@code evictAfter} (e.g. streams never closed by the
+ * caller) are logged, counted and evicted, so that they are not retained
+ * forever.
+ *
+ * Should be the first interceptor, so that the time spent in the prepare
+ * phase of the others is accounted for.
+ */
+public class UpstreamInFlightInterceptor<CTX> implements UpstreamInterceptor<CTX>, Closeable {
+
+    public static final Duration DEFAULT_EVICT_AFTER = Duration.ofHours(1);
+
+    private final Logger logger = LoggerFactory.getLogger(UpstreamInFlightInterceptor.class);
+    private final Map<PrepareContext<CTX>, InFlightExchange> exchanges = new ConcurrentHashMap<>();
+    private final long defaultThresholdNanos;
+    private final Map<String, Long> endpointThresholdsNanos = new ConcurrentHashMap<>();
+    private final long evictAfterNanos;
+    private final Consumer<InFlightExchange> onSlowExchange;
+    private final LongAdder evicted = new LongAdder();
+    private final ScheduledExecutorService watchdog;
+
+    public UpstreamInFlightInterceptor(Duration defaultThreshold, Map<String, Duration> endpointThresholds, Duration checkInterval, Duration evictAfter, Consumer<InFlightExchange> onSlowExchange) {
+        this.defaultThresholdNanos = defaultThreshold.toNanos();
+        endpointThresholds.forEach((endpointId, threshold) -> endpointThresholdsNanos.put(endpointId, threshold.toNanos()));
+        this.evictAfterNanos = evictAfter.toNanos();
+        this.onSlowExchange = onSlowExchange;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "upstream-inflight-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        final long period = Math.max(1, checkInterval.toMillis());
+        this.watchdog.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public UpstreamInFlightInterceptor(Duration defaultThreshold, Map<String, Duration> endpointThresholds, Duration checkInterval, Consumer<InFlightExchange> onSlowExchange) {
+        this(defaultThreshold, endpointThresholds, checkInterval, DEFAULT_EVICT_AFTER, onSlowExchange);
+    }
+
+    public static <CTX> UpstreamInFlightInterceptor<CTX> withThreshold(Duration threshold) {
+        return new UpstreamInFlightInterceptor<>(threshold, Map.of(), Duration.ofSeconds(1), exchange -> {
+        });
+    }
+
+    public UpstreamInFlightInterceptor<CTX> threshold(String endpointId, Duration threshold) {
+        endpointThresholdsNanos.put(endpointId, threshold.toNanos());
+        return this;
+    }
+
+    public int count() {
+        return exchanges.size();
+    }
+
+    /**
+     * The exchanges evicted without ever completing.
+     */
+    public long evicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * The exchanges in flight, oldest first.
+     */
+    public List<InFlightExchange> snapshot() {
+        final List<InFlightExchange> snapshot = new ArrayList<>(exchanges.values());
+        snapshot.sort(Comparator.comparingLong(e -> e.startNanos));
+        return snapshot;
+    }
+
+    public Duration oldest() {
+        final long now = System.nanoTime();
+        long oldest = 0;
+        for (InFlightExchange exchange : exchanges.values()) {
+            oldest = Math.max(oldest, now - exchange.startNanos);
+        }
+        return Duration.ofNanos(oldest);
+    }
+
+    @Override
+    public HttpHeaders prepare(PrepareContext<CTX> prepare) {
+        exchanges.put(prepare, new InFlightExchange(prepare.upstreamId, prepare.endpointId, prepare.requestId, Thread.currentThread(), System.nanoTime()));
+        return null;
+    }
+
+    @Override
+    public void before(PrepareContext<CTX> prepare, RequestContext request) {
+        advance(prepare, Phase.AWAITING_RESPONSE);
+    }
+
+    @Override
+    public void remotingSuccess(PrepareContext<CTX> prepare, RequestContext request, ResponseContext response) {
+        advance(prepare, Phase.MAPPING);
+    }
+
+    @Override
+    public void remotingError(PrepareContext<CTX> prepare, RequestContext request, ErrorContext error) {
+        advance(prepare, Phase.FAILED);
+    }
+
+    @Override
+    public void completed(PrepareContext<CTX> prepare) {
+        exchanges.remove(prepare);
+    }
+
+    private void advance(PrepareContext<CTX> prepare, Phase phase) {
+        final InFlightExchange exchange = exchanges.get(prepare);
+        if (exchange != null) {
+            exchange.phase = phase;
+        }
+    }
+
+    private void check() {
+        final long now = System.nanoTime();
+        for (Map.Entry<PrepareContext<CTX>, InFlightExchange> entry : exchanges.entrySet()) {
+            final InFlightExchange exchange = entry.getValue();
+            if (now - exchange.startNanos >= evictAfterNanos) {
+                if (exchanges.remove(entry.getKey(), exchange)) {
+                    evicted.increment();
+                    logger.warn("[upstream-inflight] evicting exchange never completed: {}", exchange);
+                }
+                continue;
+            }
+            if (exchange.reported) {
+                continue;
+            }
+            final long threshold = endpointThresholdsNanos.getOrDefault(exchange.endpointId, defaultThresholdNanos);
+            if (now - exchange.startNanos < threshold) {
+                continue;
+            }
+            exchange.reported = true;
+            logger.warn("[upstream-inflight] slow exchange: {}", exchange);
+            try {
+                onSlowExchange.accept(exchange);
+            } catch (RuntimeException ex) {
+                logger.warn("[upstream-inflight] slow exchange listener failed", ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+    }
+}
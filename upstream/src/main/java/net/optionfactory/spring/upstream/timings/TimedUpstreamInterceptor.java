@@ -0,0 +1,85 @@
+package net.optionfactory.spring.upstream.timings;
+
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.timings.UpstreamInterceptorTimings.Phase;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Times every callback of the decorated interceptor, including the ones
+ * that throw.
+ */
+public class TimedUpstreamInterceptor<CTX> implements UpstreamInterceptor<CTX> {
+
+    private final UpstreamInterceptor<CTX> inner;
+    private final UpstreamLatencyHistogram[] histograms;
+
+    public TimedUpstreamInterceptor(UpstreamInterceptor<CTX> inner, UpstreamInterceptorTimings timings) {
+        this.inner = inner;
+        this.histograms = timings.histograms(inner.getClass().getName());
+    }
+
+    public UpstreamInterceptor<CTX> inner() {
+        return inner;
+    }
+
+    @Override
+    public HttpHeaders prepare(PrepareContext<CTX> prepare) {
+        final long start = System.nanoTime();
+        try {
+            return inner.prepare(prepare);
+        } finally {
+            histograms[Phase.PREPARE.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void before(PrepareContext<CTX> prepare, RequestContext request) {
+        final long start = System.nanoTime();
+        try {
+            inner.before(prepare, request);
+        } finally {
+            histograms[Phase.BEFORE.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remotingSuccess(PrepareContext<CTX> prepare, RequestContext request, ResponseContext response) {
+        final long start = System.nanoTime();
+        try {
+            inner.remotingSuccess(prepare, request, response);
+        } finally {
+            histograms[Phase.REMOTING_SUCCESS.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remotingError(PrepareContext<CTX> prepare, RequestContext request, ErrorContext error) {
+        final long start = System.nanoTime();
+        try {
+            inner.remotingError(prepare, request, error);
+        } finally {
+            histograms[Phase.REMOTING_ERROR.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void mappingSuccess(PrepareContext<CTX> prepare, RequestContext request, ResponseContext response, ResponseEntity<?> mapped) {
+        final long start = System.nanoTime();
+        try {
+            inner.mappingSuccess(prepare, request, response, mapped);
+        } finally {
+            histograms[Phase.MAPPING_SUCCESS.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void completed(PrepareContext<CTX> prepare) {
+        final long start = System.nanoTime();
+        try {
+            inner.completed(prepare);
+        } finally {
+            histograms[Phase.COMPLETED.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+}
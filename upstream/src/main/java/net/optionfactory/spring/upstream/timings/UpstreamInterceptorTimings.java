@@ -0,0 +1,112 @@
+package net.optionfactory.spring.upstream.timings;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+
+/**
+ * Opt-in instrumentation of an interceptor chain: wrap the interceptors
+ * given to a port with {@link #instrument(List)} and every callback is
+ * timed into a histogram keyed by interceptor class and phase. Instances of
+ * the same class share their histograms.
+ */
+public class UpstreamInterceptorTimings {
+
+    public enum Phase {
+        PREPARE, BEFORE, REMOTING_SUCCESS, REMOTING_ERROR, MAPPING_SUCCESS, COMPLETED;
+    }
+
+    private final Map<String, UpstreamLatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    public <CTX> List<UpstreamInterceptor<CTX>> instrument(List<UpstreamInterceptor<CTX>> interceptors) {
+        return interceptors.stream()
+                .map(i -> i instanceof TimedUpstreamInterceptor ? i : new TimedUpstreamInterceptor<>(i, this))
+                .collect(Collectors.toList());
+    }
+
+    UpstreamLatencyHistogram[] histograms(String interceptor) {
+        return histograms.computeIfAbsent(interceptor, k -> {
+            final var hs = new UpstreamLatencyHistogram[Phase.values().length];
+            for (int i = 0; i != hs.length; ++i) {
+                hs[i] = new UpstreamLatencyHistogram();
+            }
+            return hs;
+        });
+    }
+
+    public UpstreamLatencyHistogram histogram(String interceptor, Phase phase) {
+        final UpstreamLatencyHistogram[] hs = histograms.get(interceptor);
+        return hs == null ? null : hs[phase.ordinal()];
+    }
+
+    /**
+     * The {@code n} interceptor phases with the highest total time.
+     */
+    public List<Entry> top(int n) {
+        final List<Entry> entries = new ArrayList<>();
+        histograms.forEach((interceptor, hs) -> {
+            for (Phase phase : Phase.values()) {
+                final UpstreamLatencyHistogram h = hs[phase.ordinal()];
+                if (h.count() != 0) {
+                    entries.add(Entry.of(interceptor, phase, h));
+                }
+            }
+        });
+        entries.sort(Comparator.comparing((Entry e) -> e.total).reversed());
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    public String report(int n) {
+        final var sb = new StringBuilder();
+        sb.append(String.format("%-60s %-16s %10s %12s %10s %10s %10s %10s%n", "interceptor", "phase", "calls", "total ms", "mean us", "p50 us", "p99 us", "max us"));
+        for (Entry e : top(n)) {
+            sb.append(String.format("%-60s %-16s %10d %12.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    e.interceptor, e.phase, e.calls,
+                    e.total.toNanos() / 1e6, e.mean.toNanos() / 1e3, e.p50.toNanos() / 1e3, e.p99.toNanos() / 1e3, e.max.toNanos() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        histograms.values().forEach(hs -> {
+            for (UpstreamLatencyHistogram h : hs) {
+                h.reset();
+            }
+        });
+    }
+
+    public static class Entry {
+
+        public String interceptor;
+        public Phase phase;
+        public long calls;
+        public Duration total;
+        public Duration mean;
+        public Duration p50;
+        public Duration p99;
+        public Duration max;
+
+        public static Entry of(String interceptor, Phase phase, UpstreamLatencyHistogram h) {
+            final var e = new Entry();
+            e.interceptor = interceptor;
+            e.phase = phase;
+            e.calls = h.count();
+            e.total = Duration.ofNanos(h.sum());
+            e.mean = Duration.ofNanos(h.mean());
+            e.p50 = Duration.ofNanos(h.percentile(0.50));
+            e.p99 = Duration.ofNanos(h.percentile(0.99));
+            e.max = Duration.ofNanos(h.max());
+            return e;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s.%s calls %d total %dms p50 %dus p99 %dus max %dus", interceptor, phase, calls, total.toMillis(), p50.toNanos() / 1000, p99.toNanos() / 1000, max.toNanos() / 1000);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package net.optionfactory.spring.upstream.timings;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with log-linear buckets:
+ * four buckets per power of two, so a recorded value is known within 25%.
+ * Recording is a couple of atomic increments and never allocates.
+ */
+public class UpstreamLatencyHistogram {
+
+    private static final int BUCKETS = 248;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long mean() {
+        final long n = count();
+        return n == 0 ? 0 : sum() / n;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket holding it,
+     * capped at the recorded maximum.
+     */
+    public long percentile(double p) {
+        final long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i != BUCKETS; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i != BUCKETS; ++i) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int bucket(long value) {
+        if (value < 4) {
+            return (int) value;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        final int mantissa = (int) ((value >>> (exp - 2)) & 3);
+        return (exp - 1) * 4 + mantissa;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        final int exp = bucket / 4 + 1;
+        final long lower = (long) (4 + bucket % 4) << (exp - 2);
+        return lower + (1L << (exp - 2)) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package net.optionfactory.spring.upstream;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.security.KeyStore;
+import java.time.Duration;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpstreamClientsTest {
+
+    @Test
+    public void sameTlsConfigurationAndTimeoutYieldTheSameClient() throws IOException {
+        final SSLConnectionSocketFactory tls = UpstreamSocketFactories.trustAll();
+        try (UpstreamClients clients = new UpstreamClients(10, 2, Duration.ofSeconds(5))) {
+            Assert.assertSame(clients.client(tls, 1000), clients.client(tls, 1000));
+        }
+    }
+
+    @Test
+    public void clientsWithoutContentCompressionAreKeptApart() throws IOException {
+        try (UpstreamClients clients = new UpstreamClients(10, 2, Duration.ofSeconds(5))) {
+            Assert.assertSame(clients.client(null, 1000), clients.client(null, 1000, true));
+            Assert.assertNotSame(clients.client(null, 1000), clients.client(null, 1000, false));
+        }
+    }
+
+    @Test
+    public void differentTlsConfigurationsYieldDifferentClients() throws IOException {
+        try (UpstreamClients clients = new UpstreamClients(10, 2, Duration.ofSeconds(5))) {
+            Assert.assertNotSame(clients.client(UpstreamSocketFactories.trustAll(), 1000), clients.client(UpstreamSocketFactories.system(), 1000));
+        }
+    }
+
+    @Test
+    public void namedSocketFactoriesShareTheSamePool() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress()); UpstreamClients clients = new UpstreamClients(10, 5, Duration.ofSeconds(5))) {
+            final URI upstream = URI.create(String.format("http://127.0.0.1:%s/", server.getLocalPort()));
+            Assert.assertEquals(3, clients.warmUp(clients.socketFactory("partner", UpstreamSocketFactories::trustAll), 1000, upstream, 3));
+            Assert.assertEquals(0, clients.warmUp(clients.socketFactory("partner", UpstreamSocketFactories::trustAll), 1000, upstream, 3));
+            Assert.assertNotSame(clients.socketFactory("partner", UpstreamSocketFactories::trustAll), clients.socketFactory("other", UpstreamSocketFactories::trustAll));
+        }
+    }
+
+    @Test
+    public void socketFactoriesAreBuiltOnEveryCall() throws Exception {
+        final KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keystore.load(null, null);
+        Assert.assertNotSame(
+                UpstreamSocketFactories.trusting(keystore, TrustSelfSignedStrategy.INSTANCE, new NoopHostnameVerifier()),
+                UpstreamSocketFactories.trusting(keystore, TrustSelfSignedStrategy.INSTANCE, new NoopHostnameVerifier())
+        );
+        Assert.assertNotSame(UpstreamSocketFactories.trustAll(), UpstreamSocketFactories.trustAll());
+    }
+
+    @Test
+    public void warmedUpConnectionsAreKeptInThePool() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress()); UpstreamClients clients = new UpstreamClients(10, 5, Duration.ofSeconds(5))) {
+            final URI upstream = URI.create(String.format("http://127.0.0.1:%s/", server.getLocalPort()));
+            Assert.assertEquals(3, clients.warmUp(null, 1000, upstream, 3));
+            Assert.assertEquals(0, clients.warmUp(null, 1000, upstream, 3));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotObtainClientsOnceClosed() throws IOException {
+        final UpstreamClients clients = new UpstreamClients(10, 2, Duration.ofSeconds(5));
+        clients.close();
+        clients.client(UpstreamSocketFactories.system(), 1000);
+    }
+}
@@ -0,0 +1,113 @@
+package net.optionfactory.spring.upstream;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.ResponseContext;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+
+public class UpstreamDigestAuthenticationInterceptorTest {
+
+    private final AtomicInteger challenges = new AtomicInteger();
+    private HttpServer server;
+    private CloseableHttpClient client;
+    private URI uri;
+
+    @Before
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            final int count = challenges.incrementAndGet();
+            exchange.getResponseHeaders().add("WWW-Authenticate", String.format("Digest realm=\"test\", qop=\"auth, auth-int\", nonce=\"nonce-%s\"", count));
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+        });
+        server.start();
+        client = HttpClients.createDefault();
+        uri = URI.create(String.format("http://127.0.0.1:%s/endpoint", server.getAddress().getPort()));
+    }
+
+    @After
+    public void teardown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void challengesAreReusedWithGrowingNonceCounts() {
+        final var interceptor = new UpstreamDigestAuthenticationInterceptor<Object>("user", "secret", client);
+        final String first = interceptor.prepare(prepare(RequestEntity.get(uri).build())).getFirst(HttpHeaders.AUTHORIZATION);
+        final String second = interceptor.prepare(prepare(RequestEntity.get(uri).build())).getFirst(HttpHeaders.AUTHORIZATION);
+        Assert.assertEquals(1, challenges.get());
+        Assert.assertTrue(first, first.contains("nonce=\"nonce-1\"") && first.contains("nc=00000001"));
+        Assert.assertTrue(second, second.contains("nonce=\"nonce-1\"") && second.contains("nc=00000002"));
+    }
+
+    @Test
+    public void unauthorizedResponsesReplaceTheCachedChallenge() {
+        final var interceptor = new UpstreamDigestAuthenticationInterceptor<Object>("user", "secret", client);
+        final PrepareContext<Object> prepare = prepare(RequestEntity.get(uri).build());
+        interceptor.prepare(prepare);
+        final ResponseContext response = new ResponseContext();
+        response.status = HttpStatus.UNAUTHORIZED;
+        response.headers = new HttpHeaders();
+        response.headers.set(HttpHeaders.WWW_AUTHENTICATE, "Digest realm=\"test\", qop=\"auth\", nonce=\"renewed\", stale=true");
+        interceptor.remotingSuccess(prepare, null, response);
+        final String got = interceptor.prepare(prepare(RequestEntity.get(uri).build())).getFirst(HttpHeaders.AUTHORIZATION);
+        Assert.assertEquals(1, challenges.get());
+        Assert.assertTrue(got, got.contains("nonce=\"renewed\"") && got.contains("nc=00000001"));
+    }
+
+    @Test
+    public void unauthorizedResponsesWithoutDigestChallengesForceAFetch() {
+        final var interceptor = new UpstreamDigestAuthenticationInterceptor<Object>("user", "secret", client);
+        final PrepareContext<Object> prepare = prepare(RequestEntity.get(uri).build());
+        interceptor.prepare(prepare);
+        final ResponseContext response = new ResponseContext();
+        response.status = HttpStatus.UNAUTHORIZED;
+        response.headers = new HttpHeaders();
+        interceptor.remotingSuccess(prepare, null, response);
+        interceptor.prepare(prepare(RequestEntity.get(uri).build()));
+        Assert.assertEquals(2, challenges.get());
+    }
+
+    @Test
+    public void byteBodiesAreProtectedWithAuthInt() throws Exception {
+        final var interceptor = new UpstreamDigestAuthenticationInterceptor<Object>("user", "secret", client);
+        final byte[] body = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        final String got = interceptor.prepare(prepare(RequestEntity.post(uri).contentType(MediaType.APPLICATION_JSON).body(body))).getFirst(HttpHeaders.AUTHORIZATION);
+        final String cnonce = got.replaceAll(".*cnonce=\"([0-9a-f]+)\".*", "$1");
+        final String ha1 = md5("user:test:secret");
+        final String ha2 = md5("POST:/endpoint:" + Hex.encodeHexString(MessageDigest.getInstance("MD5").digest(body)));
+        final String response = md5(ha1 + ":nonce-1:00000001:" + cnonce + ":auth-int:" + ha2);
+        Assert.assertTrue(got, got.contains("qop=auth-int"));
+        Assert.assertTrue(got, got.contains("response=\"" + response + "\""));
+    }
+
+    private static PrepareContext<Object> prepare(RequestEntity<?> entity) {
+        final PrepareContext<Object> prepare = new PrepareContext<>();
+        prepare.upstreamId = "test";
+        prepare.entity = entity;
+        return prepare;
+    }
+
+    private static String md5(String v) throws Exception {
+        return Hex.encodeHexString(MessageDigest.getInstance("MD5").digest(v.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,83 @@
+package net.optionfactory.spring.upstream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.MediaType;
+
+public class UpstreamOpsTest {
+
+    @Test
+    public void smileBodiesAreRenderedAsJson() throws IOException {
+        final byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(Map.of("a", 1));
+        Assert.assertEquals("{\"a\":1}", UpstreamOps.bodyAsString(UpstreamOps.APPLICATION_SMILE, false, new ByteArrayResource(smile)));
+    }
+
+    @Test
+    public void cborBodiesAreRenderedAsJson() throws IOException {
+        final byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(Map.of("a", "b"));
+        Assert.assertEquals("{\"a\":\"b\"}", UpstreamOps.bodyAsString(MediaType.APPLICATION_CBOR, false, new ByteArrayResource(cbor)));
+    }
+
+    @Test
+    public void binaryJsonIsTruncatedWhileDecoding() throws IOException {
+        final var items = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i != 10_000; ++i) {
+            items.add(Map.of("id", i));
+        }
+        final byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(items);
+        //cut in the middle of the body: only the rendered prefix is read, so the missing tail is never seen
+        final byte[] cut = Arrays.copyOf(smile, smile.length / 2);
+        final String got = UpstreamOps.bodyAsString(UpstreamOps.APPLICATION_SMILE, false, new ByteArrayResource(cut), 20);
+        Assert.assertEquals("[{\"id\":0},{\"id\":1},{...(truncated)", got);
+    }
+
+    @Test
+    public void binaryJsonWithinTheLimitIsRenderedWhole() throws IOException {
+        final byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(List.of(1, 2, 3));
+        Assert.assertEquals("[1,2,3]", UpstreamOps.bodyAsString(MediaType.APPLICATION_CBOR, false, new ByteArrayResource(cbor), 7));
+    }
+
+    @Test
+    public void malformedBinaryJsonIsReportedAsBinary() {
+        final byte[] garbage = "not smile".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("(binary:application/x-jackson-smile)", UpstreamOps.bodyAsString(UpstreamOps.APPLICATION_SMILE, false, new ByteArrayResource(garbage)));
+    }
+
+    @Test
+    public void otherBinaryBodiesAreNotRendered() {
+        Assert.assertEquals("(binary:application/octet-stream)", UpstreamOps.bodyAsString(MediaType.APPLICATION_OCTET_STREAM, false, new ByteArrayResource(new byte[]{1, 2})));
+    }
+
+    @Test
+    public void textBodiesAreDecodedWithTheirCharset() {
+        final byte[] latin1 = "caffè".getBytes(StandardCharsets.ISO_8859_1);
+        Assert.assertEquals("caffè", UpstreamOps.bodyAsString(MediaType.parseMediaType("text/plain;charset=ISO-8859-1"), false, new ByteArrayResource(latin1)));
+        Assert.assertEquals("caffè", UpstreamOps.bodyAsString(MediaType.APPLICATION_JSON, false, new ByteArrayResource("caffè".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void boundedBodiesAreTruncated() {
+        final var body = new InputStreamResource(new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals("0123...(truncated)", UpstreamOps.bodyAsString(MediaType.TEXT_PLAIN, false, body, 4));
+        Assert.assertEquals("0123456789", UpstreamOps.bodyAsString(MediaType.TEXT_PLAIN, false, new ByteArrayResource("0123456789".getBytes(StandardCharsets.UTF_8)), 10));
+        Assert.assertEquals("èèè...(truncated)", UpstreamOps.bodyAsString(MediaType.TEXT_PLAIN, false, new ByteArrayResource("èèèè".getBytes(StandardCharsets.UTF_8)), 3));
+    }
+
+    @Test
+    public void classificationIgnoresMediaTypeParameters() {
+        Assert.assertEquals("(binary:application/octet-stream;name=text.xml)", UpstreamOps.bodyAsString(MediaType.parseMediaType("application/octet-stream;name=text.xml"), true, new ByteArrayResource(new byte[]{1, 2})));
+        Assert.assertEquals("(multipart body)", UpstreamOps.bodyAsString(MediaType.parseMediaType("multipart/mixed;boundary=x"), false, new ByteArrayResource(new byte[]{1, 2})));
+    }
+}
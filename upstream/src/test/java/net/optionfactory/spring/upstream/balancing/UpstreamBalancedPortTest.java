@@ -0,0 +1,249 @@
+package net.optionfactory.spring.upstream.balancing;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import net.optionfactory.spring.upstream.UpstreamException;
+import net.optionfactory.spring.upstream.UpstreamPort;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+public class UpstreamBalancedPortTest {
+
+    private static final List<URI> REPLICAS = List.of(URI.create("http://a:8080/api"), URI.create("http://b:8080/api"), URI.create("http://c:8080/api"));
+    private static final long DECAY = Duration.ofSeconds(10).toNanos();
+    private static final long PENALTY = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    public void roundRobinRewritesRequestsToEachReplicaInTurn() {
+        final var delegate = new StubPort(Set.of());
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS, UpstreamBalancingStrategy.roundRobin(), delegate);
+        for (int i = 0; i != 3; ++i) {
+            port.exchange(null, "ep", RequestEntity.get(URI.create("/items?q=a%20b")).build(), String.class);
+        }
+        Assert.assertEquals(List.of("http://a:8080/api/items?q=a%20b", "http://b:8080/api/items?q=a%20b", "http://c:8080/api/items?q=a%20b"), delegate.calls);
+    }
+
+    @Test
+    public void failingReplicasAreEjected() {
+        final var delegate = new StubPort(Set.of("b"));
+        final var ejection = new UpstreamEjection(2, Duration.ofMinutes(1), Duration.ofMinutes(1), 0.5);
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS, UpstreamBalancingStrategy.roundRobin(), ejection, delegate);
+        for (int i = 0; i != 30; ++i) {
+            try {
+                port.exchange(null, "ep", RequestEntity.get(URI.create("http://any/items")).build(), String.class);
+            } catch (UpstreamException ex) {
+                //expected from b until ejected
+            }
+        }
+        final Map<String, Integer> byHost = delegate.byHost();
+        Assert.assertEquals(2, (int) byHost.get("b"));
+        Assert.assertEquals(1, port.replicas().get(1).ejections());
+        Assert.assertEquals(28, byHost.get("a") + byHost.get("c"));
+    }
+
+    @Test
+    public void clientErrorsDoNotEjectReplicas() {
+        final var delegate = new StubPort(Set.of());
+        delegate.status = 404;
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS.subList(0, 1), UpstreamBalancingStrategy.roundRobin(), new UpstreamEjection(1, Duration.ofMinutes(1), Duration.ofMinutes(1), 1), delegate);
+        for (int i = 0; i != 3; ++i) {
+            try {
+                port.exchange(null, "ep", RequestEntity.get(URI.create("/items")).build(), String.class);
+                Assert.fail("expected a failure");
+            } catch (UpstreamException ex) {
+                //expected
+            }
+        }
+        Assert.assertEquals(0, port.replicas().get(0).ejections());
+        Assert.assertEquals(0, port.replicas().get(0).failures());
+    }
+
+    @Test
+    public void leastOutstandingAndPowerOfTwoChoicesAvoidBusyReplicas() {
+        final var replicas = List.of(new UpstreamReplica(REPLICAS.get(0), DECAY, PENALTY), new UpstreamReplica(REPLICAS.get(1), DECAY, PENALTY));
+        replicas.get(0).started();
+        replicas.get(0).started();
+        replicas.get(1).started();
+        Assert.assertSame(replicas.get(1), UpstreamBalancingStrategy.leastOutstanding().choose(replicas));
+        replicas.get(0).succeeded(System.nanoTime(), 50_000_000);
+        replicas.get(1).succeeded(System.nanoTime(), 1_000_000);
+        final var p2c = UpstreamBalancingStrategy.powerOfTwoChoices();
+        for (int i = 0; i != 10; ++i) {
+            Assert.assertSame(replicas.get(1), p2c.choose(replicas));
+        }
+    }
+
+    @Test
+    public void fastFailingReplicasDoNotLookCheaperThanHealthyOnes() {
+        final var healthy = new UpstreamReplica(REPLICAS.get(0), DECAY, PENALTY);
+        final var failing = new UpstreamReplica(REPLICAS.get(1), DECAY, PENALTY);
+        healthy.succeeded(System.nanoTime(), 50_000_000);
+        failing.succeeded(System.nanoTime(), 50_000_000);
+        failing.failed(System.nanoTime(), Integer.MAX_VALUE);
+        Assert.assertTrue(failing.cost() > healthy.cost());
+        final var p2c = UpstreamBalancingStrategy.powerOfTwoChoices();
+        for (int i = 0; i != 10; ++i) {
+            Assert.assertSame(healthy, p2c.choose(List.of(healthy, failing)));
+        }
+    }
+
+    @Test
+    public void penaltiesFadeOverTime() {
+        final var replica = new UpstreamReplica(REPLICAS.get(0), 1, PENALTY);
+        replica.failed(System.nanoTime(), Integer.MAX_VALUE);
+        Assert.assertEquals(PENALTY, replica.ewmaNanos(), 0);
+        Assert.assertEquals(0, replica.cost(), 0);
+    }
+
+    @Test
+    public void outstandingRequestsAreReleasedOnErrors() {
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS.subList(0, 1), UpstreamBalancingStrategy.roundRobin(), new StubPort(Set.of()));
+        final UpstreamReplica replica = port.replicas().get(0);
+        try {
+            port.tracked(replica, () -> {
+                throw new AssertionError("boom");
+            });
+            Assert.fail("expected an error");
+        } catch (AssertionError ex) {
+            //expected
+        }
+        Assert.assertEquals(0, replica.outstanding());
+        Assert.assertEquals(0, replica.failures());
+    }
+
+    @Test
+    public void failuresBeforeSendingAreNotCountedNorSampled() {
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS.subList(0, 1), UpstreamBalancingStrategy.roundRobin(), new UpstreamEjection(1, Duration.ofMinutes(1), Duration.ofMinutes(1), 1), new StubPort(Set.of()));
+        final UpstreamReplica replica = port.replicas().get(0);
+        final List<RuntimeException> failures = List.of(
+                new UpstreamException("test", "REQUEST_ERROR", "no converter for request body"),
+                new RestClientException("No HttpMessageConverter for java.lang.Object"),
+                new UpstreamException("test", "Authentication", "challenge unavailable"));
+        for (RuntimeException failure : failures) {
+            try {
+                port.tracked(replica, () -> {
+                    throw failure;
+                });
+                Assert.fail("expected a failure");
+            } catch (RuntimeException ex) {
+                Assert.assertSame(failure, ex);
+            }
+        }
+        Assert.assertEquals(0, replica.failures());
+        Assert.assertEquals(0, replica.ejections());
+        Assert.assertEquals(0, replica.ewmaNanos(), 0);
+        Assert.assertEquals(0, replica.outstanding());
+    }
+
+    @Test
+    public void transportFailuresAreCounted() {
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS.subList(0, 1), UpstreamBalancingStrategy.roundRobin(), UpstreamEjection.disabled(), new StubPort(Set.of()));
+        final UpstreamReplica replica = port.replicas().get(0);
+        final List<RuntimeException> failures = List.of(
+                new UpstreamException("test", "UPSTREAM_DOWN", "Connection refused"),
+                new UpstreamException("test", "GENERIC_ERROR", "Read timed out"),
+                new UpstreamException("test", "GENERIC_ERROR", "503", 503),
+                new ResourceAccessException("I/O error"));
+        for (RuntimeException failure : failures) {
+            try {
+                port.tracked(replica, () -> {
+                    throw failure;
+                });
+                Assert.fail("expected a failure");
+            } catch (RuntimeException ex) {
+                Assert.assertSame(failure, ex);
+            }
+        }
+        Assert.assertEquals(4, replica.failures());
+    }
+
+    @Test
+    public void unknownFailuresAreNotBlamedOnReplicasByDefault() {
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS.subList(0, 1), UpstreamBalancingStrategy.roundRobin(), new UpstreamEjection(1, Duration.ofMinutes(1), Duration.ofMinutes(1), 1), new StubPort(Set.of()));
+        final UpstreamReplica replica = port.replicas().get(0);
+        try {
+            port.tracked(replica, () -> {
+                throw new IllegalStateException("validation failed");
+            });
+            Assert.fail("expected a failure");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+        Assert.assertEquals(0, replica.failures());
+        Assert.assertEquals(0, replica.ejections());
+    }
+
+    @Test
+    public void delegatesClassifyTheirOwnFailures() {
+        final var port = new UpstreamBalancedPort<Void>("test", REPLICAS.subList(0, 1), UpstreamBalancingStrategy.roundRobin(), UpstreamEjection.disabled(), new ClassifyingStubPort());
+        final UpstreamReplica replica = port.replicas().get(0);
+        final List<RuntimeException> failures = List.of(new UnsupportedOperationException("answered"), new IllegalStateException("transport"));
+        for (RuntimeException failure : failures) {
+            try {
+                port.tracked(replica, () -> {
+                    throw failure;
+                });
+                Assert.fail("expected a failure");
+            } catch (RuntimeException ex) {
+                Assert.assertSame(failure, ex);
+            }
+        }
+        Assert.assertEquals(1, replica.failures());
+    }
+
+    private static class ClassifyingStubPort extends StubPort implements UpstreamFailureClassifier {
+
+        public ClassifyingStubPort() {
+            super(Set.of());
+        }
+
+        @Override
+        public Outcome classify(RuntimeException ex) {
+            return ex instanceof IllegalStateException ? Outcome.REPLICA_FAILURE : Outcome.ANSWERED;
+        }
+    }
+
+    private static class StubPort implements UpstreamPort<Void> {
+
+        private final Set<String> failingHosts;
+        private final List<String> calls = new ArrayList<>();
+        private Integer status;
+
+        public StubPort(Set<String> failingHosts) {
+            this.failingHosts = failingHosts;
+        }
+
+        public Map<String, Integer> byHost() {
+            final Map<String, Integer> byHost = new TreeMap<>();
+            calls.forEach(c -> byHost.merge(URI.create(c).getHost(), 1, Integer::sum));
+            return byHost;
+        }
+
+        @Override
+        public <T> ResponseEntity<T> exchange(Void context, String endpoint, RequestEntity<?> requestEntity, Class<T> responseType) {
+            calls.add(requestEntity.getUrl().toString());
+            if (status != null) {
+                throw new UpstreamException("test", "GENERIC_ERROR", status.toString(), status);
+            }
+            if (failingHosts.contains(requestEntity.getUrl().getHost())) {
+                throw new UpstreamException("test", "UPSTREAM_DOWN", "Connection refused");
+            }
+            return ResponseEntity.ok().build();
+        }
+
+        @Override
+        public <T> ResponseEntity<T> exchange(Void context, String endpoint, RequestEntity<?> requestEntity, ParameterizedTypeReference<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package net.optionfactory.spring.upstream.digest;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.apache.commons.codec.binary.Hex;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -11,4 +14,59 @@ public class DigestAuthTest {
         String got = da.authHeader("GET", "/dir/index.html", "Digest asd=123,realm=\"testrealm@host.com\",qop=\"auth,auth-int\",nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\",opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"");
         Assert.assertEquals("Digest username=\"Mufasa\", realm=\"testrealm@host.com\", nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", uri=\"/dir/index.html\", qop=auth, nc=00000001, cnonce=\"0a4f113b\", response=\"6629fae49393a05397450978507c4ef1\", opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"", got);
     }    
+
+    @Test
+    public void repeatedChallengesYieldTheSameHeader() {
+        final DigestAuth da = new DigestAuth("Mufasa", "Circle Of Life", () -> 172953915);
+        final String challenge = "Digest realm=\"testrealm@host.com\",qop=\"auth\",nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\",opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"";
+        Assert.assertEquals(da.authHeader("GET", "/dir/index.html", challenge), da.authHeader("GET", "/dir/index.html", challenge));
+    }
+
+    @Test
+    public void canUseSha256WithAuthInt() throws Exception {
+        final DigestAuth da = new DigestAuth("Mufasa", "Circle of Life", () -> 172953915);
+        final byte[] body = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        final String got = da.authHeader("POST", "/dir/index.html", "Digest realm=\"http-auth@example.org\", qop=\"auth, auth-int\", algorithm=SHA-256, nonce=\"7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v\", opaque=\"FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS\"", body);
+        final String ha1 = sha256("Mufasa:http-auth@example.org:Circle of Life");
+        final String ha2 = sha256("POST:/dir/index.html:" + Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(body)));
+        final String response = sha256(ha1 + ":7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v:00000001:0a4f113b:auth-int:" + ha2);
+        Assert.assertEquals("Digest username=\"Mufasa\", realm=\"http-auth@example.org\", nonce=\"7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v\", uri=\"/dir/index.html\", algorithm=SHA-256, qop=auth-int, nc=00000001, cnonce=\"0a4f113b\", response=\"" + response + "\", opaque=\"FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS\"", got);
+    }
+
+    @Test
+    public void canUseMd5Sess() throws Exception {
+        final DigestAuth da = new DigestAuth("Mufasa", "Circle Of Life", () -> 172953915);
+        final String got = da.authHeader("GET", "/dir/index.html", "Digest realm=\"testrealm@host.com\",qop=\"auth\",algorithm=MD5-sess,nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\"");
+        final String ha1 = md5(md5("Mufasa:testrealm@host.com:Circle Of Life") + ":dcd98b7102dd2f0e8b11d0f600bfb0c093:0a4f113b");
+        final String ha2 = md5("GET:/dir/index.html");
+        final String response = md5(ha1 + ":dcd98b7102dd2f0e8b11d0f600bfb0c093:00000001:0a4f113b:auth:" + ha2);
+        Assert.assertEquals("Digest username=\"Mufasa\", realm=\"testrealm@host.com\", nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", uri=\"/dir/index.html\", algorithm=MD5-sess, qop=auth, nc=00000001, cnonce=\"0a4f113b\", response=\"" + response + "\"", got);
+    }
+
+    @Test
+    public void sessionHashesDependOnTheNonces() {
+        final DigestAuth da = new DigestAuth("Mufasa", "Circle Of Life", () -> 172953915);
+        final String first = da.authHeader("GET", "/dir/index.html", "Digest realm=\"testrealm@host.com\",qop=\"auth\",algorithm=SHA-256-sess,nonce=\"a\"");
+        final String second = da.authHeader("GET", "/dir/index.html", "Digest realm=\"testrealm@host.com\",qop=\"auth\",algorithm=SHA-256-sess,nonce=\"b\"");
+        Assert.assertNotEquals(first.substring(first.indexOf("response=")), second.substring(second.indexOf("response=")));
+    }
+
+    @Test
+    public void nonceCountIsHashedAndSent() throws Exception {
+        final DigestAuth da = new DigestAuth("Mufasa", "Circle Of Life", () -> 172953915);
+        final String got = da.authHeader("GET", "/dir/index.html", "Digest realm=\"testrealm@host.com\",qop=\"auth\",nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\"", 26, null);
+        final String ha1 = md5("Mufasa:testrealm@host.com:Circle Of Life");
+        final String ha2 = md5("GET:/dir/index.html");
+        final String response = md5(ha1 + ":dcd98b7102dd2f0e8b11d0f600bfb0c093:0000001a:0a4f113b:auth:" + ha2);
+        Assert.assertTrue(got, got.contains(", nc=0000001a, "));
+        Assert.assertTrue(got, got.contains("response=\"" + response + "\""));
+    }
+
+    private static String md5(String v) throws Exception {
+        return Hex.encodeHexString(MessageDigest.getInstance("MD5").digest(v.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String sha256(String v) throws Exception {
+        return Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(v.getBytes(StandardCharsets.UTF_8)));
+    }
 }
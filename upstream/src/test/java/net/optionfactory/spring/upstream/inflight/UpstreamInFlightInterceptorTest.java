@@ -0,0 +1,71 @@
+package net.optionfactory.spring.upstream.inflight;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.RequestContext;
+import net.optionfactory.spring.upstream.inflight.InFlightExchange.Phase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpstreamInFlightInterceptorTest {
+
+    @Test
+    public void exchangesAreTrackedUntilCompleted() {
+        try (final var inflight = UpstreamInFlightInterceptor.<Void>withThreshold(Duration.ofMinutes(1))) {
+            final var prepare = prepare("slow", "1");
+            inflight.prepare(prepare);
+            inflight.before(prepare, new RequestContext());
+            Assert.assertEquals(1, inflight.count());
+            Assert.assertEquals(Phase.AWAITING_RESPONSE, inflight.snapshot().get(0).phase());
+            Assert.assertEquals("1", inflight.snapshot().get(0).requestId);
+            inflight.completed(prepare);
+            Assert.assertEquals(0, inflight.count());
+        }
+    }
+
+    @Test
+    public void slowExchangesAreReportedOnceByTheWatchdog() throws Exception {
+        final List<InFlightExchange> reported = new CopyOnWriteArrayList<>();
+        try (final var inflight = new UpstreamInFlightInterceptor<Void>(Duration.ofMinutes(1), Map.of("slow", Duration.ofMillis(20)), Duration.ofMillis(10), reported::add)) {
+            final var fast = prepare("fast", "1");
+            final var slow = prepare("slow", "2");
+            inflight.prepare(fast);
+            inflight.prepare(slow);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (reported.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            //several more watchdog rounds
+            Thread.sleep(100);
+            Assert.assertEquals(1, reported.size());
+            Assert.assertEquals("2", reported.get(0).requestId);
+            Assert.assertEquals(2, inflight.count());
+        }
+    }
+
+    @Test
+    public void exchangesNeverCompletedAreEvicted() throws Exception {
+        try (final var inflight = new UpstreamInFlightInterceptor<Void>(Duration.ofMinutes(1), Map.of(), Duration.ofMillis(10), Duration.ofMillis(50), exchange -> {
+        })) {
+            inflight.prepare(prepare("leaked", "1"));
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (inflight.count() != 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(0, inflight.count());
+            Assert.assertEquals(1, inflight.evicted());
+        }
+    }
+
+    private static PrepareContext<Void> prepare(String endpointId, String requestId) {
+        final var prepare = new PrepareContext<Void>();
+        prepare.upstreamId = "test";
+        prepare.endpointId = endpointId;
+        prepare.requestId = requestId;
+        return prepare;
+    }
+}
@@ -0,0 +1,62 @@
+package net.optionfactory.spring.upstream.timings;
+
+import java.util.List;
+import net.optionfactory.spring.upstream.UpstreamInterceptor;
+import net.optionfactory.spring.upstream.UpstreamInterceptor.PrepareContext;
+import net.optionfactory.spring.upstream.timings.UpstreamInterceptorTimings.Phase;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+public class UpstreamInterceptorTimingsTest {
+
+    @Test
+    public void histogramPercentilesAreWithinBucketResolution() {
+        final var h = new UpstreamLatencyHistogram();
+        for (long v = 1; v <= 1000; ++v) {
+            h.record(v * 1000);
+        }
+        Assert.assertEquals(1000, h.count());
+        Assert.assertEquals(1_000_000, h.max());
+        Assert.assertEquals(500_000, h.percentile(0.5), 500_000 * 0.25);
+        Assert.assertEquals(990_000, h.percentile(0.99), 990_000 * 0.25);
+        for (long v : new long[]{0, 3, 4, 7, 8, 1023, 1024, Long.MAX_VALUE}) {
+            Assert.assertTrue(UpstreamLatencyHistogram.upperBound(UpstreamLatencyHistogram.bucket(v)) >= v);
+        }
+    }
+
+    @Test
+    public void slowInterceptorsTopTheReport() {
+        final var timings = new UpstreamInterceptorTimings();
+        final List<UpstreamInterceptor<Void>> chain = timings.instrument(List.of(new Fast(), new Slow()));
+        final var prepare = new PrepareContext<Void>();
+        for (int i = 0; i != 5; ++i) {
+            for (UpstreamInterceptor<Void> interceptor : chain) {
+                interceptor.prepare(prepare);
+                interceptor.completed(prepare);
+            }
+        }
+        final var top = timings.top(1).get(0);
+        Assert.assertEquals(Slow.class.getName(), top.interceptor);
+        Assert.assertEquals(Phase.PREPARE, top.phase);
+        Assert.assertEquals(5, top.calls);
+        Assert.assertTrue(top.toString(), top.p50.toMillis() >= 5);
+        Assert.assertEquals(4, timings.top(10).size());
+    }
+
+    private static class Fast implements UpstreamInterceptor<Void> {
+    }
+
+    private static class Slow implements UpstreamInterceptor<Void> {
+
+        @Override
+        public HttpHeaders prepare(PrepareContext<Void> prepare) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }
+}